@@ -0,0 +1,87 @@
+package wah.giovann.csvhandler.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import wah.giovann.csvhandler.CSVArray;
+import wah.giovann.csvhandler.CSVFileFormat;
+import wah.giovann.csvhandler.CSVReader;
+import wah.giovann.csvhandler.error.CSVParseException;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the in-memory operations of <code>CSVArray</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArrayBenchmark {
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"6", "60"})
+    public int columns;
+
+    private CSVArray source;
+    private CSVArray array;
+
+    @Setup(Level.Trial)
+    public void setUp() throws CSVParseException {
+        String contents = DataGenerator.generate(this.rows, this.columns, DataGenerator.QUOTED);
+        this.source = new CSVReader(CSVFileFormat.DEFAULT_FORMAT).readCSV(contents);
+    }
+
+    /**
+     * Sorting reorders the array, so every invocation starts from a fresh copy of the records.
+     */
+    @Setup(Level.Invocation)
+    public void copy() {
+        this.array = new CSVArray(this.source);
+    }
+
+    @Benchmark
+    public String csvString() {
+        return this.array.csvString(CSVFileFormat.DEFAULT_FORMAT);
+    }
+
+    @Benchmark
+    public CSVArray sortNumeric() {
+        this.array.sortBy("amount", true, true);
+        return this.array;
+    }
+
+    @Benchmark
+    public CSVArray sortAlphanumeric() {
+        this.array.sortBy("c3", false, false);
+        return this.array;
+    }
+
+    @Benchmark
+    public HashMap<String, CSVArray> groupBy() {
+        return this.array.groupBy("group");
+    }
+
+    @Benchmark
+    public HashMap<String, CSVArray> groupByTwoColumns() {
+        return this.array.groupBy("group", "c3");
+    }
+
+    @Benchmark
+    public CSVArray filter() {
+        return this.array.filter(new String[]{"group"}, new String[]{"g7"});
+    }
+}
@@ -0,0 +1,111 @@
+package wah.giovann.csvhandler.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Generates deterministic .csv data sets for the benchmarks.
+ * <br><br>
+ * Every data set has the columns <code>id</code> (a unique integer), <code>group</code> (one of 50 values),
+ * <code>amount</code> (a decimal number), followed by text columns named <code>c3</code>, <code>c4</code>, ... up to
+ * the requested width. Text fields are written according to the quoting mode: <code>plain</code> never quotes,
+ * <code>quoted</code> quotes every text field and embeds delimiters and escaped quotes in some of them, and
+ * <code>multiline</code> additionally embeds line breaks in some of them.
+ */
+public final class DataGenerator {
+    public static final String PLAIN = "plain";
+    public static final String QUOTED = "quoted";
+    public static final String MULTILINE = "multiline";
+
+    private static final String[] WORDS = {
+            "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliett",
+            "kilo", "lima", "mike", "november", "oscar", "papa", "québec", "romeo", "sierra", "tango"
+    };
+
+    private DataGenerator() {
+    }
+
+    /**
+     * Writes a data set to a new temporary file, which is deleted when the JVM exits.
+     * @param rows number of records, excluding the header
+     * @param columns number of columns, at least 3
+     * @param quoting one of <code>PLAIN</code>, <code>QUOTED</code> or <code>MULTILINE</code>
+     * @param charSet the character set of the file
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+    public static File writeFile(int rows, int columns, String quoting, Charset charSet) throws IOException {
+        File f = File.createTempFile("csv-benchmark-", ".csv");
+        f.deleteOnExit();
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(f.toPath()), charSet))) {
+            write(w, rows, columns, quoting);
+        }
+        return f;
+    }
+
+    /**
+     * Returns a data set as a <code>String</code>.
+     * @param rows number of records, excluding the header
+     * @param columns number of columns, at least 3
+     * @param quoting one of <code>PLAIN</code>, <code>QUOTED</code> or <code>MULTILINE</code>
+     * @return the .csv contents
+     */
+    public static String generate(int rows, int columns, String quoting) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            write(new java.io.Writer() {
+                public void write(char[] cbuf, int off, int len) { sb.append(cbuf, off, len); }
+                public void flush() { }
+                public void close() { }
+            }, rows, columns, quoting);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    private static void write(Writer w, int rows, int columns, String quoting) throws IOException {
+        if (columns < 3) throw new IllegalArgumentException("At least 3 columns are required.");
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        sb.append("id,group,amount");
+        for (int c = 3; c < columns; c++) {
+            sb.append(",c").append(c);
+        }
+        sb.append('\n');
+        w.write(sb.toString());
+        for (int r = 0; r < rows; r++) {
+            sb.setLength(0);
+            sb.append(r).append(',');
+            sb.append('g').append(random.nextInt(50)).append(',');
+            sb.append(random.nextInt(100000)).append('.').append(random.nextInt(100));
+            for (int c = 3; c < columns; c++) {
+                sb.append(',');
+                appendText(sb, random, quoting);
+            }
+            sb.append('\n');
+            w.write(sb.toString());
+        }
+    }
+
+    private static void appendText(StringBuilder sb, Random random, String quoting) {
+        String word = WORDS[random.nextInt(WORDS.length)];
+        if (PLAIN.equals(quoting)) {
+            sb.append(word).append(' ').append(random.nextInt(1000));
+            return;
+        }
+        sb.append('"').append(word);
+        int special = random.nextInt(10);
+        if (special == 0) sb.append(", ").append(WORDS[random.nextInt(WORDS.length)]);
+        else if (special == 1) sb.append(" \"\"").append(WORDS[random.nextInt(WORDS.length)]).append("\"\"");
+        else if (special == 2 && MULTILINE.equals(quoting)) sb.append("\r\n").append(WORDS[random.nextInt(WORDS.length)]);
+        sb.append('"');
+    }
+}
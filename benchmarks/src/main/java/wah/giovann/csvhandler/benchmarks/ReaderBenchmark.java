@@ -0,0 +1,117 @@
+package wah.giovann.csvhandler.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import wah.giovann.csvhandler.CSVArray;
+import wah.giovann.csvhandler.CSVFileFormat;
+import wah.giovann.csvhandler.CSVReader;
+import wah.giovann.csvhandler.CSVRecord;
+import wah.giovann.csvhandler.MappedCSVReader;
+import wah.giovann.csvhandler.ParallelCSVReader;
+import wah.giovann.csvhandler.error.CSVParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Parsing benchmarks for <code>CSVReader</code>, <code>MappedCSVReader</code> and <code>ParallelCSVReader</code>.
+ * Besides the number of files parsed per second, the <code>bytes</code> counter reports the parsing throughput in
+ * bytes per second.
+ * Allocation per file can be measured with <code>-prof gc</code>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReaderBenchmark {
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"6", "60"})
+    public int columns;
+
+    @Param({DataGenerator.PLAIN, DataGenerator.QUOTED, DataGenerator.MULTILINE})
+    public String quoting;
+
+    @Param({"UTF-8", "ISO-8859-1", "UTF-16"})
+    public String charSet;
+
+    private File file;
+    private String contents;
+    private CSVReader reader;
+    private MappedCSVReader mappedReader;
+    private ParallelCSVReader parallelReader;
+
+    /**
+     * Counts the bytes parsed, so that JMH reports throughput in bytes per second.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.file = DataGenerator.writeFile(this.rows, this.columns, this.quoting, Charset.forName(this.charSet));
+        this.contents = DataGenerator.generate(this.rows, this.columns, this.quoting);
+        CSVFileFormat format = new CSVFileFormat.Builder()
+                .characterSetName(this.charSet)
+                .build();
+        this.reader = new CSVReader(format);
+        this.mappedReader = new MappedCSVReader(format);
+        this.parallelReader = new ParallelCSVReader(format);
+    }
+
+    @Benchmark
+    public CSVArray readFile(Bytes counter) throws CSVParseException {
+        counter.bytes += this.file.length();
+        return this.reader.readCSV(this.file);
+    }
+
+    @Benchmark
+    public CSVArray readString() throws CSVParseException {
+        return this.reader.readCSV(this.contents);
+    }
+
+    @Benchmark
+    public long streamFile(Bytes counter) throws CSVParseException, IOException {
+        counter.bytes += this.file.length();
+        try (Stream<CSVRecord> records = this.reader.stream(this.file)) {
+            return records.count();
+        }
+    }
+
+    @Benchmark
+    public CSVArray readMappedFile(Bytes counter) throws CSVParseException, IOException {
+        counter.bytes += this.file.length();
+        return this.mappedReader.readCSV(this.file);
+    }
+
+    @Benchmark
+    public CSVArray readFileInParallel(Bytes counter) throws CSVParseException, IOException {
+        counter.bytes += this.file.length();
+        return this.parallelReader.readCSV(this.file);
+    }
+}
@@ -0,0 +1,64 @@
+package wah.giovann.csvhandler.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import wah.giovann.csvhandler.CSVArray;
+import wah.giovann.csvhandler.CSVFileFormat;
+import wah.giovann.csvhandler.CSVReader;
+import wah.giovann.csvhandler.CSVWriter;
+import wah.giovann.csvhandler.error.CSVParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for writing a <code>CSVArray</code> to file with <code>CSVWriter</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriterBenchmark {
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"6", "60"})
+    public int columns;
+
+    private CSVArray array;
+    private CSVWriter writer;
+    private File output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws CSVParseException, IOException {
+        String contents = DataGenerator.generate(this.rows, this.columns, DataGenerator.QUOTED);
+        this.array = new CSVReader(CSVFileFormat.DEFAULT_FORMAT).readCSV(contents);
+        this.writer = new CSVWriter(CSVFileFormat.DEFAULT_FORMAT);
+        this.output = File.createTempFile("csv-benchmark-", ".csv");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.output.delete();
+    }
+
+    @Benchmark
+    public long write() {
+        this.writer.write(this.array, this.output.getAbsolutePath(), false);
+        return this.output.length();
+    }
+}
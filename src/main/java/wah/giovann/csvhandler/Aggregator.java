@@ -0,0 +1,299 @@
+package wah.giovann.csvhandler;
+
+import wah.giovann.csvhandler.error.CSVParseException;
+import wah.giovann.csvhandler.error.ValueConversionException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes <code>CSVAggregation</code>s for the groups of records with the same values in the grouping columns, in a
+ * single pass over the records of a <code>CSVArray</code> or of a parser. Each group keeps one primitive accumulator per
+ * aggregation; no record is copied, and records read from a parser are never materialized.
+ */
+final class Aggregator {
+    private final CSVAggregation[] aggregations;
+    private final String[] groupNames;
+    private final int[] groupColumns;
+    private final int[] aggregationColumns; //the column read by each aggregation, or -1
+    private final LinkedHashMap<CSVGroupKey, Group> groups = new LinkedHashMap<>();
+    private final String[] keyValues;
+    private final CSVGroupKey probe;
+
+    /**
+     * Creates an aggregator for records with the columns of <code>h</code>.
+     * @throws ArrayIndexOutOfBoundsException if a grouping or aggregated column does not exist
+     */
+    Aggregator(CSVHeader h, String[] groupColumns, CSVAggregation[] aggregations) {
+        this.aggregations = aggregations.clone();
+        this.groupNames = groupColumns.clone();
+        this.groupColumns = new int[groupColumns.length];
+        for (int i = 0; i < groupColumns.length; i++) {
+            this.groupColumns[i] = indexOf(h, groupColumns[i]);
+        }
+        this.aggregationColumns = new int[aggregations.length];
+        for (int j = 0; j < aggregations.length; j++) {
+            String column = aggregations[j].getColumn();
+            this.aggregationColumns[j] = column == null ? -1 : indexOf(h, column);
+        }
+        this.keyValues = new String[groupColumns.length];
+        this.probe = new CSVGroupKey(this.keyValues, false);
+    }
+
+    private static int indexOf(CSVHeader h, String column) {
+        int index = h.indexOfColumn(column);
+        if (index < 0) {
+            throw new ArrayIndexOutOfBoundsException("No column named \""+column+"\" exists in the header.");
+        }
+        return index;
+    }
+
+    /**
+     * Adds every record of <code>source</code>.
+     * @throws ValueConversionException if a value of a numeric aggregation is not a number
+     */
+    void addAll(CSVArray source) {
+        for (int row = 0; row < source.size(); row++) {
+            for (int i = 0; i < this.groupColumns.length; i++) {
+                this.keyValues[i] = source.valueAt(row, this.groupColumns[i]);
+            }
+            Group g = this.currentGroup();
+            g.rows++;
+            for (int j = 0; j < this.aggregations.length; j++) {
+                int c = this.aggregationColumns[j];
+                if (c < 0 || source.isMissingAt(row, c)) continue;
+                int type = this.aggregations[j].getType();
+                if (this.aggregations[j].isNumeric()) {
+                    double v;
+                    try {
+                        v = source.doubleAt(row, c);
+                    }
+                    catch (NumberFormatException e) {
+                        throw new ValueConversionException(ValueConversionException.DOUBLE, source.valueAt(row, c), -1, c);
+                    }
+                    g.add(j, type, v);
+                }
+                else {
+                    g.addValue(j, type, type == CSVAggregation.COUNT_DISTINCT ? source.valueAt(row, c) : null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds every remaining record of <code>parser</code>, parsing only the values the aggregations read. Records with
+     * fewer values than the header are treated as having empty values in the missing columns, and values past the last
+     * column are ignored.
+     * @throws ValueConversionException if a value of a numeric aggregation is not a number
+     */
+    void addAll(CSVParser parser, int totalColumns) throws CSVParseException, IOException {
+        Sink sink = new Sink(parser, totalColumns);
+        while (parser.readRow(sink)) {
+            sink.endRow();
+        }
+    }
+
+    /**
+     * Adds every remaining record read by <code>filter</code> that passes its filters. See
+     * {@link #addAll(CSVParser, int)}.
+     */
+    void addAll(RowFilter filter, int totalColumns) throws CSVParseException, IOException {
+        Sink sink = new Sink(filter.getParser(), totalColumns);
+        FieldSliceList values;
+        while ((values = filter.next()) != null) {
+            values.replay(sink);
+            sink.endRow();
+        }
+    }
+
+    /**
+     * Adds a record given as a list of values, such as the first record of a file without a header.
+     */
+    void addRow(ArrayList<String> values, CSVParser parser, int totalColumns) throws CSVParseException {
+        Sink sink = new Sink(parser, totalColumns);
+        for (int c = 0; c < values.size(); c++) {
+            char[] chars = values.get(c).toCharArray();
+            sink.field(c, chars, 0, chars.length);
+        }
+        sink.endRow();
+    }
+
+    /**
+     * Returns the group whose key is held in <code>keyValues</code>, creating it if needed.
+     */
+    private Group currentGroup() {
+        this.probe.reset(this.keyValues);
+        Group g = this.groups.get(this.probe);
+        if (g == null) {
+            g = new Group(this.aggregations.length);
+            this.groups.put(new CSVGroupKey(this.keyValues, true), g);
+        }
+        return g;
+    }
+
+    /**
+     * Returns the aggregates as a new <code>CSVArray</code>, with one record per group in the order in which the groups
+     * were first seen. The header holds the grouping columns followed by the aggregation names. Without grouping
+     * columns, the result is a single record, even if there were no records to aggregate.
+     */
+    CSVArray toCSVArray() {
+        ArrayList<String> names = new ArrayList<>(Arrays.asList(this.groupNames));
+        for (CSVAggregation a : this.aggregations) {
+            names.add(a.getName());
+        }
+        CSVHeader header = new CSVHeader(names);
+        CSVArray ret = new CSVArray(header);
+        if (this.groups.isEmpty() && this.groupColumns.length == 0) this.currentGroup();
+        for (Map.Entry<CSVGroupKey, Group> e : this.groups.entrySet()) {
+            ArrayList<String> row = new ArrayList<>(names.size());
+            for (int i = 0; i < e.getKey().size(); i++) {
+                row.add(e.getKey().get(i));
+            }
+            Group g = e.getValue();
+            for (int j = 0; j < this.aggregations.length; j++) {
+                row.add(g.result(j, this.aggregations[j]));
+            }
+            ret.add(new CSVRecord(header, row, false));
+        }
+        return ret;
+    }
+
+    /**
+     * Formats an aggregate, writing whole numbers without a fraction.
+     */
+    static String format(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) return Long.toString((long) v);
+        return Double.toString(v);
+    }
+
+    /**
+     * The accumulators of one group.
+     */
+    private static final class Group {
+        long rows = 0;
+        final long[] counts; //the values seen by each aggregation
+        final double[] values; //the running sum, minimum or maximum of each aggregation
+        final ArrayList<HashSet<String>> distinct; //the distinct values of each distinct count, or null
+
+        Group(int aggregations) {
+            this.counts = new long[aggregations];
+            this.values = new double[aggregations];
+            this.distinct = new ArrayList<>(Collections.<HashSet<String>>nCopies(aggregations, null));
+        }
+
+        void add(int j, int type, double v) {
+            switch (type) {
+                case CSVAggregation.SUM:
+                case CSVAggregation.MEAN:
+                    this.values[j] += v;
+                    break;
+                case CSVAggregation.MIN:
+                    if (this.counts[j] == 0 || v < this.values[j]) this.values[j] = v;
+                    break;
+                case CSVAggregation.MAX:
+                    if (this.counts[j] == 0 || v > this.values[j]) this.values[j] = v;
+                    break;
+            }
+            this.counts[j]++;
+        }
+
+        void addValue(int j, int type, String v) {
+            if (type == CSVAggregation.COUNT_DISTINCT) {
+                if (this.distinct.get(j) == null) this.distinct.set(j, new HashSet<>());
+                this.distinct.get(j).add(v);
+            }
+            this.counts[j]++;
+        }
+
+        String result(int j, CSVAggregation a) {
+            switch (a.getType()) {
+                case CSVAggregation.COUNT:
+                    return Long.toString(a.getColumn() == null ? this.rows : this.counts[j]);
+                case CSVAggregation.COUNT_DISTINCT:
+                    return Integer.toString(this.distinct.get(j) == null ? 0 : this.distinct.get(j).size());
+                case CSVAggregation.SUM:
+                    return format(this.values[j]);
+                case CSVAggregation.MEAN:
+                    return this.counts[j] == 0 ? "" : format(this.values[j] / this.counts[j]);
+                default:
+                    return this.counts[j] == 0 ? "" : format(this.values[j]);
+            }
+        }
+    }
+
+    /**
+     * Receives the fields of records read by a parser, keeping the group key values as <code>String</code>s and parsing
+     * the values of numeric aggregations straight from the parser's buffer.
+     */
+    private final class Sink implements CSVParser.FieldSink {
+        private final CSVParser parser;
+        private final int[] keyPosition; //the position of each column in the group key, or -1
+        private final boolean[] numeric; //whether a numeric aggregation reads each column
+        private final boolean[] text; //whether a distinct count reads each column
+        private final boolean[] present;
+        private final double[] numbers;
+        private final String[] strings;
+
+        Sink(CSVParser parser, int totalColumns) {
+            this.parser = parser;
+            this.keyPosition = new int[totalColumns];
+            Arrays.fill(this.keyPosition, -1);
+            for (int i = 0; i < groupColumns.length; i++) {
+                this.keyPosition[groupColumns[i]] = i;
+            }
+            this.numeric = new boolean[totalColumns];
+            this.text = new boolean[totalColumns];
+            for (int j = 0; j < aggregations.length; j++) {
+                int c = aggregationColumns[j];
+                if (c < 0) continue;
+                if (aggregations[j].isNumeric()) this.numeric[c] = true;
+                else if (aggregations[j].getType() == CSVAggregation.COUNT_DISTINCT) this.text[c] = true;
+            }
+            this.present = new boolean[totalColumns];
+            this.numbers = new double[totalColumns];
+            this.strings = new String[totalColumns];
+            Arrays.fill(keyValues, "");
+        }
+
+        @Override
+        public void field(int column, char[] chars, int start, int end) throws CSVParseException {
+            if (column >= this.present.length || start == end) return;
+            this.present[column] = true;
+            String s = null;
+            if (this.keyPosition[column] >= 0) {
+                s = new String(chars, start, end - start);
+                keyValues[this.keyPosition[column]] = s;
+            }
+            if (this.text[column]) {
+                this.strings[column] = s != null ? s : new String(chars, start, end - start);
+            }
+            if (this.numeric[column]) {
+                try {
+                    this.numbers[column] = NumberParser.parseDouble(chars, start, end);
+                }
+                catch (NumberFormatException e) {
+                    throw new ValueConversionException(ValueConversionException.DOUBLE,
+                            new String(chars, start, end - start), this.parser.getRecordLineNumber(), column);
+                }
+            }
+        }
+
+        void endRow() {
+            Group g = currentGroup();
+            g.rows++;
+            for (int j = 0; j < aggregations.length; j++) {
+                int c = aggregationColumns[j];
+                if (c < 0 || !this.present[c]) continue;
+                if (aggregations[j].isNumeric()) g.add(j, aggregations[j].getType(), this.numbers[c]);
+                else g.addValue(j, aggregations[j].getType(), this.strings[c]);
+            }
+            Arrays.fill(this.present, false);
+            Arrays.fill(keyValues, "");
+        }
+    }
+}
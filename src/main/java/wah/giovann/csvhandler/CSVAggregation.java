@@ -0,0 +1,151 @@
+package wah.giovann.csvhandler;
+
+/**
+ * An aggregate computed for each group of records by <code>CSVArray.aggregate</code> and <code>CSVReader.aggregate</code>,
+ * such as the number of records in the group or the sum of their values in a column.
+ * <br><br>
+ * Aggregations are created with the static factory methods of this class, one per kind of aggregate. Empty values are
+ * treated as missing: they are not counted by {@link #count(String)} or {@link #countDistinct(String)}, and are skipped
+ * by the numeric aggregates. Each aggregate becomes a column of the result, named after the aggregation, such as
+ * <code>sum(amount)</code>, unless another name is given with {@link #as(String)}.
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public final class CSVAggregation {
+    public static final int COUNT = 0;
+    public static final int SUM = 1;
+    public static final int MIN = 2;
+    public static final int MAX = 3;
+    public static final int MEAN = 4;
+    public static final int COUNT_DISTINCT = 5;
+
+    private final int type;
+    private final String column;
+    private final String name;
+
+    private CSVAggregation(int type, String column, String name) {
+        this.type = type;
+        this.column = column;
+        this.name = name;
+    }
+
+    private static CSVAggregation of(int type, String column, String function) {
+        if (column == null) throw new IllegalArgumentException("The column of a " + function + " aggregation cannot be null.");
+        return new CSVAggregation(type, column, function + "(" + column + ")");
+    }
+
+    /**
+     * Returns an aggregation counting the records of each group.
+     * @return a <code>count</code> aggregation.
+     */
+    public static CSVAggregation count() {
+        return new CSVAggregation(COUNT, null, "count");
+    }
+
+    /**
+     * Returns an aggregation counting the records of each group that have a non-empty value in <code>column</code>.
+     * @param column the column to count the values of.
+     * @return a <code>count(column)</code> aggregation.
+     */
+    public static CSVAggregation count(String column) {
+        return of(COUNT, column, "count");
+    }
+
+    /**
+     * Returns an aggregation adding up the values of <code>column</code> in each group. The sum of a group with no
+     * values is 0.
+     * @param column the numeric column to add up.
+     * @return a <code>sum(column)</code> aggregation.
+     */
+    public static CSVAggregation sum(String column) {
+        return of(SUM, column, "sum");
+    }
+
+    /**
+     * Returns an aggregation finding the smallest value of <code>column</code> in each group. The result is empty for a
+     * group with no values.
+     * @param column the numeric column to find the minimum of.
+     * @return a <code>min(column)</code> aggregation.
+     */
+    public static CSVAggregation min(String column) {
+        return of(MIN, column, "min");
+    }
+
+    /**
+     * Returns an aggregation finding the largest value of <code>column</code> in each group. The result is empty for a
+     * group with no values.
+     * @param column the numeric column to find the maximum of.
+     * @return a <code>max(column)</code> aggregation.
+     */
+    public static CSVAggregation max(String column) {
+        return of(MAX, column, "max");
+    }
+
+    /**
+     * Returns an aggregation averaging the values of <code>column</code> in each group. The result is empty for a
+     * group with no values.
+     * @param column the numeric column to average.
+     * @return a <code>mean(column)</code> aggregation.
+     */
+    public static CSVAggregation mean(String column) {
+        return of(MEAN, column, "mean");
+    }
+
+    /**
+     * Returns an aggregation counting the distinct non-empty values of <code>column</code> in each group. The values are
+     * compared as <code>String</code>s.
+     * @param column the column to count the distinct values of.
+     * @return a <code>count_distinct(column)</code> aggregation.
+     */
+    public static CSVAggregation countDistinct(String column) {
+        return of(COUNT_DISTINCT, column, "count_distinct");
+    }
+
+    /**
+     * Returns a copy of this aggregation whose result column is called <code>name</code>.
+     * @param name the name of the result column.
+     * @return the renamed aggregation.
+     */
+    public CSVAggregation as(String name) {
+        return new CSVAggregation(this.type, this.column, name);
+    }
+
+    /**
+     * Returns the kind of this aggregation, one of the constants of this class.
+     * @return the aggregation type.
+     */
+    public int getType() {
+        return this.type;
+    }
+
+    /**
+     * Returns the column this aggregation reads, or <code>null</code> if it only counts records.
+     * @return the column name.
+     */
+    public String getColumn() {
+        return this.column;
+    }
+
+    /**
+     * Returns the name of the result column of this aggregation.
+     * @return the result column name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns whether this aggregation reads its column as numbers.
+     */
+    boolean isNumeric() {
+        return this.type == SUM || this.type == MIN || this.type == MAX || this.type == MEAN;
+    }
+
+    /**
+     * Returns a <code>String</code> representation of this aggregation.
+     * @return the name of the result column.
+     */
+    public String toString() {
+        return this.name;
+    }
+}
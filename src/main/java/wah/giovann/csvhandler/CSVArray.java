@@ -1,11 +1,19 @@
 package wah.giovann.csvhandler;
 
 import wah.giovann.csvhandler.error.CSVIntegrityException;
+import wah.giovann.csvhandler.error.ValueConversionException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
 
 /**
  * The <code>CSVArray</code> class is a collection <code>CSVRecord</code> objects that represents the contents
@@ -24,7 +32,16 @@ import java.util.Set;
  * @version 1.0
  */
 public class CSVArray extends ArrayList<CSVRecord> {
+    public static final int HASH_INDEX = 0;
+    public static final int SORTED_INDEX = 1;
+    public static final int NUMERIC_INDEX = 2;
+    public static final int INNER_JOIN = 0;
+    public static final int LEFT_JOIN = 1;
+    public static final int OUTER_JOIN = 2;
+
     private CSVHeader header;
+    private HashMap<String, ColumnIndex[]> indexes = null;
+    private int version = 0; //changes to the records that do not count as structural modifications of the list
 
     /**
      * Constructs a new <code>CSVArray</code> instance.
@@ -49,6 +66,7 @@ public class CSVArray extends ArrayList<CSVRecord> {
     protected CSVArray(CSVHeader h) {
         super();
         this.header = h;
+        if (h != null) h.addArray(this);
     }
 
     /**
@@ -60,6 +78,7 @@ public class CSVArray extends ArrayList<CSVRecord> {
     protected CSVArray(Collection c, CSVHeader h) {
         super(c);
         this.header = h;
+        if (h != null) h.addArray(this);
     }
 
     /**
@@ -69,18 +88,12 @@ public class CSVArray extends ArrayList<CSVRecord> {
      * @param columnIndex Index of the header column with which records will be sorted.
      * @param numeric If true, treat the values found at the index <code>columnIndex</code> as numeric. Otherwise, treat them as alphanumeric.
      * @param ascendingOrder If true, sort the records in ascending order. Otherwise, sort the records in descending order.
+     * Alphanumeric values are in their natural <code>String</code> order, so empty values come first in ascending order
+     * and last in descending order; see {@link #sortBy(CSVSortKey)} for sorting by several columns.
+     * @throws NumberFormatException if <code>numeric</code> is true and a value of the column, even an empty one, is not a number
      */
     public void sortBy(int columnIndex, boolean numeric, boolean ascendingOrder) {
-        if (ascendingOrder) {
-            this.sort((CSVRecord r1, CSVRecord r2) -> (numeric ?
-                    new Double(r1.getDouble(columnIndex)).compareTo(new Double(r2.getDouble(columnIndex))) :
-                    r1.get(columnIndex).compareTo(r2.get(columnIndex))));
-        }
-        else {
-            this.sort((CSVRecord r1, CSVRecord r2) -> (numeric ?
-                    new Double(r2.getDouble(columnIndex)).compareTo(new Double(r1.getDouble(columnIndex))) :
-                    r2.get(columnIndex).compareTo(r1.get(columnIndex))));
-        }
+        this.sortBy(new CSVSortKey.SortColumn[]{new CSVSortKey.SortColumn(columnIndex, numeric, ascendingOrder, ascendingOrder, true)});
     }
 
     /**
@@ -90,62 +103,374 @@ public class CSVArray extends ArrayList<CSVRecord> {
      * @param column Header column with which records will be sorted.
      * @param numeric If true, treat the values found at the index <code>columnIndex</code> as numeric. Otherwise, treat them as alphanumeric.
      * @param ascendingOrder If true, sort the records in ascending order. Otherwise, sort the records in descending order.
+     * @throws NumberFormatException if <code>numeric</code> is true and a value of the column, even an empty one, is not a number
      */
     public void sortBy(String column, boolean numeric, boolean ascendingOrder) {
         int index = this.header.indexOfColumn(column);
         this.sortBy(index, numeric, ascendingOrder);
     }
 
+    /**
+     * Sorts the <code>CSVArray</code> records by the columns of <code>key</code>, in order of precedence. The values of
+     * the key columns are read once, numeric values are parsed once, and records that are equal in every key column
+     * keep their relative order. Large arrays are sorted in parallel in the common <code>ForkJoinPool</code>.
+     * @param key The columns to sort the records by.
+     * @throws ArrayIndexOutOfBoundsException if a column of the key does not exist
+     * @throws ValueConversionException if a value of a numeric key column is not a number
+     */
+    public void sortBy(CSVSortKey key) {
+        this.sortBy(key.resolve(this.header));
+    }
+
+    /**
+     * Sorts the records by the given columns, reading their keys once and sorting a permutation of the row indices.
+     */
+    void sortBy(CSVSortKey.SortColumn[] columns) {
+        for (CSVSortKey.SortColumn c : columns) {
+            c.extract(this);
+        }
+        int[] order = new int[this.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        IndexSorter.parallelSort(order, order.length, (r1, r2) -> {
+            for (CSVSortKey.SortColumn c : columns) {
+                int cmp = c.compare(r1, r2);
+                if (cmp != 0) return cmp;
+            }
+            return 0;
+        }, ForkJoinPool.commonPool());
+        this.permute(order);
+    }
+
+    /**
+     * Reorders the records so that the record at <code>i</code> is the one that was at <code>permutation[i]</code>.
+     */
+    void permute(int[] permutation) {
+        CSVRecord[] records = this.toArray(new CSVRecord[this.size()]);
+        for (int i = 0; i < permutation.length; i++) {
+            super.set(i, records[permutation[i]]);
+        }
+        this.changed();
+    }
+
     /**
      * Returns a HashMap containing a grouping of CSVRecords in this CSVArray based on
-     * the values passed through the column variable.
+     * the values passed through the column variable. Each group is a new CSVArray holding copies of its records, mapped
+     * to the values of its records in the grouping columns, joined by <code>'|'</code>. See {@link #group(String...)}
+     * for a grouping that does not copy the records, and keeps apart values that join to the same <code>String</code>.
      * @param columns The columns to group the CSVArray objects by.
      * @return A HashMap object
      */
     public HashMap<String, CSVArray> groupBy(String... columns) {
         if (columns.length == 0) return null;
-        HashMap<String, CSVArray> map = new HashMap<>();
-        String key;
-        for (CSVRecord r : this) {
-            if (columns.length == 1) {
-                key = r.get(columns[0]);
-            } else {
-                key = new String();
-                for (int i = 0; i < columns.length; i++) {
-                    key += r.get(columns[i]);
-                    if (i != columns.length - 1) key += "|";
-                }
-            }
-            CSVArray arr = map.get(key);
-            if (arr == null) {
-                arr = new CSVArray();
-                arr.putHeader(this.getHeaderList());
-                arr.insertData((ArrayList<String>)r.getValues());
-                map.put(key, arr);
+        HashMap<String, int[]> rows = new HashMap<>();
+        for (Map.Entry<CSVGroupKey, int[]> e : this.group(columns).getGroups().entrySet()) {
+            String key = e.getKey().join('|');
+            int[] members = rows.get(key);
+            if (members == null) {
+                rows.put(key, e.getValue());
             }
-            else {
-                arr.insertData((ArrayList<String>)r.getValues());
+            else { //different values joined to the same key, as in "a|b" + "c" and "a" + "b|c"
+                int[] merged = Arrays.copyOf(members, members.length + e.getValue().length);
+                System.arraycopy(e.getValue(), 0, merged, members.length, e.getValue().length);
+                Arrays.sort(merged);
+                rows.put(key, merged);
             }
         }
+        HashMap<String, CSVArray> map = new HashMap<>();
+        for (Map.Entry<String, int[]> e : rows.entrySet()) {
+            map.put(e.getKey(), this.copyRows(e.getValue(), e.getValue().length));
+        }
         return map;
     }
 
     /**
-     * Filter this array based on the selected values of the selected columns
+     * Groups the records of this <code>CSVArray</code> by their values in the specified columns. The groups keep the
+     * indices of their records instead of copies of them; see <code>CSVGrouping</code>.
+     * @param columns The columns to group the records by.
+     * @return A <code>CSVGrouping</code> of the records of this array.
+     * @throws ArrayIndexOutOfBoundsException if one of the columns does not exist
+     */
+    public CSVGrouping group(String... columns) {
+        return CSVGrouping.group(this, this.indicesOf(columns));
+    }
+
+    /**
+     * Groups the records of this <code>CSVArray</code> by their values in the specified columns, like
+     * {@link #group(String...)}, but splits large arrays into partitions that are grouped in parallel in the common
+     * <code>ForkJoinPool</code>. The result is the same as that of <code>group</code>. The array must not be modified
+     * while it is being grouped.
+     * @param columns The columns to group the records by.
+     * @return A <code>CSVGrouping</code> of the records of this array.
+     * @throws ArrayIndexOutOfBoundsException if one of the columns does not exist
+     */
+    public CSVGrouping parallelGroup(String... columns) {
+        return CSVGrouping.parallelGroup(this, this.indicesOf(columns), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes aggregates, such as counts, sums or means, for each group of records with the same values in
+     * <code>groupColumns</code>, in a single pass over the records and without copying them. The result has one record
+     * per group, in the order in which the groups first appear, holding the values of the grouping columns followed by
+     * one value per aggregation, in columns named after the grouping columns and the aggregations. With no grouping
+     * columns, the result is a single record of aggregates over the whole array.
+     * <br><br>
+     * For example, <code>arr.aggregate(new String[]{"region"}, CSVAggregation.count(), CSVAggregation.mean("amount"))</code>
+     * has the columns <code>region</code>, <code>count</code> and <code>mean(amount)</code>.
+     * @param groupColumns The columns to group the records by.
+     * @param aggregations The aggregates to compute for each group.
+     * @return A new <code>CSVArray</code> of aggregates.
+     * @throws ArrayIndexOutOfBoundsException if one of the columns does not exist
+     * @throws ValueConversionException if a value of a numeric aggregation is not a number
+     */
+    public CSVArray aggregate(String[] groupColumns, CSVAggregation... aggregations) {
+        Aggregator aggregator = new Aggregator(this.header, groupColumns, aggregations);
+        aggregator.addAll(this);
+        return aggregator.toCSVArray();
+    }
+
+    /**
+     * Joins the records of this array with the records of <code>other</code> that have the same values in the key
+     * columns, compared as <code>String</code>s. The result has a record for each pair of matching records, holding the
+     * values of the record of this array followed by those of the record of <code>other</code> that are not in key
+     * columns. Its columns are those of this array followed by the other columns of <code>other</code>; a column of
+     * <code>other</code> whose name is already taken is renamed with the first free suffix <code>_2</code>,
+     * <code>_3</code>, and so on.
+     * <br><br>
+     * The <code>joinType</code> determines what happens to records without a match. An <code>INNER_JOIN</code> leaves
+     * them out. A <code>LEFT_JOIN</code> keeps the records of this array, with empty values in the columns of
+     * <code>other</code>. An <code>OUTER_JOIN</code> also keeps the records of <code>other</code>, after all the others,
+     * with their key values in the key columns of this array and empty values in its other columns. The records of the
+     * result are in the order of the records of this array, and the matches of each record in the order of
+     * <code>other</code>.
+     * <br><br>
+     * If both arrays are sorted by their key columns in ascending alphanumeric order, they are joined in a single merging
+     * pass; otherwise, the records of <code>other</code> are grouped by their key values in a hash table.
+     * @param other The array to join with this array.
+     * @param leftColumns The key columns of this array.
+     * @param rightColumns The key columns of <code>other</code>, matched with <code>leftColumns</code> in order.
+     * @param joinType One of <code>INNER_JOIN</code>, <code>LEFT_JOIN</code> or <code>OUTER_JOIN</code>.
+     * @return A new <code>CSVArray</code> of joined records.
+     * @throws ArrayIndexOutOfBoundsException if one of the columns does not exist
+     * @throws IllegalArgumentException if the numbers of key columns differ or are zero, or if the join type is unknown
+     */
+    public CSVArray join(CSVArray other, String[] leftColumns, String[] rightColumns, int joinType) {
+        if (leftColumns.length == 0 || leftColumns.length != rightColumns.length) {
+            throw new IllegalArgumentException("A join needs the same positive number of key columns on both sides.");
+        }
+        if (joinType < INNER_JOIN || joinType > OUTER_JOIN) throw new IllegalArgumentException("Unknown join type: " + joinType);
+        return new Joiner(this, other, this.indicesOf(leftColumns), other.indicesOf(rightColumns), joinType).join();
+    }
+
+    /**
+     * Filter this array based on the selected values of the selected columns. If one of the columns has an index (see
+     * {@link #createIndex(String)}), only the records holding the value of that column are examined.
      * @param columns The columns to look for the values
      * @param values The values associated with the columns to look for.
      * @return A new CSVArray containing the filtered values.
      */
     public CSVArray filter(String[] columns, String[] values) {
-        CSVArray ret = new CSVArray();
-        ret.putHeader(this.getHeaderList());
-        m: for (CSVRecord r : this) {
-            for (int i = 0; i < columns.length; i++) {
-                if (!r.get(columns[i]).equals(values[i])) continue m;
+        int[] indices = this.indicesOf(columns);
+        int[] candidates = null;
+        for (int i = 0; i < columns.length && candidates == null; i++) {
+            ColumnIndex index = this.getEqualityIndex(columns[i]);
+            if (index != null) candidates = index.lookup(this, values[i]);
+        }
+        int total = candidates == null ? this.size() : candidates.length;
+        int[] matches = new int[Math.min(total, 16)];
+        int count = 0;
+        m: for (int k = 0; k < total; k++) {
+            int row = candidates == null ? k : candidates[k];
+            for (int i = 0; i < indices.length; i++) {
+                if (!this.valueAt(row, indices[i]).equals(values[i])) continue m;
             }
-            ret.insertData((ArrayList<String>)r.getValues());
+            if (count == matches.length) matches = Arrays.copyOf(matches, Math.max(16, count * 2));
+            matches[count++] = row;
         }
-        return ret;
+        return this.copyRows(matches, count);
+    }
+
+    /**
+     * Returns the records of this array that satisfy <code>predicate</code>, in the order in which they appear. The
+     * records are not copied: the returned <code>CSVArray</code> holds the records of this array and shares its header,
+     * so changes to their values are visible in both arrays, and the columns of the result should only be changed
+     * through this array. For a <code>ColumnarCSVArray</code>, the result is a new <code>ColumnarCSVArray</code> of the
+     * matching rows.
+     * @param predicate The condition the records must satisfy.
+     * @return A <code>CSVArray</code> of the matching records.
+     */
+    public CSVArray filter(Predicate<? super CSVRecord> predicate) {
+        int[] matches = new int[16];
+        int count = 0;
+        for (int row = 0; row < this.size(); row++) {
+            if (predicate.test(this.get(row))) {
+                if (count == matches.length) matches = Arrays.copyOf(matches, count * 2);
+                matches[count++] = row;
+            }
+        }
+        return this.select(matches, count);
+    }
+
+    /**
+     * Builds a hash index on the specified column; see {@link #createIndex(String, int)}.
+     * @param column The column to index.
+     * @throws ArrayIndexOutOfBoundsException if the column does not exist
+     */
+    public void createIndex(String column) {
+        this.createIndex(column, HASH_INDEX);
+    }
+
+    /**
+     * Builds an index of the specified type on the specified column, replacing any index of the same type on that
+     * column. Queries on the column then use the index instead of examining every record:
+     * <br><br>
+     * A <code>HASH_INDEX</code> finds the records holding a value, for <code>filter</code> and <code>findFirst</code>.
+     * A <code>SORTED_INDEX</code> keeps the records in the alphanumeric order of their values, for the same queries and
+     * for {@link #range(String, String, String)}. A <code>NUMERIC_INDEX</code> keeps the records in the numeric order
+     * of their values, for {@link #range(String, double, double)}; records with an empty value are left out of it.
+     * <br><br>
+     * Indexes are kept up to date automatically: an index is rebuilt the first time it is used after records have been
+     * added, removed, replaced or reordered (for example by <code>insertData</code>, <code>set</code> or
+     * <code>sortBy</code>), after a value has been set in a record, or after the columns have changed. An index whose
+     * column has been removed or renamed is dropped.
+     * @param column The column to index.
+     * @param type The type of index, one of <code>HASH_INDEX</code>, <code>SORTED_INDEX</code> and <code>NUMERIC_INDEX</code>.
+     * @throws ArrayIndexOutOfBoundsException if the column does not exist
+     * @throws IllegalArgumentException if the type is not a valid index type
+     * @throws ValueConversionException if a <code>NUMERIC_INDEX</code> column holds a value that is not a number
+     */
+    public void createIndex(String column, int type) {
+        if (type < HASH_INDEX || type > NUMERIC_INDEX) throw new IllegalArgumentException("Invalid index type: " + type);
+        this.indicesOf(new String[]{column});
+        ColumnIndex index = new ColumnIndex(column, type);
+        index.update(this); //build it now rather than on first use
+        if (this.indexes == null) this.indexes = new HashMap<>();
+        this.indexes.computeIfAbsent(column, k -> new ColumnIndex[NUMERIC_INDEX + 1])[type] = index;
+    }
+
+    /**
+     * Returns whether the specified column has an index of any type.
+     * @param column The name of the column.
+     * @return <code>true</code> if {@link #createIndex(String, int)} was called for the column, and it still exists.
+     */
+    public boolean hasIndex(String column) {
+        for (int type = HASH_INDEX; type <= NUMERIC_INDEX; type++) {
+            if (this.getIndex(column, type) != null) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the indexes of the specified column, if there are any.
+     * @param column The name of the column.
+     */
+    public void dropIndex(String column) {
+        if (this.indexes != null) this.indexes.remove(column);
+    }
+
+    /**
+     * Returns the first record, in the order of this array, whose value in the specified column is <code>value</code>.
+     * If the column has a hash or sorted index, the record is found without examining the other records.
+     * @param column The column to look for the value in.
+     * @param value The value to look for.
+     * @return The first matching record, or <code>null</code> if there is none.
+     * @throws ArrayIndexOutOfBoundsException if the column does not exist
+     */
+    public CSVRecord findFirst(String column, String value) {
+        int c = this.indicesOf(new String[]{column})[0];
+        ColumnIndex index = this.getEqualityIndex(column);
+        if (index != null) {
+            int[] rows = index.lookup(this, value);
+            return rows.length == 0 ? null : this.get(rows[0]);
+        }
+        for (int row = 0; row < this.size(); row++) {
+            if (this.valueAt(row, c).equals(value)) return this.get(row);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the records whose value in the specified column is between <code>from</code> and <code>to</code>, both
+     * inclusive, compared as <code>String</code>s. A <code>null</code> bound leaves that end of the range open. The
+     * records are in the order in which they appear in this array, and are not copied, as with
+     * {@link #filter(Predicate)}. If the column has a sorted index, only the matching records are examined.
+     * @param column The column to compare.
+     * @param from The smallest value to include, or <code>null</code>.
+     * @param to The largest value to include, or <code>null</code>.
+     * @return A <code>CSVArray</code> of the matching records.
+     * @throws ArrayIndexOutOfBoundsException if the column does not exist
+     */
+    public CSVArray range(String column, String from, String to) {
+        int c = this.indicesOf(new String[]{column})[0];
+        ColumnIndex index = this.getIndex(column, SORTED_INDEX);
+        if (index != null) {
+            int[] rows = index.range(this, from, to);
+            return this.select(rows, rows.length);
+        }
+        return this.filter(r -> {
+            String v = r.get(c);
+            return (from == null || v.compareTo(from) >= 0) && (to == null || v.compareTo(to) <= 0);
+        });
+    }
+
+    /**
+     * Returns the records whose value in the specified column, read as a <code>double</code>, is between
+     * <code>from</code> and <code>to</code>, both inclusive. Records with an empty value are left out. The records are
+     * in the order in which they appear in this array, and are not copied, as with {@link #filter(Predicate)}. If the
+     * column has a numeric index, only the matching records are examined.
+     * @param column The column to compare.
+     * @param from The smallest value to include, such as <code>Double.NEGATIVE_INFINITY</code>.
+     * @param to The largest value to include, such as <code>Double.POSITIVE_INFINITY</code>.
+     * @return A <code>CSVArray</code> of the matching records.
+     * @throws ArrayIndexOutOfBoundsException if the column does not exist
+     * @throws ValueConversionException if the column holds a value that is not a number
+     */
+    public CSVArray range(String column, double from, double to) {
+        int c = this.indicesOf(new String[]{column})[0];
+        ColumnIndex index = this.getIndex(column, NUMERIC_INDEX);
+        if (index != null) {
+            int[] rows = index.range(this, from, to);
+            return this.select(rows, rows.length);
+        }
+        int[] matches = new int[16];
+        int count = 0;
+        for (int row = 0; row < this.size(); row++) {
+            if (this.isMissingAt(row, c)) continue;
+            double v;
+            try {
+                v = this.doubleAt(row, c);
+            }
+            catch (NumberFormatException e) {
+                throw new ValueConversionException(ValueConversionException.DOUBLE, this.valueAt(row, c), -1, c);
+            }
+            if (v >= from && v <= to) {
+                if (count == matches.length) matches = Arrays.copyOf(matches, count * 2);
+                matches[count++] = row;
+            }
+        }
+        return this.select(matches, count);
+    }
+
+    /**
+     * Returns the index of the specified type on the specified column, or <code>null</code> if there is none.
+     */
+    private ColumnIndex getIndex(String column, int type) {
+        ColumnIndex[] forColumn = this.indexes == null ? null : this.indexes.get(column);
+        if (forColumn == null) return null;
+        if (forColumn[type] != null && !forColumn[type].isValid(this)) {
+            this.indexes.remove(column); //the column was removed or renamed
+            return null;
+        }
+        return forColumn[type];
+    }
+
+    /**
+     * Returns a hash or sorted index on the specified column, or <code>null</code> if there is none.
+     */
+    private ColumnIndex getEqualityIndex(String column) {
+        ColumnIndex index = this.getIndex(column, HASH_INDEX);
+        return index != null ? index : this.getIndex(column, SORTED_INDEX);
     }
 
     /**
@@ -157,6 +482,17 @@ public class CSVArray extends ArrayList<CSVRecord> {
         return this.header.getColumnsList();
     }
 
+    /**
+     * Returns a <code>CSVColumnHandle</code> for the specified header column, already resolved against this array's
+     * header. Accessing the values of records through the handle avoids looking up the column name again for each
+     * record.
+     * @param column The name of the header column.
+     * @return A <code>CSVColumnHandle</code> for the column.
+     */
+    public CSVColumnHandle getColumnHandle(String column) {
+        return new CSVColumnHandle(this.header, column);
+    }
+
     /**
      * Returns the name of the header column at the specified <code>index</code>. If the array does not have
      * a header, the returned <code>String</code> will have the prefix "<code>DUMMY HEADER:</code>", followed simply
@@ -213,19 +549,12 @@ public class CSVArray extends ArrayList<CSVRecord> {
 
     /**
      * Removes the header column at the specified index and all <code>CSVRecord</code> values at that column index.
+     * Only the header is changed, so this takes the same time however many records the array holds: the values of the
+     * removed column stay in the records until {@link #compact()} is called.
      * @param columnIndex The index of the column to remove.
      */
     public void removeColumn(int columnIndex) {
-        this.forEach(item -> {
-            String s = item.remove(columnIndex);
-            if (s == null) {
-                ArrayList<Object> err = new ArrayList<>();
-                err.add(columnIndex);
-                err.add(item);
-                throw new CSVIntegrityException(CSVIntegrityException.COLUMN_REMOVAL_FAILED, err);
-            }
-        });
-        if (this.header.removeColumn(columnIndex) == null) {
+        if (columnIndex < 0 || columnIndex >= this.header.totalColumns() || this.header.removeColumn(columnIndex) == null) {
             ArrayList<Object> err = new ArrayList<>();
             err.add(columnIndex);
             err.add(this.header);
@@ -260,9 +589,6 @@ public class CSVArray extends ArrayList<CSVRecord> {
     public void addDummyColumn(int columnIndex) {
         if (this.header.getIsDummyHeader()) {
             this.header.addDummyColumn(columnIndex);
-            this.forEach(item -> {
-                item.insert(columnIndex, "");
-            });
         }
     }
 
@@ -277,9 +603,6 @@ public class CSVArray extends ArrayList<CSVRecord> {
     public void addColumn(int columnIndex, String columnName) {
         if (!this.header.getIsDummyHeader()) {
             this.header.addColumn(columnIndex, columnName);
-            this.forEach(item -> {
-               item.insert(columnIndex, "");
-            });
         }
     }
 
@@ -298,6 +621,7 @@ public class CSVArray extends ArrayList<CSVRecord> {
     public void putHeader(ArrayList<String> newHeader) {
         if (this.header == null) {
             this.header = new CSVHeader(newHeader);
+            this.header.addArray(this);
         }
         else {
             this.header.setIsDummyHeader(false);
@@ -312,9 +636,32 @@ public class CSVArray extends ArrayList<CSVRecord> {
      */
     public void swapColumns(int index1, int index2) {
         this.header.swapColumns(index1, index2);
-        this.forEach(item -> {
-           item.swapValues(index1, index2);
-        });
+    }
+
+    /**
+     * Rewrites the values of every <code>CSVRecord</code> in this array in column order.
+     * <br><br>
+     * <code>removeColumn</code>, <code>addColumn</code>, <code>addDummyColumn</code> and <code>swapColumns</code> only
+     * change the header, which maps each column to where its values are held in the records. Until the array is
+     * compacted, the values of removed columns still take up memory, and every value is accessed through this map.
+     * After a series of column changes, calling this method once releases the removed values and restores direct
+     * access. It does nothing if the columns have not changed since the array was last compacted.
+     * <br><br>
+     * The header may be shared with other arrays, such as those returned by <code>filter</code>; the records of all of
+     * them are rewritten.
+     */
+    public void compact() {
+        int[] slots = this.header.compact();
+        if (slots != null) {
+            List<CSVArray> arrays = this.header.getArrays();
+            arrays.add(this); //in case it was not registered; records are only rewritten once
+            Set<CSVRecord> rewritten = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (CSVArray a : arrays) {
+                for (CSVRecord r : a) {
+                    if (r.getSharedHeader() == this.header && rewritten.add(r)) r.compactData(slots);
+                }
+            }
+        }
     }
 
     /**
@@ -398,11 +745,101 @@ public class CSVArray extends ArrayList<CSVRecord> {
     public void copyState(CSVArray other) {
         this.clear();
         this.header = new CSVHeader(other.header);
+        this.header.addArray(this);
+        this.header.compact(); //the values are copied in column order
         for (CSVRecord r : other) {
             this.insertData((ArrayList<String>)r.getValues());
         }
     }
 
+    CSVHeader getHeader() {
+        return this.header;
+    }
+
+    @Override
+    public CSVRecord set(int index, CSVRecord element) {
+        this.changed();
+        return super.set(index, element);
+    }
+
+    /**
+     * Records a change to the records of this array that does not change its size, such as replacing a record.
+     */
+    void changed() {
+        this.version++;
+    }
+
+    /**
+     * Returns a number that changes whenever records are added to, removed from, replaced in or reordered in this
+     * array.
+     */
+    int version() {
+        return this.modCount + this.version;
+    }
+
+    /**
+     * Returns the value at column <code>column</code> of the record at <code>row</code>.
+     */
+    String valueAt(int row, int column) {
+        return this.get(row).get(column);
+    }
+
+    /**
+     * Returns whether the value at column <code>column</code> of the record at <code>row</code> is empty.
+     */
+    boolean isMissingAt(int row, int column) {
+        return this.get(row).isMissing(column);
+    }
+
+    /**
+     * Returns the value at column <code>column</code> of the record at <code>row</code> as a <code>double</code>.
+     * @throws NumberFormatException if the value is not a number
+     */
+    double doubleAt(int row, int column) {
+        return this.get(row).getDouble(column);
+    }
+
+    /**
+     * Returns the indices of the specified columns in the header.
+     * @throws ArrayIndexOutOfBoundsException if one of the columns does not exist
+     */
+    int[] indicesOf(String[] columns) {
+        int[] indices = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            indices[i] = this.header.indexOfColumn(columns[i]);
+            if (indices[i] < 0) {
+                throw new ArrayIndexOutOfBoundsException("No column named \""+columns[i]+"\" exists in this CSVArray.");
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Returns a new <code>CSVArray</code> holding the given records of this array, in the given order. The new array
+     * shares the header and the records of this array.
+     */
+    CSVArray select(int[] rowIndices, int count) {
+        CSVArray ret = new CSVArray(this.header);
+        ret.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            ret.add(this.get(rowIndices[i]));
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a new <code>CSVArray</code> holding copies of the given records of this array, in the given order, with a
+     * header of its own.
+     */
+    CSVArray copyRows(int[] rowIndices, int count) {
+        CSVArray ret = new CSVArray();
+        ret.putHeader(this.getHeaderList());
+        for (int i = 0; i < count; i++) {
+            ret.insertData((ArrayList<String>)this.get(rowIndices[i]).getValues());
+        }
+        return ret;
+    }
+
     /**
      * Returns a <code>String</code> representation of this <code>CSVArray</code> instance, using the specification
      * given in the <code>format</code> argument.
@@ -413,7 +850,7 @@ public class CSVArray extends ArrayList<CSVRecord> {
         StringBuilder sb = new StringBuilder();
         if (!this.header.getIsDummyHeader()){
             for (int i = 0; i < header.totalColumns(); i++){
-                sb.append(header.getColumnName(i));
+                CSVWriter.appendValue(sb, header.getColumnName(i), format.getDelimiter());
                 if (i < header.totalColumns()-1) sb.append(format.getDelimiter());
                 else {
                     for (char c : format.getOutputFileLineEnd()){
@@ -423,7 +860,7 @@ public class CSVArray extends ArrayList<CSVRecord> {
             }
         }
         this.forEach(item ->{
-            sb.append(((CSVRecord)item).getRecordString(format.getDelimiter()));
+            item.appendRecordString(sb, format.getDelimiter());
             for (char c : format.getOutputFileLineEnd()){
                 sb.append(c);
             }
@@ -0,0 +1,88 @@
+package wah.giovann.csvhandler;
+
+/**
+ * A <code>CSVColumnHandle</code> refers to a header column by name, and remembers the index the name resolved to.
+ * <br><br>
+ * Accessing a <code>CSVRecord</code> value by column name looks the name up in the record's header every time. In a
+ * loop over many records, a handle created once before the loop resolves the name only once instead: as long as the
+ * records share the same, unmodified header, every access goes straight to the remembered index. If the handle is
+ * used with a record of another header, or after the columns of the header have been changed (for example by
+ * <code>CSVArray.removeColumn</code> or <code>CSVArray.swapColumns</code>), the name is simply resolved again.
+ * <br><br>
+ * For example, to add up the <code>amount</code> column of a <code>CSVArray</code> called <code>arr</code>:
+ * <br><br>
+ *
+ *     <code>&nbsp;&nbsp;CSVColumnHandle amount = arr.getColumnHandle("amount");</code><br>
+ *     <code>&nbsp;&nbsp;double sum = 0;</code><br>
+ *     <code>&nbsp;&nbsp;for (CSVRecord r : arr) sum += r.getDouble(amount);</code><br>
+ * <br>
+ * Handles are immutable apart from their cached resolution, which is replaced atomically, so a handle can be shared
+ * between threads.
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public final class CSVColumnHandle {
+    private final String name;
+    private Resolution resolution;
+
+    /**
+     * Creates a new handle for the header column <code>columnName</code>. The name is resolved the first time the
+     * handle is used.
+     * @param columnName the name of the column.
+     */
+    public CSVColumnHandle(String columnName) {
+        this.name = columnName;
+        this.resolution = null;
+    }
+
+    /**
+     * Creates a new handle for the header column <code>columnName</code>, already resolved against <code>h</code>.
+     */
+    CSVColumnHandle(CSVHeader h, String columnName) {
+        this(columnName);
+        this.indexIn(h);
+    }
+
+    /**
+     * Returns the name of the column this handle refers to.
+     * @return the column name.
+     */
+    public String getColumnName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the index of the column in <code>h</code>, or -1 if <code>h</code> has no such column.
+     */
+    int indexIn(CSVHeader h) {
+        Resolution r = this.resolution;
+        if (r == null || r.header != h || r.modCount != h.getModCount()) {
+            r = new Resolution(h, h.getModCount(), h.indexOfColumn(this.name));
+            this.resolution = r;
+        }
+        return r.index;
+    }
+
+    /**
+     * Returns a <code>String</code> representation of this handle.
+     * @return the column name of this handle.
+     */
+    public String toString() {
+        return this.name;
+    }
+
+    /**
+     * The index a name resolved to in one version of a header.
+     */
+    private static final class Resolution {
+        final CSVHeader header;
+        final int modCount;
+        final int index;
+
+        Resolution(CSVHeader header, int modCount, int index) {
+            this.header = header;
+            this.modCount = modCount;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package wah.giovann.csvhandler;
+
+import wah.giovann.csvhandler.error.CSVParseException;
+import wah.giovann.csvhandler.error.ValueConversionException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <code>CSVExternalSorter</code> sorts .csv files that are too large to be held in memory.
+ * <br><br>
+ * The records of the input file are read one at a time and collected until their estimated size reaches the memory
+ * budget of the sorter. Each such batch is sorted with <code>CSVArray.sortBy(CSVSortKey)</code> and written to a
+ * temporary run file; the sorted runs are then merged into the output file, reading one record of each run at a time.
+ * Records are compared exactly as by <code>CSVArray.sortBy(CSVSortKey)</code>, and the sort is stable: records that
+ * are equal in every key column keep their order from the input file. Input that fits within the budget is sorted in
+ * memory, without temporary files.
+ * <br><br>
+ * The input is read with the <code>CSVFileFormat</code> of the sorter, and the output is written with it, as by a
+ * <code>CSVWriter</code>. The memory budget bounds the records held by the sorter; the heap should leave room for the
+ * key values extracted to sort each batch, which take a few tens of bytes per record and key column.
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public class CSVExternalSorter {
+    private static final int maxMergeWidth = 64; //the most runs merged at once; more runs are merged in several passes
+    private static final int recordOverhead = 64; //the estimated size of a record without its values, in bytes
+    private static final int valueOverhead = 48; //the estimated size of a String without its characters, in bytes
+    private static final CSVFileFormat runFormat = new CSVFileFormat.Builder()
+            .hasHeader(false)
+            .trimSpace(false)
+            .characterSetName(CSVFileFormat.UTF_8_CHARSET)
+            .build();
+    private CSVFileFormat format;
+    private long memoryBudget;
+    private File tempDirectory;
+
+    /**
+     *Creates a new <code>CSVExternalSorter</code> instance for files of the given format, with a memory budget of a
+     * quarter of the maximum heap size.
+     * @param format the format of the input and output files
+     */
+    public CSVExternalSorter(CSVFileFormat format) {
+        this(format, Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /**
+     *Creates a new <code>CSVExternalSorter</code> instance for files of the given format.
+     * @param format the format of the input and output files
+     * @param memoryBudget the approximate number of bytes of records to hold in memory at once
+     * @throws IllegalArgumentException if the budget is not positive
+     */
+    public CSVExternalSorter(CSVFileFormat format, long memoryBudget) {
+        this.format = format;
+        this.setMemoryBudget(memoryBudget);
+        this.tempDirectory = null;
+    }
+
+    /**
+     *Sorts the records of the <code>File</code> argument by the columns of <code>key</code>, and writes them to the file
+     * at <code>outputPath</code>, after the header of the input file unless the format specifies that it has none. The
+     * output file is overwritten, and must not be the input file. The contents of the input file must conform to
+     * specification RFC 4180 in order to be properly parsed.
+     * @param input A reference to the file to sort
+     * @param outputPath the path where the sorted file will be saved.
+     * @param key The columns to sort the records by.
+     * @throws CSVParseException if the input file cannot be parsed
+     * @throws IOException if a file cannot be read or written
+     * @throws ArrayIndexOutOfBoundsException if a column of the key does not exist
+     * @throws ValueConversionException if a value of a numeric key column is not a number
+     */
+    public void sort(File input, String outputPath, CSVSortKey key) throws CSVParseException, IOException {
+        ArrayList<File> runs = new ArrayList<>();
+        try {
+            try (CSVRecordIterator records = new CSVReader(this.format).iterator(input)) {
+                CSVHeader header = records.getHeader();
+                if (header == null) { //empty input
+                    try (CSVWriter w = new CSVWriter(this.format)) {
+                        w.open(outputPath, false);
+                    }
+                    return;
+                }
+                CSVSortKey.SortColumn[] columns = key.resolve(header);
+                CSVArray batch = new CSVArray(header);
+                long batchSize = 0;
+                CSVRecord r;
+                while ((r = records.nextRecord()) != null) {
+                    batch.add(r);
+                    batchSize += estimateSize(r, columns.length);
+                    if (batchSize >= this.memoryBudget) {
+                        batch.sortBy(columns);
+                        runs.add(this.writeRun(batch));
+                        batch.clear();
+                        batchSize = 0;
+                    }
+                }
+                if (runs.isEmpty()) {
+                    batch.sortBy(columns);
+                    try (CSVWriter w = new CSVWriter(this.format)) {
+                        w.open(outputPath, false);
+                        if (!header.getIsDummyHeader()) w.writeHeader(header.getColumnsList());
+                        for (CSVRecord record : batch) {
+                            w.writeRecord(record);
+                        }
+                    }
+                    return;
+                }
+                if (!batch.isEmpty()) {
+                    batch.sortBy(columns);
+                    runs.add(this.writeRun(batch));
+                }
+                batch = null;
+                while (runs.size() > maxMergeWidth) {
+                    runs = this.mergePass(runs, columns);
+                }
+                try (CSVWriter w = new CSVWriter(this.format)) {
+                    w.open(outputPath, false);
+                    if (!header.getIsDummyHeader()) w.writeHeader(header.getColumnsList());
+                    merge(runs, columns, w);
+                }
+            }
+        }
+        finally {
+            for (File f : runs) {
+                f.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated number of bytes a record read from a file takes in memory while it is sorted.
+     */
+    private static long estimateSize(CSVRecord r, int keyColumns) {
+        long size = recordOverhead + 16L * keyColumns;
+        for (int i = 0; i < r.size(); i++) {
+            size += valueOverhead + 2L * r.get(i).length();
+        }
+        return size;
+    }
+
+    /**
+     * Writes the sorted records of <code>batch</code> to a new temporary run file.
+     */
+    private File writeRun(CSVArray batch) throws IOException {
+        File f = File.createTempFile("csvsort", ".run", this.tempDirectory);
+        try (CSVWriter w = new CSVWriter(runFormat)) {
+            w.open(f.getPath(), false);
+            for (CSVRecord r : batch) {
+                w.writeRecord(r);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            f.delete();
+            throw e;
+        }
+        return f;
+    }
+
+    /**
+     * Merges consecutive groups of at most <code>maxMergeWidth</code> runs into single runs, keeping them in order so
+     * that the sort stays stable, and deletes the merged runs.
+     */
+    private ArrayList<File> mergePass(ArrayList<File> runs, CSVSortKey.SortColumn[] columns) throws CSVParseException, IOException {
+        ArrayList<File> ret = new ArrayList<>();
+        try {
+            for (int i = 0; i < runs.size(); i += maxMergeWidth) {
+                List<File> group = runs.subList(i, Math.min(i + maxMergeWidth, runs.size()));
+                if (group.size() == 1) {
+                    ret.add(group.get(0));
+                    continue;
+                }
+                File f = File.createTempFile("csvsort", ".run", this.tempDirectory);
+                ret.add(f);
+                try (CSVWriter w = new CSVWriter(runFormat)) {
+                    w.open(f.getPath(), false);
+                    merge(group, columns, w);
+                }
+                for (File merged : group) {
+                    merged.delete();
+                }
+            }
+        }
+        catch (CSVParseException | IOException | RuntimeException e) {
+            for (File f : ret) {
+                f.delete();
+            }
+            throw e;
+        }
+        return ret;
+    }
+
+    /**
+     * Merges sorted runs into <code>out</code>, taking the record of the earliest run among equal records.
+     */
+    private static void merge(List<File> runs, CSVSortKey.SortColumn[] columns, CSVWriter out) throws CSVParseException, IOException {
+        PriorityQueue<Run> heads = new PriorityQueue<>(runs.size(), (a, b) -> {
+            for (int k = 0; k < columns.length; k++) {
+                CSVSortKey.SortColumn c = columns[k];
+                int cmp = c.compareValues(a.row.get(c.index), a.numbers[k], b.row.get(c.index), b.numbers[k]);
+                if (cmp != 0) return cmp;
+            }
+            return Integer.compare(a.number, b.number);
+        });
+        CSVReader runReader = new CSVReader(runFormat);
+        ArrayList<Run> open = new ArrayList<>();
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                Run run = new Run(new CSVParser(runReader.openReader(runs.get(i)), runFormat), i, columns);
+                open.add(run);
+                if (run.next()) heads.add(run);
+            }
+            while (!heads.isEmpty()) {
+                Run run = heads.poll();
+                out.writeRecord(run.row);
+                if (run.next()) heads.add(run);
+            }
+        }
+        finally {
+            for (Run run : open) {
+                run.parser.close();
+            }
+        }
+    }
+
+    /**
+     * A sorted run being merged, with its current record and the parsed values of its numeric key columns.
+     */
+    private static final class Run {
+        final CSVParser parser;
+        final int number;
+        final CSVSortKey.SortColumn[] columns;
+        final ArrayList<String> row = new ArrayList<>();
+        final double[] numbers;
+
+        Run(CSVParser parser, int number, CSVSortKey.SortColumn[] columns) {
+            this.parser = parser;
+            this.number = number;
+            this.columns = columns;
+            this.numbers = new double[columns.length];
+        }
+
+        /**
+         * Reads the next record of the run, returning <code>false</code> at the end of the run.
+         */
+        boolean next() throws CSVParseException, IOException {
+            if (!this.parser.readRow(this.row)) return false;
+            for (int k = 0; k < this.columns.length; k++) {
+                CSVSortKey.SortColumn c = this.columns[k];
+                String v = this.row.get(c.index);
+                if (c.numeric && !v.isEmpty()) this.numbers[k] = Double.parseDouble(v);
+            }
+            return true;
+        }
+    }
+
+    /**
+     *Returns the <code>CSVFileFormat</code> associated with this <code>CSVExternalSorter</code>.
+     * @return the file format.
+     */
+    public CSVFileFormat getFormat() {
+        return this.format;
+    }
+
+    /**
+     *Sets the <code>CSVFileFormat</code> associated with this <code>CSVExternalSorter</code>.
+     * @param f the new format
+     */
+    public void setFormat(CSVFileFormat f) {
+        this.format = f;
+    }
+
+    /**
+     *Returns the approximate number of bytes of records this sorter holds in memory at once.
+     * @return the memory budget.
+     */
+    public long getMemoryBudget() {
+        return this.memoryBudget;
+    }
+
+    /**
+     *Sets the approximate number of bytes of records this sorter holds in memory at once.
+     * @param memoryBudget the memory budget
+     * @throws IllegalArgumentException if the budget is not positive
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget <= 0) throw new IllegalArgumentException("The memory budget must be positive.");
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     *Returns the directory temporary run files are written to, or <code>null</code> for the default temporary-file
+     * directory.
+     * @return the temporary directory.
+     */
+    public File getTempDirectory() {
+        return this.tempDirectory;
+    }
+
+    /**
+     *Sets the directory temporary run files are written to. It should have room for a copy of the input file.
+     * @param dir the directory, or <code>null</code> for the default temporary-file directory
+     */
+    public void setTempDirectory(File dir) {
+        this.tempDirectory = dir;
+    }
+}
@@ -0,0 +1,149 @@
+package wah.giovann.csvhandler;
+
+import java.util.Arrays;
+
+/**
+ * A condition on the value of one column, checked by <code>CSVReader</code> on the characters of the field as it is
+ * parsed, before any value of the record is created. Records whose value does not satisfy the condition are dropped
+ * without being materialized. Field filters are added to the input format with
+ * <code>CSVFileFormat.Builder.filter(CSVFieldFilter)</code>.
+ * <br><br>
+ * Filters are created with the static factory methods of this class. Values are compared after leading and trailing
+ * space is trimmed, if the format trims it. Ranges include both bounds; an empty value is never in a range.
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public final class CSVFieldFilter {
+    private static final int EQUAL_TO = 0;
+    private static final int ONE_OF = 1;
+    private static final int BETWEEN = 2;
+    private static final int NUMERIC_BETWEEN = 3;
+
+    private final int type;
+    private final String column;
+    private final String[] values;
+    private final double from;
+    private final double to;
+
+    private CSVFieldFilter(int type, String column, String[] values, double from, double to) {
+        if (column == null) throw new IllegalArgumentException("The column of a field filter cannot be null.");
+        this.type = type;
+        this.column = column;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Returns a filter keeping the records whose value in <code>column</code> is <code>value</code>.
+     * @param column the column to check.
+     * @param value the value to keep.
+     * @return an equality filter.
+     */
+    public static CSVFieldFilter equalTo(String column, String value) {
+        if (value == null) throw new IllegalArgumentException("The value of a field filter cannot be null.");
+        return new CSVFieldFilter(EQUAL_TO, column, new String[]{value}, 0, 0);
+    }
+
+    /**
+     * Returns a filter keeping the records whose value in <code>column</code> is one of <code>values</code>.
+     * @param column the column to check.
+     * @param values the values to keep.
+     * @return a membership filter.
+     */
+    public static CSVFieldFilter oneOf(String column, String... values) {
+        for (String v : values) {
+            if (v == null) throw new IllegalArgumentException("The values of a field filter cannot be null.");
+        }
+        return new CSVFieldFilter(ONE_OF, column, values.clone(), 0, 0);
+    }
+
+    /**
+     * Returns a filter keeping the records whose value in <code>column</code> is between <code>from</code> and
+     * <code>to</code> in alphanumeric order, both inclusive. A <code>null</code> bound is unbounded.
+     * @param column the column to check.
+     * @param from the smallest value to keep, or <code>null</code>.
+     * @param to the largest value to keep, or <code>null</code>.
+     * @return an alphanumeric range filter.
+     */
+    public static CSVFieldFilter between(String column, String from, String to) {
+        return new CSVFieldFilter(BETWEEN, column, new String[]{from, to}, 0, 0);
+    }
+
+    /**
+     * Returns a filter keeping the records whose value in <code>column</code>, parsed as a <code>double</code>, is
+     * between <code>from</code> and <code>to</code>, both inclusive. A value that is not empty and not a number causes
+     * a <code>ValueConversionException</code> when the file is read.
+     * @param column the column to check.
+     * @param from the smallest value to keep.
+     * @param to the largest value to keep.
+     * @return a numeric range filter.
+     */
+    public static CSVFieldFilter between(String column, double from, double to) {
+        return new CSVFieldFilter(NUMERIC_BETWEEN, column, null, from, to);
+    }
+
+    /**
+     * Returns the column this filter checks.
+     * @return the column name.
+     */
+    public String getColumn() {
+        return this.column;
+    }
+
+    /**
+     * Returns whether the value held in <code>c</code> from <code>start</code> (inclusive) to <code>end</code>
+     * (exclusive) satisfies this filter.
+     * @throws NumberFormatException if the filter is numeric and the value is not empty and not a number
+     */
+    boolean test(char[] c, int start, int end) {
+        switch (this.type) {
+            case EQUAL_TO:
+            case ONE_OF:
+                for (String v : this.values) {
+                    if (compare(c, start, end, v) == 0) return true;
+                }
+                return false;
+            case BETWEEN:
+                if (start == end) return false;
+                return (this.values[0] == null || compare(c, start, end, this.values[0]) >= 0)
+                        && (this.values[1] == null || compare(c, start, end, this.values[1]) <= 0);
+            default:
+                if (start == end) return false;
+                double v = NumberParser.parseDouble(c, start, end);
+                return v >= this.from && v <= this.to;
+        }
+    }
+
+    /**
+     * Compares the characters from <code>start</code> to <code>end</code> with <code>s</code>, in the order of
+     * <code>String.compareTo</code>.
+     */
+    private static int compare(char[] c, int start, int end, String s) {
+        int length = end - start;
+        int n = Math.min(length, s.length());
+        for (int i = 0; i < n; i++) {
+            char a = c[start + i];
+            char b = s.charAt(i);
+            if (a != b) return a - b;
+        }
+        return length - s.length();
+    }
+
+    /**
+     * Returns a <code>String</code> representation of this filter.
+     * @return the column and condition of the filter.
+     */
+    public String toString() {
+        switch (this.type) {
+            case EQUAL_TO:
+                return this.column + " = " + this.values[0];
+            case ONE_OF:
+                return this.column + " in " + Arrays.toString(this.values);
+            case BETWEEN:
+                return this.column + " between " + this.values[0] + " and " + this.values[1];
+            default:
+                return this.column + " between " + this.from + " and " + this.to;
+        }
+    }
+}
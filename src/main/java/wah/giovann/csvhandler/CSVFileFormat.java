@@ -1,6 +1,12 @@
 package wah.giovann.csvhandler;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Predicate;
 
 /**
  *<code>CSVFileFormat</code> allows for the specification of input and/or output .csv file formats.
@@ -16,6 +22,10 @@ import java.nio.charset.StandardCharsets;
  *     <code>&nbsp;&nbsp;&nbsp;.delimiter(CSVFileFormat.SEMICOLON_DELIMITER)</code><br>
  *     <code>&nbsp;&nbsp;&nbsp;.hasHeader(false)</code><br>
  *     <code>&nbsp;&nbsp;&nbsp;.build();</code><br>
+ * <br>
+ *An input format can also declare the types of numeric columns with <code>columnType</code>. Files read with such a
+ * format are parsed into a <code>ColumnarCSVArray</code>, in which the values of those columns are parsed once and
+ * stored as primitives.
  *
  * @author Giovann Wah
  * @version 1.0
@@ -101,6 +111,26 @@ public class CSVFileFormat {
      */
     public static final String UTF_8_CHARSET = StandardCharsets.UTF_8.name();
 
+    /**
+     * Constant for a column whose values are stored as text. This is the type of every column whose type is not declared.
+     */
+    public static final int STRING_COLUMN_TYPE = 0;
+
+    /**
+     * Constant for a column whose values are stored as <code>int</code>s.
+     */
+    public static final int INT_COLUMN_TYPE = 1;
+
+    /**
+     * Constant for a column whose values are stored as <code>long</code>s.
+     */
+    public static final int LONG_COLUMN_TYPE = 2;
+
+    /**
+     * Constant for a column whose values are stored as <code>double</code>s.
+     */
+    public static final int DOUBLE_COLUMN_TYPE = 3;
+
     /**
      * Constant for the default <code>CSVFileFormat</code> instance.<br><br>The default <code>CSVFileFormat</code>
      * instance uses the <code>COMMA_DELIMITER</code> delimiter, the <code>LINE_FEED_LINE_END</code> output file line end,
@@ -114,8 +144,15 @@ public class CSVFileFormat {
     private char delimiter;
     private boolean trimSpace;
     private boolean hasHeader;
+    private boolean lazyValues;
+    private ArrayList<String> selectedColumnNames;
+    private ArrayList<Integer> selectedColumnIndices;
+    private ArrayList<CSVFieldFilter> fieldFilters;
+    private ArrayList<Predicate<? super CSVRecord>> recordFilters;
     private String characterSetName;
     private char[] outputFileLineEnd;
+    private HashMap<String, Integer> namedColumnTypes;
+    private HashMap<Integer, Integer> indexedColumnTypes;
 
     /**
      *Returns a <code>boolean</code> value representing whether or not leading and trailing spaces should be
@@ -132,6 +169,64 @@ public class CSVFileFormat {
         return this.hasHeader;
     }
 
+    /**
+     *Returns a <code>boolean</code> value representing whether or not records read from the input file keep their
+     * values as slices of the characters read, creating <code>String</code>s only for the values that are read.
+     * @return <code>true</code> if values are created lazily, <code>false</code> otherwise.
+     */
+    public boolean getLazyValues() {
+        return this.lazyValues;
+    }
+
+    /**
+     *Returns the names of the columns selected to be read from the input file.
+     * @return a <code>List</code> of the selected column names, empty if none were selected by name.
+     */
+    public List<String> getSelectedColumnNames() {
+        return Collections.unmodifiableList(this.selectedColumnNames);
+    }
+
+    /**
+     *Returns the indices of the columns selected to be read from the input file.
+     * @return a <code>List</code> of the selected column indices, empty if none were selected by index.
+     */
+    public List<Integer> getSelectedColumnIndices() {
+        return Collections.unmodifiableList(this.selectedColumnIndices);
+    }
+
+    /**
+     *Returns a <code>boolean</code> value representing whether or not only some of the columns of the input file are
+     * read.
+     * @return <code>true</code> if columns were selected, <code>false</code> if every column is read.
+     */
+    public boolean hasSelectedColumns() {
+        return !this.selectedColumnNames.isEmpty() || !this.selectedColumnIndices.isEmpty();
+    }
+
+    /**
+     * Returns the field filters records read from the input file must pass.
+     * @return a <code>List</code> of the field filters, empty if there are none.
+     */
+    public List<CSVFieldFilter> getFieldFilters() {
+        return Collections.unmodifiableList(this.fieldFilters);
+    }
+
+    /**
+     * Returns the record filters records read from the input file must pass.
+     * @return a <code>List</code> of the record filters, empty if there are none.
+     */
+    public List<Predicate<? super CSVRecord>> getRecordFilters() {
+        return Collections.unmodifiableList(this.recordFilters);
+    }
+
+    /**
+     * Returns whether records read from the input file are filtered.
+     * @return <code>true</code> if there are field or record filters, <code>false</code> if every record is read.
+     */
+    public boolean hasFilters() {
+        return !this.fieldFilters.isEmpty() || !this.recordFilters.isEmpty();
+    }
+
     /**
      *Returns the delimiter of the input/output file.
      * @return the <code>char</code> value chosen as the delimter for the input/output CSV file.
@@ -158,12 +253,45 @@ public class CSVFileFormat {
         return this.outputFileLineEnd;
     }
 
+    /**
+     *Returns the declared type of the header column <code>columnName</code>, one of the <code>_COLUMN_TYPE</code> constants.
+     * @param columnName the name of the column.
+     * @return the type of the column, or <code>STRING_COLUMN_TYPE</code> if no type was declared for it.
+     */
+    public int getColumnType(String columnName) {
+        return this.namedColumnTypes.getOrDefault(columnName, STRING_COLUMN_TYPE);
+    }
+
+    /**
+     *Returns the declared type of the column at index <code>columnIndex</code>, one of the <code>_COLUMN_TYPE</code> constants.
+     * @param columnIndex the index of the column.
+     * @return the type of the column, or <code>STRING_COLUMN_TYPE</code> if no type was declared for it.
+     */
+    public int getColumnType(int columnIndex) {
+        return this.indexedColumnTypes.getOrDefault(columnIndex, STRING_COLUMN_TYPE);
+    }
+
+    /**
+     *Returns a <code>boolean</code> value representing whether or not any column types have been declared.
+     * @return <code>true</code> if a type was declared for at least one column, <code>false</code> otherwise.
+     */
+    public boolean hasColumnTypes() {
+        return !this.namedColumnTypes.isEmpty() || !this.indexedColumnTypes.isEmpty();
+    }
+
     private CSVFileFormat(Builder b){
         this.delimiter = b.delimiter;
         this.outputFileLineEnd = b.outputFileLineEnd;
         this.characterSetName = b.characterSetName;
         this.hasHeader = b.hasHeader;
         this.trimSpace = b.trimSpace;
+        this.lazyValues = b.lazyValues;
+        this.selectedColumnNames = new ArrayList<>(b.selectedColumnNames);
+        this.selectedColumnIndices = new ArrayList<>(b.selectedColumnIndices);
+        this.fieldFilters = new ArrayList<>(b.fieldFilters);
+        this.recordFilters = new ArrayList<>(b.recordFilters);
+        this.namedColumnTypes = new HashMap<>(b.namedColumnTypes);
+        this.indexedColumnTypes = new HashMap<>(b.indexedColumnTypes);
     }
 
     /**
@@ -208,6 +336,22 @@ public class CSVFileFormat {
         sb.append("Charset Name: "+this.characterSetName+"\n");
         sb.append("Has Header: "+this.hasHeader+"\n");
         sb.append("Trim Space: "+this.trimSpace);
+        if (this.hasSelectedColumns()) {
+            sb.append("\n");
+            sb.append("Selected Columns: "+this.selectedColumnNames+" "+this.selectedColumnIndices);
+        }
+        if (this.hasFilters()) {
+            sb.append("\n");
+            sb.append("Filters: "+this.fieldFilters+" and "+this.recordFilters.size()+" record filter(s)");
+        }
+        if (this.lazyValues) {
+            sb.append("\n");
+            sb.append("Lazy Values: true");
+        }
+        if (this.hasColumnTypes()) {
+            sb.append("\n");
+            sb.append("Column Types: "+this.namedColumnTypes+" "+this.indexedColumnTypes);
+        }
         return sb.toString();
     }
 
@@ -231,8 +375,15 @@ public class CSVFileFormat {
         private char delimiter;
         private boolean trimSpace;
         private boolean hasHeader;
+        private boolean lazyValues;
+        private ArrayList<String> selectedColumnNames;
+        private ArrayList<Integer> selectedColumnIndices;
+        private ArrayList<CSVFieldFilter> fieldFilters;
+        private ArrayList<Predicate<? super CSVRecord>> recordFilters;
         private String characterSetName;
         private char[] outputFileLineEnd;
+        private HashMap<String, Integer> namedColumnTypes;
+        private HashMap<Integer, Integer> indexedColumnTypes;
 
         /**
          * Constructs a default <code>CSVFileFormat.Builder</code> instance with the following default settings:<br>
@@ -246,6 +397,13 @@ public class CSVFileFormat {
             this.characterSetName = null;
             this.hasHeader = true;
             this.trimSpace = true;
+            this.lazyValues = false;
+            this.selectedColumnNames = new ArrayList<>();
+            this.selectedColumnIndices = new ArrayList<>();
+            this.fieldFilters = new ArrayList<>();
+            this.recordFilters = new ArrayList<>();
+            this.namedColumnTypes = new HashMap<>();
+            this.indexedColumnTypes = new HashMap<>();
         }
 
         /**
@@ -303,6 +461,118 @@ public class CSVFileFormat {
             return this;
         }
 
+        /**
+         * Sets a <code>boolean</code> value determining whether or not records read from the input file keep their
+         * values as slices of shared buffers of the characters read, instead of a <code>String</code> per value. A
+         * <code>String</code> is then only created for a value when it is read, and numbers are parsed straight from
+         * the buffers, which saves most of the allocation of reading wide files of which only a few columns are used.
+         * This applies to the records read by <code>CSVReader.readCSV</code>, <code>iterator</code> and
+         * <code>stream</code>. A buffer is kept in memory as long as any record holding values in it is.
+         * @param b If true, create values lazily. Otherwise, create a <code>String</code> for every value as it is read.
+         * @return <code>CSVFileFormat.Builder</code> instance.
+         */
+        public Builder lazyValues(boolean b){
+            this.lazyValues = b;
+            return this;
+        }
+
+        /**
+         * Selects columns of the input file by name, so that only the selected columns are read. The values of the
+         * other columns are parsed past without being stored, and the header and records read from the file hold the
+         * selected columns only, in the order in which they appear in the file. Columns can be selected both by name
+         * and by index; every column selected either way is read. For a file without a header, columns are named by
+         * their index. Column indices of the records read, including those of column types declared by index, refer
+         * to the positions of the columns among the selected columns.
+         * <br><br>
+         * Columns are selected for <code>CSVReader</code>, which reports a column that does not exist with an
+         * <code>ArrayIndexOutOfBoundsException</code>; the other readers fall back to <code>CSVReader</code> when
+         * columns are selected.
+         * @param columnNames the names of the columns to read.
+         * @return <code>CSVFileFormat.Builder</code> instance.
+         */
+        public Builder selectColumns(String... columnNames) {
+            this.selectedColumnNames.addAll(Arrays.asList(columnNames));
+            return this;
+        }
+
+        /**
+         * Selects columns of the input file by index, so that only the selected columns are read. See
+         * {@link #selectColumns(String...)}.
+         * @param columnIndices the indices of the columns to read, starting at 0.
+         * @return <code>CSVFileFormat.Builder</code> instance.
+         */
+        public Builder selectColumns(int... columnIndices) {
+            for (int index : columnIndices) {
+                this.selectedColumnIndices.add(index);
+            }
+            return this;
+        }
+
+        /**
+         * Adds a field filter on the records read from the input file, so that only the records that pass it are read.
+         * The filter is checked on the characters of its field as the record is parsed: a record that fails it is
+         * parsed past without creating any of its values. A record must pass every filter added to be read.
+         * <br><br>
+         * Filters apply to the records read by <code>CSVReader</code>, after the header, and refer to the columns of
+         * the records read, so that with selected columns a filter can only check a selected column. For a file
+         * without a header, columns are named by their index. A filter on a column that does not exist is reported
+         * with an <code>ArrayIndexOutOfBoundsException</code>. The other readers fall back to <code>CSVReader</code>
+         * when records are filtered.
+         * @param f the filter records must pass.
+         * @return <code>CSVFileFormat.Builder</code> instance.
+         */
+        public Builder filter(CSVFieldFilter f) {
+            if (f == null) throw new IllegalArgumentException("A filter cannot be null.");
+            this.fieldFilters.add(f);
+            return this;
+        }
+
+        /**
+         * Adds a record filter on the records read from the input file, so that only the records for which it
+         * returns <code>true</code> are read. Record filters are checked once a record is parsed, after every field
+         * filter (see {@link #filter(CSVFieldFilter)}) has passed, on a record holding its values as slices of the
+         * characters read: only the values the filter reads are created. Records with a different number of values
+         * than the header are not checked, and are read or reported as they would be without filters.
+         * @param p the condition records must meet.
+         * @return <code>CSVFileFormat.Builder</code> instance.
+         */
+        public Builder filter(Predicate<? super CSVRecord> p) {
+            if (p == null) throw new IllegalArgumentException("A filter cannot be null.");
+            this.recordFilters.add(p);
+            return this;
+        }
+
+        /**
+         * Declares the type of the header column <code>columnName</code> of the input file. Values of <code>int</code>,
+         * <code>long</code> and <code>double</code> columns are parsed once, when the file is read, and stored as
+         * primitives; empty values are allowed, but any other value that cannot be parsed causes a
+         * <code>ValueConversionException</code>.
+         * @param columnName the name of the column.
+         * @param type one of the <code>_COLUMN_TYPE</code> constants.
+         * @return <code>CSVFileFormat.Builder</code> instance.
+         */
+        public Builder columnType(String columnName, int type) {
+            this.namedColumnTypes.put(columnName, checkColumnType(type));
+            return this;
+        }
+
+        /**
+         * Declares the type of the column at index <code>columnIndex</code> of the input file, for files without a
+         * header. A type declared by column name takes precedence. See {@link #columnType(String, int)}.
+         * @param columnIndex the index of the column.
+         * @param type one of the <code>_COLUMN_TYPE</code> constants.
+         * @return <code>CSVFileFormat.Builder</code> instance.
+         */
+        public Builder columnType(int columnIndex, int type) {
+            this.indexedColumnTypes.put(columnIndex, checkColumnType(type));
+            return this;
+        }
+
+        private static int checkColumnType(int type) {
+            if (type < STRING_COLUMN_TYPE || type > DOUBLE_COLUMN_TYPE) throw new IllegalArgumentException("Unknown column type: " + type);
+            return type;
+        }
+
         /**
          * Creates a new <code>CSVFileFormat</code> instance with all of the settings of this <code>CSVFileFormat.Builder</code>
          * instance.
@@ -0,0 +1,204 @@
+package wah.giovann.csvhandler;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import wah.giovann.csvhandler.error.CSVParseException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A <code>CSVFollower</code> reads the records appended to a .csv file that is still being written, such as a log,
+ * one batch at a time.
+ * <br><br>
+ * Instances are obtained from <code>CSVReader.follow</code>. Each call to {@link #poll()} returns the records
+ * completed since the previous call: the follower remembers the byte offset just past the last complete record it
+ * returned, and only parses what was appended after it. A record is complete once its line end has been written; a
+ * record that is still being written, including one whose quoted value holds line ends, is left for a later poll. The
+ * header (or the first record, for a file without one) is read once, by the first poll that finds it complete.
+ * <br><br>
+ * If the file shrinks or is replaced by another file with the same name, as when a log is rotated, the follower starts
+ * over at the beginning of the new file and reads its header again. If a record cannot be parsed, the poll throws
+ * without consuming any record, so the next poll reports the same error. Filters of the input format apply; lazy
+ * values and column types do not. The file must be encoded in UTF-8 or in a single-byte character set compatible with
+ * ASCII.
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public class CSVFollower {
+    private static final int scanBufferSize = 64 * 1024;
+    private final File file;
+    private final CSVFileFormat format;
+    private Charset charSet;
+    private Object fileKey; //identifies the file read so far, if the file system supports it
+    private long offset; //the byte offset just past the last record returned
+    private int line; //the line number at the offset
+    private boolean skipLF; //whether the record before the offset ended with a carriage return, which a line feed may still complete
+    private ArrayList<String> firstRow; //the first record of the file, before any column is selected, or null
+    private CSVHeader header;
+
+    CSVFollower(File file, CSVFileFormat format) {
+        this.file = file;
+        this.format = format;
+        this.reset();
+    }
+
+    private void reset() {
+        this.fileKey = null;
+        this.offset = 0;
+        this.line = 1;
+        this.skipLF = false;
+        this.firstRow = null;
+        this.header = null;
+    }
+
+    /**
+     * Returns the records completed since the previous poll, in file order. The list is empty if there are none, or if
+     * the file does not exist yet.
+     * @return a <code>List</code> of the new records.
+     * @throws CSVParseException if a new record cannot be parsed
+     * @throws IOException if the file cannot be read, or its character set is not supported
+     */
+    public List<CSVRecord> poll() throws CSVParseException, IOException {
+        ArrayList<CSVRecord> ret = new ArrayList<>();
+        if (!this.file.isFile()) return ret;
+        Object key = Files.readAttributes(this.file.toPath(), BasicFileAttributes.class).fileKey();
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < this.offset || (key != null && this.fileKey != null && !key.equals(this.fileKey))) this.reset();
+            this.fileKey = key;
+            if (this.skipLF && size > this.offset && readByte(channel, this.offset) == '\n') { //completes a CRLF
+                this.offset++;
+                this.skipLF = false;
+            }
+            if (size == this.offset) return ret;
+            if (this.charSet == null) this.charSet = new CSVReader(this.format).seekableCharset(this.file);
+            Scan scan = Scan.scan(channel, this.offset, size);
+            if (scan.end == this.offset) return ret;
+            channel.position(this.offset);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new BoundedInputStream(Channels.newInputStream(channel), scan.end - this.offset), this.charSet));
+            CSVParser parser = new CSVParser(reader, this.format, this.line);
+            ArrayList<String> first = this.firstRow;
+            CSVHeader h = this.header;
+            ArrayList<String> row = new ArrayList<>();
+            RowFilter filter = null;
+            if (first == null) {
+                if (parser.readRow(row)) { //the first record of the file
+                    first = new ArrayList<>(row);
+                    parser.selectColumns(row);
+                    h = this.format.getHasHeader() ? new CSVHeader(row) : new CSVHeader(row.size()); //dummy header
+                    if (this.format.hasFilters()) filter = new RowFilter(parser, h, this.format);
+                    if (!this.format.getHasHeader() && (filter == null || filter.accepts(row))) ret.add(new CSVRecord(h, row));
+                }
+            }
+            else {
+                parser.selectColumns(new ArrayList<>(first));
+                if (this.format.hasFilters()) filter = new RowFilter(parser, h, this.format);
+            }
+            while (parser.readRow(row)) {
+                if (filter == null || filter.accepts(row)) ret.add(new CSVRecord(h, row));
+            }
+            this.firstRow = first;
+            this.header = h;
+            this.offset = scan.end;
+            this.line += scan.lineEnds;
+            this.skipLF = scan.endsWithCR;
+        }
+        return ret;
+    }
+
+    private static byte readByte(FileChannel channel, long position) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, position);
+        return one.get(0);
+    }
+
+    /**
+     *Returns an <code>ArrayList</code> of the header columns of the records returned by this follower. The list is
+     * empty until the header has been read.
+     * @return An <code>ArrayList</code> of all the header values.
+     */
+    public ArrayList<String> getHeaderList() {
+        if (this.header == null) return new ArrayList<>();
+        return this.header.getColumnsList();
+    }
+
+    /**
+     *Returns the byte offset of the file just past the last record returned by this follower.
+     * @return the offset read up to.
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     *Returns the file this follower reads.
+     * @return the followed file.
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * The result of scanning the bytes appended after a record boundary for the last line end outside of a quoted
+     * value.
+     */
+    private static final class Scan {
+        long end; //the offset just past the last line end outside of quotes
+        int lineEnds = 0; //the line ends before end
+        boolean endsWithCR = false; //whether that line end is a carriage return
+
+        static Scan scan(FileChannel channel, long start, long size) throws IOException {
+            Scan ret = new Scan();
+            ret.end = start;
+            ByteBuffer bb = ByteBuffer.allocate(scanBufferSize);
+            byte[] bytes = bb.array();
+            long position = start;
+            int lines = 0;
+            boolean quoted = false;
+            boolean lastCR = false;
+            while (position < size) {
+                bb.clear();
+                bb.limit((int) Math.min(bytes.length, size - position));
+                int n = channel.read(bb, position);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    byte b = bytes[i];
+                    if (b == '\n' && lastCR) { //the line feed of a CRLF
+                        lastCR = false;
+                        if (!quoted && ret.end == position + i) {
+                            ret.end++;
+                            ret.endsWithCR = false;
+                        }
+                        continue;
+                    }
+                    lastCR = b == '\r';
+                    if (b == '"') {
+                        quoted = !quoted;
+                    }
+                    else if (b == '\n' || b == '\r') {
+                        lines++;
+                        if (!quoted) {
+                            ret.end = position + i + 1;
+                            ret.lineEnds = lines;
+                            ret.endsWithCR = lastCR;
+                        }
+                    }
+                }
+                position += n;
+            }
+            return ret;
+        }
+    }
+}
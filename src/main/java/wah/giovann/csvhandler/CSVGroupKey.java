@@ -0,0 +1,93 @@
+package wah.giovann.csvhandler;
+
+import java.util.Arrays;
+
+/**
+ * The values shared by the records of one group of a <code>CSVGrouping</code>, one value per grouping column.
+ * <br><br>
+ * Two keys are equal if they hold equal values in the same order. Unlike a key made by joining the values into a single
+ * <code>String</code>, a <code>CSVGroupKey</code> never confuses two different combinations of values, whatever
+ * characters the values contain.
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public final class CSVGroupKey {
+    private String[] values;
+    private int hash;
+
+    /**
+     * Creates a new key holding the specified values, in the order of the grouping columns.
+     * @param values The values of the key.
+     */
+    public CSVGroupKey(String... values) {
+        this.values = values.clone();
+        this.hash = Arrays.hashCode(this.values);
+    }
+
+    /**
+     * Creates a key holding <code>values</code> itself, which the caller must not change while the key is in use.
+     */
+    CSVGroupKey(String[] values, boolean copyValues) {
+        this.values = copyValues ? values.clone() : values;
+        this.hash = Arrays.hashCode(this.values);
+    }
+
+    /**
+     * Returns the value of the key for the grouping column at <code>index</code>.
+     * @param index The position of the grouping column, starting at 0.
+     * @return The value at that position.
+     */
+    public String get(int index) {
+        return this.values[index];
+    }
+
+    /**
+     * Returns the number of values in this key, which is the number of grouping columns.
+     * @return The size of the key.
+     */
+    public int size() {
+        return this.values.length;
+    }
+
+    /**
+     * Returns the values of this key joined by <code>separator</code>.
+     */
+    String join(char separator) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < this.values.length; i++) {
+            sb.append(this.values[i]);
+            if (i != this.values.length - 1) sb.append(separator);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Replaces the values of a key used only to look groups up, and recomputes its hash code.
+     */
+    void reset(String[] values) {
+        this.values = values;
+        this.hash = Arrays.hashCode(values);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof CSVGroupKey)) return false;
+        CSVGroupKey o = (CSVGroupKey) other;
+        return this.hash == o.hash && Arrays.equals(this.values, o.values);
+    }
+
+    /**
+     * Returns a <code>String</code> representation of this key.
+     * @return The values of the key, in brackets.
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(this.values);
+    }
+}
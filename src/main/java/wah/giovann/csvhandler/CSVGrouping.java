@@ -0,0 +1,244 @@
+package wah.giovann.csvhandler;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The records of a <code>CSVArray</code> grouped by their values in one or more columns, as returned by
+ * <code>CSVArray.group</code> and <code>CSVArray.parallelGroup</code>.
+ * <br><br>
+ * Each group is identified by a <code>CSVGroupKey</code> holding the values of its records in the grouping columns, and
+ * is stored as the indices of its records in the source array, in ascending order. No record is copied: the
+ * <code>CSVArray</code> returned by {@link #getGroup(CSVGroupKey)} holds the source array's own records, and shares its
+ * header. Changes made to the values of those records are therefore visible in the source array, and the columns of a
+ * group should only be changed through the source array. The groups are in the order in which their first record
+ * appears in the source array.
+ * <br><br>
+ * A grouping describes the source array as it was when the grouping was made; if records are added to, removed from or
+ * reordered in the source array afterwards, the row indices no longer refer to the same records.
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public final class CSVGrouping {
+    private static final int minPartitionSize = 1 << 14;
+    private final CSVArray source;
+    private final int[] columns;
+    private final LinkedHashMap<CSVGroupKey, int[]> groups;
+
+    private CSVGrouping(CSVArray source, int[] columns, LinkedHashMap<CSVGroupKey, int[]> groups) {
+        this.source = source;
+        this.columns = columns;
+        this.groups = groups;
+    }
+
+    /**
+     * Groups the rows of <code>source</code> by their values in the columns at <code>columns</code>, in the calling
+     * thread.
+     */
+    static CSVGrouping group(CSVArray source, int[] columns) {
+        LinkedHashMap<CSVGroupKey, Members> partition = groupRange(source, columns, 0, source.size());
+        LinkedHashMap<CSVGroupKey, int[]> groups = new LinkedHashMap<>(partition.size() * 2);
+        for (Map.Entry<CSVGroupKey, Members> e : partition.entrySet()) {
+            groups.put(e.getKey(), e.getValue().toArray());
+        }
+        return new CSVGrouping(source, columns, groups);
+    }
+
+    /**
+     * Groups the rows of <code>source</code> by their values in the columns at <code>columns</code>. The rows are split
+     * into consecutive partitions that are grouped in parallel in <code>pool</code>, and the partial groups are then
+     * merged in partition order, so the result is the same as that of {@link #group(CSVArray, int[])}.
+     */
+    static CSVGrouping parallelGroup(CSVArray source, int[] columns, ForkJoinPool pool) {
+        int size = source.size();
+        int partitionSize = Math.max(minPartitionSize, size / (pool.getParallelism() * 4) + 1);
+        if (size <= partitionSize) return group(source, columns);
+        List<Future<LinkedHashMap<CSVGroupKey, Members>>> partitions = new ArrayList<>();
+        for (int start = 0; start < size; start += partitionSize) {
+            int from = start;
+            int to = Math.min(size, start + partitionSize);
+            partitions.add(pool.submit(() -> groupRange(source, columns, from, to)));
+        }
+        LinkedHashMap<CSVGroupKey, Members> merged = null;
+        for (Future<LinkedHashMap<CSVGroupKey, Members>> f : partitions) {
+            LinkedHashMap<CSVGroupKey, Members> partition = getResult(f);
+            if (merged == null) {
+                merged = partition;
+                continue;
+            }
+            for (Map.Entry<CSVGroupKey, Members> e : partition.entrySet()) {
+                Members m = merged.get(e.getKey());
+                if (m == null) merged.put(e.getKey(), e.getValue());
+                else m.addAll(e.getValue());
+            }
+        }
+        LinkedHashMap<CSVGroupKey, int[]> groups = new LinkedHashMap<>(merged.size() * 2);
+        for (Map.Entry<CSVGroupKey, Members> e : merged.entrySet()) {
+            groups.put(e.getKey(), e.getValue().toArray());
+        }
+        return new CSVGrouping(source, columns, groups);
+    }
+
+    /**
+     * Groups the rows from <code>from</code> (inclusive) to <code>to</code> (exclusive). A single key is reused to look
+     * up each row, and a new key is only created for each new group.
+     */
+    private static LinkedHashMap<CSVGroupKey, Members> groupRange(CSVArray source, int[] columns, int from, int to) {
+        LinkedHashMap<CSVGroupKey, Members> ret = new LinkedHashMap<>();
+        String[] values = new String[columns.length];
+        CSVGroupKey probe = new CSVGroupKey(values, false);
+        for (int row = from; row < to; row++) {
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = source.valueAt(row, columns[i]);
+            }
+            probe.reset(values);
+            Members m = ret.get(probe);
+            if (m == null) {
+                m = new Members();
+                ret.put(new CSVGroupKey(values, true), m);
+            }
+            m.add(row);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of groups.
+     * @return The number of distinct keys.
+     */
+    public int size() {
+        return this.groups.size();
+    }
+
+    /**
+     * Returns the keys of the groups, in the order in which their first record appears in the source array.
+     * @return An unmodifiable <code>Set</code> of the group keys.
+     */
+    public Set<CSVGroupKey> keySet() {
+        return Collections.unmodifiableSet(this.groups.keySet());
+    }
+
+    /**
+     * Returns whether there is a group with the specified key.
+     * @param key The key of the group.
+     * @return <code>true</code> if some record has the values of <code>key</code> in the grouping columns.
+     */
+    public boolean containsKey(CSVGroupKey key) {
+        return this.groups.containsKey(key);
+    }
+
+    /**
+     * Returns the number of records in the group with the specified key.
+     * @param key The key of the group.
+     * @return The size of the group, or 0 if there is no such group.
+     */
+    public int groupSize(CSVGroupKey key) {
+        int[] rows = this.groups.get(key);
+        return rows == null ? 0 : rows.length;
+    }
+
+    /**
+     * Returns the indices, in the source array, of the records in the group with the specified key.
+     * @param key The key of the group.
+     * @return A new array of row indices in ascending order, or <code>null</code> if there is no such group.
+     */
+    public int[] getRowIndices(CSVGroupKey key) {
+        int[] rows = this.groups.get(key);
+        return rows == null ? null : rows.clone();
+    }
+
+    /**
+     * Returns the records of the group with the specified key, in the order in which they appear in the source array.
+     * For a <code>ColumnarCSVArray</code> source, the group is a new <code>ColumnarCSVArray</code> holding a copy of
+     * the values of the group; for any other source, it holds the source array's own records and shares its header.
+     * @param key The key of the group.
+     * @return A <code>CSVArray</code> with the records of the group, or <code>null</code> if there is no such group.
+     */
+    public CSVArray getGroup(CSVGroupKey key) {
+        int[] rows = this.groups.get(key);
+        return rows == null ? null : this.source.select(rows, rows.length);
+    }
+
+    /**
+     * Returns the records of the group whose values in the grouping columns are <code>values</code>, in the order of
+     * the grouping columns.
+     * @param values The values of the group.
+     * @return A <code>CSVArray</code> with the records of the group, or <code>null</code> if there is no such group.
+     */
+    public CSVArray getGroup(String... values) {
+        return this.getGroup(new CSVGroupKey(values, false));
+    }
+
+    /**
+     * Returns the indices of the grouping columns in the source array's header.
+     */
+    int[] getColumns() {
+        return this.columns;
+    }
+
+    /**
+     * Returns the groups, mapping each key to the row indices of its records.
+     */
+    LinkedHashMap<CSVGroupKey, int[]> getGroups() {
+        return this.groups;
+    }
+
+    /**
+     * Returns a <code>String</code> representation of this grouping.
+     * @return Each group key with the number of records in the group.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<CSVGroupKey, int[]> e : this.groups.entrySet()) {
+            sb.append(e.getKey());
+            sb.append(": ");
+            sb.append(e.getValue().length);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static <T> T getResult(Future<T> f) {
+        try {
+            return f.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * The row indices of one group, in a growable array.
+     */
+    private static final class Members {
+        private int[] rows = new int[4];
+        private int count = 0;
+
+        void add(int row) {
+            if (this.count == this.rows.length) this.rows = Arrays.copyOf(this.rows, this.count * 2);
+            this.rows[this.count++] = row;
+        }
+
+        void addAll(Members other) {
+            if (this.count + other.count > this.rows.length) {
+                this.rows = Arrays.copyOf(this.rows, Math.max(this.count + other.count, this.count * 2));
+            }
+            System.arraycopy(other.rows, 0, this.rows, this.count, other.count);
+            this.count += other.count;
+        }
+
+        int[] toArray() {
+            return this.count == this.rows.length ? this.rows : Arrays.copyOf(this.rows, this.count);
+        }
+    }
+}
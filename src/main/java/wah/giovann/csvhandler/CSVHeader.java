@@ -2,24 +2,47 @@ package wah.giovann.csvhandler;
 
 import wah.giovann.csvhandler.error.CSVIntegrityException;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
 
 /**
- *
+ * The column names shared by the records of a <code>CSVArray</code>. Besides the ordered list of names, the header
+ * keeps a hash index from each name to the index of its first occurrence, so that looking a column up by name takes
+ * constant time however many columns there are. The index is rebuilt whenever the columns change, and every change
+ * increments a modification count, which lets <code>CSVColumnHandle</code>s know when to resolve their column again.
+ * <br><br>
+ * The header also maps each column to the slot that holds its values in the data list of every record sharing the
+ * header. Removing, adding and swapping columns only changes this map, so these operations never touch the records:
+ * a removed column's slot is simply no longer referred to, and an added column gets a new slot past the end of every
+ * record's data, where a missing value reads as the empty string. {@link #compact()} resets the map once the records
+ * have been rewritten in column order. A header can be shared by several arrays, such as an array and the views
+ * returned by its <code>filter</code> method, so it keeps weak references to the arrays using it, whose records must all
+ * be rewritten.
  */
 class CSVHeader {
     private ArrayList<String> columnNames;
     private boolean dummyHeader;
+    private HashMap<String, Integer> columnIndex;
+    private int modCount = 0;
+    private int valuesVersion = 0; //the number of values set in records sharing this header
+    private int[] slots; //the data slot of each column, or null while every column is in its own slot
+    private int totalSlots; //the number of slots used by records sharing this header
+    private final ArrayList<WeakReference<CSVArray>> arrays = new ArrayList<>(); //the arrays using this header
+    private int pruneAt = 16; //the number of array references at which the cleared ones are dropped
 
     public CSVHeader() {
         this.columnNames = new ArrayList<>();
         this.dummyHeader = false;
+        this.reindex();
+        this.compact();
     }
 
     public CSVHeader(List<String> h) throws CSVIntegrityException {
         if (h != null){
             this.columnNames = new ArrayList<>(h);
             this.dummyHeader = false;
+            this.reindex();
+            this.compact();
             ArrayList<String> dupColumns = (ArrayList<String>)this.getDuplicates();
             if (dupColumns != null) {
                 throw new CSVIntegrityException(CSVIntegrityException.DUPLICATE_COLUMNS_IN_CONSTRUCTOR, dupColumns);
@@ -37,6 +60,8 @@ class CSVHeader {
             for (int col = 0; col < columns; col++) {
                 this.columnNames.add(new String(col + ""));
             }
+            this.reindex();
+            this.compact();
         }
         else throw new CSVIntegrityException(CSVIntegrityException.INVALID_CSVHEADER_COLUMN_NUMBER, columns);
     }
@@ -44,12 +69,16 @@ class CSVHeader {
     public CSVHeader(CSVHeader other) {
         this.dummyHeader = other.dummyHeader;
         this.columnNames = new ArrayList<>(other.columnNames);
+        this.columnIndex = new HashMap<>(other.columnIndex);
+        this.slots = other.slots == null ? null : other.slots.clone();
+        this.totalSlots = other.totalSlots;
     }
 
     public void clearHeader() {
         for (int i = 0; i < this.columnNames.size(); i++) {
             this.columnNames.set(i, "");
         }
+        this.reindex();
     }
 
     public void setIsDummyHeader(boolean b) {
@@ -63,6 +92,7 @@ class CSVHeader {
                 this.columnNames.set(i, i+"");
             }
         }
+        this.reindex();
     }
 
     public boolean getIsDummyHeader() {
@@ -70,7 +100,7 @@ class CSVHeader {
     }
 
     public boolean containsColumn(String columnName) {
-        return this.columnNames.contains(columnName);
+        return this.columnIndex.containsKey(columnName);
     }
 
     public int totalColumns() {
@@ -83,30 +113,41 @@ class CSVHeader {
     }
 
     public int indexOfColumn(String columnName) {
-        return this.columnNames.indexOf(columnName);
+        Integer i = this.columnIndex.get(columnName);
+        return i == null ? -1 : i;
     }
 
     public boolean removeColumn(String columnName) {
-        boolean b = this.columnNames.remove(columnName);
-        if (b && this.dummyHeader) this.setDummyColumns();
-        return b;
+        int i = this.indexOfColumn(columnName);
+        if (i < 0) return false;
+        this.removeColumn(i);
+        return true;
     }
 
     public String removeColumn(int index) {
         String s = this.columnNames.remove(index);
+        int[] map = this.slotMap();
+        System.arraycopy(map, index + 1, map, index, map.length - index - 1);
+        this.slots = Arrays.copyOf(map, map.length - 1);
         if (this.dummyHeader) this.setDummyColumns();
+        else this.reindex();
         return s;
     }
     public void addDummyColumn(int index) {
         if (this.dummyHeader) {
             this.columnNames.add(index, null);
+            this.addSlot(index);
             this.setDummyColumns();
         }
     }
 
     public void addColumn(int index, String name) {
         if (!this.dummyHeader) {
-            if (!this.columnNames.contains(name)) this.columnNames.add(index, name);
+            if (!this.containsColumn(name)) {
+                this.columnNames.add(index, name);
+                this.addSlot(index);
+                this.reindex();
+            }
             else throw new CSVIntegrityException(CSVIntegrityException.DUPLICATE_CSVHEADER_COLUMNS, name);
         }
         else {
@@ -119,6 +160,12 @@ class CSVHeader {
             String temp = this.columnNames.get(index1);
             this.columnNames.set(index1, this.columnNames.get(index2));
             this.columnNames.set(index2, temp);
+            int[] map = this.slotMap();
+            int slot = map[index1];
+            map[index1] = map[index2];
+            map[index2] = slot;
+            this.slots = map;
+            this.reindex();
         }
         else {
             ArrayList<Integer> indices = new ArrayList<>();
@@ -129,12 +176,16 @@ class CSVHeader {
     }
 
     public void renameColumn(int index, String name) {
-        if (!this.dummyHeader && !this.columnNames.contains(name)) this.columnNames.set(index, name);
+        if (!this.dummyHeader && !this.containsColumn(name)) {
+            this.columnNames.set(index, name);
+            this.reindex();
+        }
     }
 
     public void setColumnNames(ArrayList<String> names) {
         if (names.size() == this.columnNames.size()) {
-            this.columnNames = names;
+            this.columnNames = new ArrayList<>(names);
+            this.reindex();
         }
         else{
             ArrayList<Integer> lengths = new ArrayList<>();
@@ -149,25 +200,154 @@ class CSVHeader {
     }
 
     public boolean hasDuplicates() {
-        Set<String> temp = new HashSet<String>(this.columnNames);
-        if (temp.size() < this.totalColumns()) return true;
-        else return false;
+        return this.columnIndex.size() < this.totalColumns();
     }
 
     public List<String> getDuplicates() {
         if (this.hasDuplicates()) {
-            ArrayList<String> ret = new ArrayList<>();
-            ArrayList<String> temp = new ArrayList<>(this.columnNames);
-            Collections.sort(temp);
-            for (int i = 0; i < temp.size(); i++) {
-                if (i < temp.size()-1 && temp.get(i).equals(temp.get(i+1)) && !ret.contains(temp.get(i)) )
-                    ret.add(temp.get(i));
+            LinkedHashSet<String> ret = new LinkedHashSet<>();
+            for (int i = 0; i < this.columnNames.size(); i++) {
+                String name = this.columnNames.get(i);
+                if (this.columnIndex.get(name) != i) ret.add(name);
             }
-            return ret;
+            return new ArrayList<>(ret);
         }
         else return null;
     }
 
+    /**
+     * Returns the index of the slot holding the values of the column at <code>index</code> in the data of records
+     * sharing this header.
+     */
+    int slotOf(int index) {
+        if (index < 0 || index >= this.columnNames.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.columnNames.size());
+        }
+        return this.slots == null ? index : this.slots[index];
+    }
+
+    /**
+     * Returns the number of data slots of records sharing this header, including the slots of removed columns.
+     */
+    int totalSlots() {
+        return this.totalSlots;
+    }
+
+    /**
+     * Returns whether every column is held in the slot with its own index, so that record data is in column order.
+     */
+    boolean isCompact() {
+        return this.slots == null;
+    }
+
+    /**
+     * Returns the values of a record, given in column order, arranged in the data slots of this header. Slots of
+     * removed columns hold <code>null</code>.
+     */
+    List<String> toSlots(List<String> values) {
+        if (this.slots == null) return values;
+        ArrayList<String> ret = new ArrayList<>(this.totalSlots);
+        for (int i = 0; i < this.totalSlots; i++) {
+            ret.add(null);
+        }
+        for (int i = 0; i < this.slots.length; i++) {
+            ret.set(this.slots[i], values.get(i));
+        }
+        return ret;
+    }
+
+    /**
+     * Resets the slot map so that every column is held in the slot with its own index. The records sharing this header
+     * must be rewritten accordingly, using the map returned.
+     * @return the previous slot of each column, or <code>null</code> if the header was already compact.
+     */
+    int[] compact() {
+        int[] old = this.slots;
+        this.slots = null;
+        this.totalSlots = this.columnNames.size();
+        return old;
+    }
+
+    /**
+     * Registers <code>array</code> as using this header, so that its records are rewritten when the header is compacted.
+     */
+    void addArray(CSVArray array) {
+        if (this.arrays.size() >= this.pruneAt) {
+            this.arrays.removeIf(ref -> ref.get() == null);
+            this.pruneAt = Math.max(16, 2 * this.arrays.size());
+        }
+        this.arrays.add(new WeakReference<>(array));
+    }
+
+    /**
+     * Returns the arrays registered as using this header that are still reachable.
+     */
+    List<CSVArray> getArrays() {
+        ArrayList<CSVArray> ret = new ArrayList<>();
+        for (WeakReference<CSVArray> ref : this.arrays) {
+            CSVArray a = ref.get();
+            if (a != null) ret.add(a);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a copy of the slot map, materializing it if the header is compact.
+     */
+    private int[] slotMap() {
+        if (this.slots != null) return this.slots.clone();
+        int[] map = new int[this.totalSlots]; //a compact header has one slot per column
+        for (int i = 0; i < map.length; i++) {
+            map[i] = i;
+        }
+        return map;
+    }
+
+    /**
+     * Inserts a new slot, past the end of every record's data, for a column added at <code>index</code>.
+     */
+    private void addSlot(int index) {
+        int[] old = this.slotMap();
+        int[] map = new int[old.length + 1];
+        System.arraycopy(old, 0, map, 0, index);
+        map[index] = this.totalSlots++;
+        System.arraycopy(old, index, map, index + 1, old.length - index);
+        this.slots = map;
+    }
+
+    /**
+     * Returns the number of changes made to the columns of this header so far.
+     */
+    int getModCount() {
+        return this.modCount;
+    }
+
+    /**
+     * Records that a value of a record sharing this header has been set.
+     */
+    void valuesChanged() {
+        this.valuesVersion++;
+    }
+
+    /**
+     * Returns the number of values set in records sharing this header so far.
+     */
+    int getValuesVersion() {
+        return this.valuesVersion;
+    }
+
+    /**
+     * Rebuilds the name index after the columns have changed.
+     */
+    private void reindex() {
+        HashMap<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < this.columnNames.size(); i++) {
+            index.putIfAbsent(this.columnNames.get(i), i);
+        }
+        this.columnIndex = index;
+        this.modCount++;
+    }
+
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("DUMMY HEADER? "+this.dummyHeader+"\n");
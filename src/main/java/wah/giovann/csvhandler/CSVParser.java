@@ -0,0 +1,348 @@
+package wah.giovann.csvhandler;
+
+import wah.giovann.csvhandler.error.CSVParseException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Record-at-a-time parser behind <code>CSVReader</code> and <code>CSVRecordIterator</code>. Each call to
+ * {@link #readRow(List)} consumes exactly as many characters as are needed to complete the next record, so the
+ * parser never holds more than one record in memory.
+ * <br><br>
+ * The input is scanned in blocks through a reusable <code>char</code> buffer by an explicit state machine, and the
+ * characters of the current field are collected in a second reusable buffer, so the only objects allocated per
+ * record are the field values themselves. CR, LF and CRLF line ends are all recognized; inside quoted fields they are
+ * kept exactly as they appear in the input. Blank lines between records are skipped.
+ * <br><br>
+ * Records can also be read into a {@link FieldSink}, which receives the characters of each field straight from the
+ * field buffer, so that values such as numbers can be converted without creating a <code>String</code> first.
+ * <br><br>
+ * If the format selects columns, {@link #readFirstRow(List)} restricts the parser to them: the fields of the other
+ * columns are parsed past but never passed on, and the selected fields are numbered by their position among the
+ * selected columns.
+ */
+class CSVParser implements Closeable {
+    private static final int blockSize = 64 * 1024;
+    private static final int FIELD_START = 0; //before the first significant character of a field
+    private static final int UNQUOTED = 1; //inside a field that is not quoted
+    private static final int QUOTED = 2; //inside a quoted field
+    private static final int QUOTE_IN_QUOTED = 3; //a quote was found inside a quoted field; it either closes the field or escapes another quote
+    private static final int AFTER_QUOTED = 4; //after the closing quote of a field, where only spaces and tabs may follow
+
+    private final Reader reader;
+    private final CSVFileFormat format;
+    private final char delim;
+    private final boolean trim;
+    private int[] projection = null; //the position of each input column among the selected columns, or -1; null if all are kept
+    private final char[] buf = new char[blockSize];
+    private int pos = 0;
+    private int limit = 0;
+    private char[] field = new char[256];
+    private int fieldLen = 0;
+    private boolean skipLF = false; //whether a line feed following a carriage return must be skipped
+    private int lineNum = 1; //current file line number
+    private int recordLineNum = 1; //line number the last record started on
+    private static final FieldSink skippedFields = (column, chars, start, end) -> { };
+    private final ListSink listSink = new ListSink();
+    private int fieldCount = 0; //fields of the current record passed to the sink so far
+
+    CSVParser(Reader r, CSVFileFormat f) {
+        this(r, f, 1);
+    }
+
+    /**
+     * Creates a parser for input that starts at line <code>firstLine</code> of a file, so that parse errors report
+     * file line numbers when only part of a file is parsed.
+     */
+    CSVParser(Reader r, CSVFileFormat f, int firstLine) {
+        this.reader = r;
+        this.format = f;
+        this.delim = f.getDelimiter();
+        this.trim = f.getTrimSpace();
+        this.lineNum = firstLine;
+    }
+
+    /**
+     * Parses the next record into <code>d</code>, which is cleared first.
+     * @param d the list receiving the field values of the record
+     * @return <code>true</code> if a record was read, <code>false</code> if the end of the input was reached.
+     * @throws CSVParseException if the record is malformed
+     * @throws IOException if the underlying reader fails
+     */
+    boolean readRow(List<String> d) throws CSVParseException, IOException {
+        d.clear();
+        this.listSink.target = d;
+        try {
+            return this.readRow(this.listSink);
+        }
+        finally {
+            this.listSink.target = null;
+        }
+    }
+
+    /**
+     * Parses the first record into <code>d</code>, like {@link #readRow(List)}. If the format selects columns, the
+     * parser is then restricted to them, and so is <code>d</code>. Columns selected by name are looked up in the first
+     * record if the format has a header; otherwise, columns are named by their index.
+     * @param d the list receiving the field values of the record
+     * @return <code>true</code> if a record was read, <code>false</code> if the input is empty.
+     * @throws CSVParseException if the record is malformed
+     * @throws IOException if the underlying reader fails
+     * @throws ArrayIndexOutOfBoundsException if a selected column does not exist
+     */
+    boolean readFirstRow(List<String> d) throws CSVParseException, IOException {
+        if (!this.readRow(d)) return false;
+        this.selectColumns(d);
+        return true;
+    }
+
+    /**
+     * Restricts the parser to the columns selected by the format, if any, looking them up in <code>d</code>, the
+     * values of the first record of the input, which are restricted to them as well. This lets a parser that starts
+     * past the first record read the same columns as one that read it.
+     * @throws ArrayIndexOutOfBoundsException if a selected column does not exist
+     */
+    void selectColumns(List<String> d) {
+        if (!this.format.hasSelectedColumns()) return;
+        boolean[] selected = new boolean[d.size()];
+        for (int index : this.format.getSelectedColumnIndices()) {
+            if (index < 0 || index >= selected.length) {
+                throw new ArrayIndexOutOfBoundsException("No column at index " + index + " exists in the input.");
+            }
+            selected[index] = true;
+        }
+        for (String name : this.format.getSelectedColumnNames()) {
+            int index = this.format.getHasHeader() ? d.indexOf(name) : indexOfDummyColumn(name, selected.length);
+            if (index < 0) throw new ArrayIndexOutOfBoundsException("No column named \""+name+"\" exists in the input.");
+            selected[index] = true;
+        }
+        this.projection = new int[selected.length];
+        ArrayList<String> kept = new ArrayList<>();
+        for (int i = 0; i < selected.length; i++) {
+            this.projection[i] = selected[i] ? kept.size() : -1;
+            if (selected[i]) kept.add(d.get(i));
+        }
+        d.clear();
+        d.addAll(kept);
+    }
+
+    private static int indexOfDummyColumn(String name, int columns) {
+        for (int i = 0; i < columns; i++) {
+            if (name.equals(Integer.toString(i))) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses past the next record without passing on its fields.
+     * @return <code>true</code> if a record was skipped, <code>false</code> if the end of the input was reached.
+     * @throws CSVParseException if the record is malformed
+     * @throws IOException if the underlying reader fails
+     */
+    boolean skipRow() throws CSVParseException, IOException {
+        return this.readRow(skippedFields);
+    }
+
+    /**
+     * Parses the next record, passing each of its fields to <code>sink</code> in order.
+     * @param sink the sink receiving the fields of the record
+     * @return <code>true</code> if a record was read, <code>false</code> if the end of the input was reached.
+     * @throws CSVParseException if the record is malformed
+     * @throws IOException if the underlying reader fails
+     */
+    @SuppressWarnings("fallthrough")
+    boolean readRow(FieldSink sink) throws CSVParseException, IOException {
+        this.fieldCount = 0;
+        this.fieldLen = 0;
+        this.recordLineNum = this.lineNum;
+        int state = FIELD_START;
+        while (true) {
+            if (this.pos == this.limit && !this.fill()) break;
+            char c = this.buf[this.pos++];
+            if (this.skipLF) {
+                this.skipLF = false;
+                if (c == '\n') continue;
+            }
+            switch (state) {
+                case FIELD_START:
+                    if (c == this.delim) {
+                        this.takeField(sink);
+                    }
+                    else if (c == '\n' || c == '\r') {
+                        this.endLine(c);
+                        if (this.fieldCount == 0 && this.fieldLen == 0) { //blank line
+                            this.recordLineNum = this.lineNum;
+                            break;
+                        }
+                        this.takeField(sink);
+                        return true;
+                    }
+                    else if (c == '"') {
+                        this.fieldLen = 0; //spaces before an opening quote are not part of the field
+                        state = QUOTED;
+                    }
+                    else {
+                        this.append(c);
+                        if (c != ' ' && c != '\t') state = UNQUOTED;
+                    }
+                    break;
+                case UNQUOTED:
+                    if (c == this.delim) {
+                        this.takeField(sink);
+                        state = FIELD_START;
+                    }
+                    else if (c == '\n' || c == '\r') {
+                        this.endLine(c);
+                        this.takeField(sink);
+                        return true;
+                    }
+                    else if (c == '"') {
+                        this.append(c);
+                        throw new CSVParseException(CSVParseException.UNEXPECTED_QUOTE, this.fieldString(), this.lineNum);
+                    }
+                    else {
+                        this.append(c);
+                    }
+                    break;
+                case QUOTED:
+                    if (c == '"') {
+                        state = QUOTE_IN_QUOTED;
+                    }
+                    else {
+                        if (c == '\r' || (c == '\n' && (this.fieldLen == 0 || this.field[this.fieldLen - 1] != '\r'))) {
+                            this.lineNum++; //multi-line field
+                        }
+                        this.append(c);
+                    }
+                    break;
+                case QUOTE_IN_QUOTED:
+                    if (c == '"') { //a double quote
+                        this.append(c);
+                        state = QUOTED;
+                        break;
+                    }
+                    //otherwise the previous quote was a closing field quote
+                case AFTER_QUOTED:
+                    if (c == this.delim) {
+                        this.takeField(sink);
+                        state = FIELD_START;
+                    }
+                    else if (c == '\n' || c == '\r') {
+                        this.endLine(c);
+                        this.takeField(sink);
+                        return true;
+                    }
+                    else if (c == ' ' || c == '\t') {
+                        state = AFTER_QUOTED;
+                    }
+                    else {
+                        this.append(c);
+                        throw new CSVParseException(CSVParseException.UNEXPECTED_TOKEN, this.fieldString(), this.lineNum);
+                    }
+                    break;
+            }
+        }
+        //end of input
+        if (state == QUOTED) {
+            throw new CSVParseException(CSVParseException.MISSING_CLOSING_QUOTE, this.fieldString(), this.lineNum);
+        }
+        if (state == FIELD_START && this.fieldCount == 0 && this.fieldLen == 0) return false;
+        this.takeField(sink);
+        return true;
+    }
+
+    /**
+     * Returns the current line number of the input, starting at 1.
+     * @return the current line number
+     */
+    int getLineNumber() {
+        return this.lineNum;
+    }
+
+    /**
+     * Returns the line number the last record read by {@link #readRow(List)} started on.
+     * @return the line number of the last record
+     */
+    int getRecordLineNumber() {
+        return this.recordLineNum;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    private boolean fill() throws IOException {
+        int n = this.reader.read(this.buf, 0, this.buf.length);
+        this.pos = 0;
+        this.limit = Math.max(n, 0);
+        return n > 0;
+    }
+
+    private void endLine(char c) {
+        this.lineNum++;
+        if (c == '\r') this.skipLF = true;
+    }
+
+    private void append(char c) {
+        if (this.fieldLen == this.field.length) {
+            this.field = Arrays.copyOf(this.field, this.field.length * 2);
+        }
+        this.field[this.fieldLen++] = c;
+    }
+
+    /**
+     * Passes the current field, trimmed if the format requires it, to the sink and resets the field buffer.
+     */
+    private void takeField(FieldSink sink) throws CSVParseException {
+        int column = this.fieldCount++;
+        if (this.projection != null) {
+            if (column >= this.projection.length || this.projection[column] < 0) { //not selected
+                this.fieldLen = 0;
+                return;
+            }
+            column = this.projection[column];
+        }
+        int start = 0;
+        int end = this.fieldLen;
+        if (this.trim) {
+            while (start < end && this.field[start] <= ' ') start++;
+            while (end > start && this.field[end - 1] <= ' ') end--;
+        }
+        this.fieldLen = 0;
+        sink.field(column, this.field, start, end);
+    }
+
+    private String fieldString() {
+        return new String(this.field, 0, this.fieldLen);
+    }
+
+    /**
+     * Receives the fields of records parsed by {@link #readRow(FieldSink)}.
+     */
+    interface FieldSink {
+        /**
+         * Receives field number <code>column</code> of the current record, held in <code>chars</code> from
+         * <code>start</code> (inclusive) to <code>end</code> (exclusive). The array is reused for the next field, so
+         * the characters must be consumed before this method returns.
+         */
+        void field(int column, char[] chars, int start, int end) throws CSVParseException;
+    }
+
+    /**
+     * The sink behind {@link #readRow(List)}, which adds each field to a list as a <code>String</code>.
+     */
+    private static final class ListSink implements FieldSink {
+        private List<String> target;
+
+        @Override
+        public void field(int column, char[] chars, int start, int end) {
+            this.target.add(start == end ? "" : new String(chars, start, end - start));
+        }
+    }
+}
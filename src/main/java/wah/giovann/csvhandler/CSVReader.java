@@ -1,11 +1,27 @@
 package wah.giovann.csvhandler;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.mozilla.universalchardet.UniversalDetector;
 import wah.giovann.csvhandler.error.CSVParseException;
+import wah.giovann.csvhandler.error.ValueConversionException;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The <code>CSVReader</code> class is responsible for reading of information from .csv files.
@@ -14,11 +30,19 @@ import java.util.ArrayList;
  * data manipulation. The input file format is specified by a <code>CSVFileFormat</code> object passed to the
  * <code>CSVReader</code> constructor. Here, the format's <code>outputFileLineEnd</code> field is ignored. <code>CSVReader</code> can parse any file with specification
  * compliant with RFC 4180 (see <a href="https://en.wikipedia.org/wiki/Comma-separated_values" target="_blank">the CSV wikipedia page</a>).
+ * <br><br>
+ * Files that are too large to be held in memory can be read one record at a time using the <code>iterator</code> and
+ * <code>stream</code> methods, which share the same parser as <code>readCSV</code>. Previews of such files can be read
+ * with an offset and a limit, which stop parsing once the limit is reached, or as a random sample of their records, and
+ * an iterator can start from a byte offset of a file without parsing what comes before it.
  * @author Giovann Wah
  * @version 1.0
  */
 public class CSVReader {
-    private final int bufSize = 256;
+    private static final int charsetSampleSize = 64 * 1024;
+    private static final int readBufferSize = 64 * 1024;
+    private static final int seekBufferSize = 64 * 1024;
+    private static final int seekCheckRecords = 4; //the records that must parse after a line end for it to be taken as a record boundary
     private CSVFileFormat format;
 
     /**
@@ -37,17 +61,7 @@ public class CSVReader {
      * @throws CSVParseException
      */
     public CSVArray readCSV(File file) throws CSVParseException {
-        try(FileInputStream fis = new FileInputStream(file)) {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            int nread;
-            byte [] bytes = new byte[bufSize];
-            while ((nread = fis.read(bytes)) != -1) {
-                baos.write(bytes,0,nread);
-            }
-            ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
-            String charSet = getBestCharsetName(bais);
-            BufferedInputStream bis = new BufferedInputStream(new ByteArrayInputStream(baos.toByteArray()));
-            BufferedReader reader = new BufferedReader(new InputStreamReader(bis, charSet));
+        try (BufferedReader reader = this.openReader(file)) {
             return this.readCSV(reader);
         }
         catch (IOException e) {
@@ -64,8 +78,7 @@ public class CSVReader {
      * @throws CSVParseException
      */
     public CSVArray readCSV(String csvString) throws CSVParseException {
-        String charSet = getBestCharsetName(null);
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(IOUtils.toInputStream(csvString, charSet), charSet))) {
+        try (BufferedReader reader = new BufferedReader(new StringReader(csvString))) {
             return this.readCSV(reader);
         }
         catch(IOException e){
@@ -76,128 +89,776 @@ public class CSVReader {
 
     /**
      *Returns a <code>CSVArray</code> instance after parsing the characters of the <code>BufferedReader</code>. The contents
-     * the data being read must conform to specification RFC 4180 in order to be properly parsed.
+     * the data being read must conform to specification RFC 4180 in order to be properly parsed. If the input format
+     * declares column types, the returned array is a <code>ColumnarCSVArray</code> holding the typed columns.
      * @param r the <code>BufferedReader</code>
      * @return
      * @throws CSVParseException
      */
     public CSVArray readCSV(BufferedReader r) throws CSVParseException {
+        if (this.format.hasColumnTypes()) return this.readColumnarCSV(r);
         try {
-            CSVArray ret = null;
-            CSVHeader header = null;
-            StringBuilder mainBuffer = new StringBuilder();
-            StringBuilder spaceBuffer = new StringBuilder();
-            char delim = this.format.getDelimiter();
-            char lc = '\0'; //the last significant character encountered, excluding spaces and tabs
-            int lineNum = 0; //file line number
-            int columns = 1; //number of data columns detected
-            int qCount = 0; //quote count
-            boolean headerSet = false; //whether or not the header has been set
-            boolean quotedFieldFinished = false; //whether a field that has an opening quote has been closed yet
-
-            ArrayList<String> d = new ArrayList<>();
-            String line;
-            while((line = r.readLine()) != null) {
-                lineNum++;
-                char[] ca = line.toCharArray();
-                for (int i = 0; i < ca.length; i++) {
-                    char c = ca[i];
-                    if (c == ' ' || c == '\t') {
-                        spaceBuffer.append(c);
-                    } else { //handle leading and trailing spaces that occur around quoted fields
-                        if (spaceBuffer.length() != 0) {
-                            if (!quotedFieldFinished && !(lc == delim && c == '"') && !(lc == '"' && c == delim)) {
-                                mainBuffer.append(spaceBuffer);
-                                spaceBuffer.setLength(0);
-                            }
-                            else if ((lc == delim && c == '"')){
-                                spaceBuffer.setLength(0);
-                            }
-                        }
-                    }
+            CSVRecordIterator it = new CSVRecordIterator(new CSVParser(r, this.format), this.format);
+            if (it.getHeader() == null) return null;
+            CSVArray ret = new CSVArray(it.getHeader());
+            CSVRecord rec;
+            while ((rec = it.nextRecord()) != null) {
+                ret.add(rec);
+            }
+            return ret;
+        }
+        catch (IOException e){
+            e.printStackTrace();
+        }
+        return null;
+    }
 
-                    if (c == '"') {
-                        if (qCount == 0 && !quotedFieldFinished && i != ca.length - 1 && (i == 0 || ca[i - 1] == delim || lc == delim)) { //this is definitely an opening field quote
-                            qCount++;
-                        } else if (qCount == 1 && !quotedFieldFinished && i != 0 && (i == ca.length - 1 || ca[i + 1] == delim || ca[i + 1] != '"')) { //this is definitely a closing field quote
-                            qCount--;
-                            quotedFieldFinished = true;
-                        } else if (qCount == 1 && !quotedFieldFinished && i != 0 && i != ca.length - 1 && (ca[i + 1] == '"')) { //a double quote
-                            i++;
-                            mainBuffer.append(c);
-                        } else {
-                            //error
-                            mainBuffer.append(c);
-                            throw new CSVParseException(CSVParseException.UNEXPECTED_QUOTE, mainBuffer.toString(), lineNum);
-                        }
-                    } else if (c == delim) {
-                        if (qCount == 0) {
-                            d.add(this.format.getTrimSpace() ? mainBuffer.toString().trim() : mainBuffer.toString());
-                            if (!this.format.getHasHeader() && !headerSet) {
-                                columns++;
-                            }
-                            quotedFieldFinished = false;
-                            spaceBuffer.setLength(0);
-                            mainBuffer.setLength(0);
-                        }
-                        else if (!quotedFieldFinished){
-                            mainBuffer.append(c);
-                        }
-                        else {
-                            mainBuffer.append(c);
-                            throw new CSVParseException(CSVParseException.UNEXPECTED_TOKEN, mainBuffer.toString(), lineNum);
-                        }
-                    } else {
-                        if (!quotedFieldFinished && c != ' ' && c != '\t') {
-                            mainBuffer.append(c);
-                        }
-                        else if (quotedFieldFinished && c != ' ' && c != '\t'){
-                            mainBuffer.append(c);
-                            throw new CSVParseException(CSVParseException.UNEXPECTED_TOKEN, mainBuffer.toString(), lineNum);
+    /**
+     *Returns a <code>CSVArray</code> of at most <code>limit</code> records of the <code>File</code> argument, after
+     * skipping its first <code>offset</code> records. Skipped records are parsed past without creating their values, and
+     * the rest of the file is not read once the limit is reached. If the input format has filters, only records that
+     * pass them are counted. The contents of the file must conform to specification RFC 4180 in order to be properly
+     * parsed.
+     * @param file A reference to a file
+     * @param offset the number of records to skip.
+     * @param limit the largest number of records to read.
+     * @return A <code>CSVArray</code> instance.
+     * @throws CSVParseException
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    public CSVArray readCSV(File file, long offset, long limit) throws CSVParseException {
+        if (offset < 0 || limit < 0) throw new IllegalArgumentException("The offset and limit cannot be negative.");
+        try (CSVRecordIterator it = this.iterator(file)) {
+            return this.readRange(it, offset, limit);
+        }
+        catch (IOException e){
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     *Returns a <code>CSVArray</code> of at most <code>limit</code> records read from the <code>BufferedReader</code>,
+     * after skipping the first <code>offset</code> records. See {@link #readCSV(File, long, long)}. The reader is
+     * closed.
+     * @param r the <code>BufferedReader</code>
+     * @param offset the number of records to skip.
+     * @param limit the largest number of records to read.
+     * @return A <code>CSVArray</code> instance.
+     * @throws CSVParseException
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    public CSVArray readCSV(BufferedReader r, long offset, long limit) throws CSVParseException {
+        if (offset < 0 || limit < 0) throw new IllegalArgumentException("The offset and limit cannot be negative.");
+        try (CSVRecordIterator it = this.iterator(r)) {
+            return this.readRange(it, offset, limit);
+        }
+        catch (IOException e){
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private CSVArray readRange(CSVRecordIterator it, long offset, long limit) throws CSVParseException, IOException {
+        if (it.getHeader() == null) return null;
+        it.skipRecords(offset);
+        CSVArray ret = new CSVArray(it.getHeader());
+        CSVRecord rec;
+        while (ret.size() < limit && (rec = it.nextRecord()) != null) {
+            ret.add(rec);
+        }
+        return this.format.hasColumnTypes() ? new ColumnarCSVArray(ret, this.format) : ret;
+    }
+
+    /**
+     *Returns a <code>CSVArray</code> of a uniform random sample of <code>size</code> records of the <code>File</code>
+     * argument, in the order in which they appear in the file, or of all of its records if it has fewer. The file is read
+     * once, keeping only the sampled records in memory; the records between them are parsed past without creating
+     * their values. If the input format has filters, the sample is taken from the records that pass them. The contents
+     * of the file must conform to specification RFC 4180 in order to be properly parsed.
+     * @param file A reference to a file
+     * @param size the number of records to sample.
+     * @param random the source of randomness of the sample.
+     * @return A <code>CSVArray</code> instance.
+     * @throws CSVParseException
+     * @throws IllegalArgumentException if the size is not positive
+     */
+    public CSVArray sample(File file, int size, Random random) throws CSVParseException {
+        if (size <= 0) throw new IllegalArgumentException("The sample size must be positive.");
+        try (CSVRecordIterator it = this.iterator(file)) {
+            return this.sample(it, size, random);
+        }
+        catch (IOException e){
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     *Returns a <code>CSVArray</code> of a uniform random sample of <code>size</code> records read from the
+     * <code>BufferedReader</code>. See {@link #sample(File, int, Random)}. The reader is closed.
+     * @param r the <code>BufferedReader</code>
+     * @param size the number of records to sample.
+     * @param random the source of randomness of the sample.
+     * @return A <code>CSVArray</code> instance.
+     * @throws CSVParseException
+     * @throws IllegalArgumentException if the size is not positive
+     */
+    public CSVArray sample(BufferedReader r, int size, Random random) throws CSVParseException {
+        if (size <= 0) throw new IllegalArgumentException("The sample size must be positive.");
+        try (CSVRecordIterator it = this.iterator(r)) {
+            return this.sample(it, size, random);
+        }
+        catch (IOException e){
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Samples the records of <code>it</code> by reservoir sampling. Once the reservoir is full, the number of records
+     * to skip before the next one that replaces a sampled record is drawn directly (Li's algorithm L), so that random
+     * numbers are only drawn, and values only created, for the records that enter the reservoir.
+     */
+    private CSVArray sample(CSVRecordIterator it, int size, Random random) throws CSVParseException, IOException {
+        if (it.getHeader() == null) return null;
+        CSVRecord[] reservoir = new CSVRecord[size];
+        long[] positions = new long[size]; //the position of each sampled record in the input
+        int n = 0;
+        long position = 0;
+        CSVRecord rec;
+        while (n < size && (rec = it.nextRecord()) != null) {
+            reservoir[n] = rec;
+            positions[n++] = position++;
+        }
+        if (n == size) {
+            double w = Math.exp(Math.log(uniform(random)) / size);
+            while (true) {
+                long gap = (long) Math.floor(Math.log(uniform(random)) / Math.log(1 - w));
+                long skipped = it.skipRecords(gap);
+                position += skipped;
+                if (skipped < gap || (rec = it.nextRecord()) == null) break;
+                int slot = random.nextInt(size);
+                reservoir[slot] = rec;
+                positions[slot] = position++;
+                w *= Math.exp(Math.log(uniform(random)) / size);
+            }
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> positions[i]));
+        CSVArray ret = new CSVArray(it.getHeader());
+        for (int i : order) {
+            ret.add(reservoir[i]);
+        }
+        return this.format.hasColumnTypes() ? new ColumnarCSVArray(ret, this.format) : ret;
+    }
+
+    /**
+     * Returns a random number greater than 0 and at most 1.
+     */
+    private static double uniform(Random random) {
+        return 1.0 - random.nextDouble();
+    }
+
+    /**
+     *Returns a <code>ColumnarCSVArray</code> instance after parsing the contents of the <code>File</code> argument. The
+     * values are stored column by column as they are parsed, so no per-record objects are kept. The contents the file must
+     * conform to specification RFC 4180 in order to be properly parsed. Columns whose type is declared by the input format
+     * are parsed into primitives as they are read.
+     * @param file A reference to a file
+     * @return A <code>ColumnarCSVArray</code> instance.
+     * @throws CSVParseException
+     * @throws ValueConversionException if a value of a typed column cannot be parsed
+     */
+    public ColumnarCSVArray readColumnarCSV(File file) throws CSVParseException {
+        try (BufferedReader reader = this.openReader(file)) {
+            return this.readColumnarCSV(reader);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     *Returns a <code>ColumnarCSVArray</code> instance after parsing the characters of the <code>BufferedReader</code>. The
+     * contents the data being read must conform to specification RFC 4180 in order to be properly parsed.
+     * @param r the <code>BufferedReader</code>
+     * @return A <code>ColumnarCSVArray</code> instance.
+     * @throws CSVParseException
+     */
+    public ColumnarCSVArray readColumnarCSV(BufferedReader r) throws CSVParseException {
+        try {
+            CSVParser parser = new CSVParser(r, this.format);
+            ArrayList<String> row = new ArrayList<>();
+            if (!parser.readFirstRow(row)) return null;
+            ColumnarCSVArray ret;
+            if (this.format.getHasHeader()) {
+                ret = new ColumnarCSVArray(new CSVHeader(row), this.format);
+            }
+            else {
+                ret = new ColumnarCSVArray(new CSVHeader(row.size()), this.format); //dummy header
+            }
+            RowFilter filter = this.format.hasFilters() ? new RowFilter(parser, ret.getHeader(), this.format) : null;
+            if (!this.format.getHasHeader() && (filter == null || filter.accepts(row))) {
+                ret.appendRow(row, parser.getRecordLineNumber());
+            }
+            if (filter != null) ret.appendAll(filter);
+            else ret.appendAll(parser);
+            return ret;
+        }
+        catch (IOException e){
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     *Computes aggregates for each group of records in the <code>File</code> argument with the same values in
+     * <code>groupColumns</code>, in a single pass over the file, without building a <code>CSVArray</code> of its records.
+     * Only the values of the grouping and aggregated columns are read, and numeric values are parsed without creating
+     * <code>String</code>s. The result is the same as that of <code>CSVArray.aggregate</code> on the whole file, except
+     * that records with fewer values than the header are treated as having empty values in the missing columns. The
+     * contents the file must conform to specification RFC 4180 in order to be properly parsed.
+     * @param file A reference to a file
+     * @param groupColumns The columns to group the records by.
+     * @param aggregations The aggregates to compute for each group.
+     * @return A new <code>CSVArray</code> of aggregates, with one record per group.
+     * @throws CSVParseException
+     * @throws ValueConversionException if a value of a numeric aggregation is not a number
+     * @throws IOException if the file cannot be read
+     */
+    public CSVArray aggregate(File file, String[] groupColumns, CSVAggregation... aggregations) throws CSVParseException, IOException {
+        try (BufferedReader reader = this.openReader(file)) {
+            return this.aggregate(reader, groupColumns, aggregations);
+        }
+    }
+
+    /**
+     *Computes aggregates for each group of records read from the <code>BufferedReader</code> with the same values in
+     * <code>groupColumns</code>, in a single pass. See {@link #aggregate(File, String[], CSVAggregation...)}.
+     * @param r the <code>BufferedReader</code>
+     * @param groupColumns The columns to group the records by.
+     * @param aggregations The aggregates to compute for each group.
+     * @return A new <code>CSVArray</code> of aggregates, with one record per group.
+     * @throws CSVParseException
+     * @throws ValueConversionException if a value of a numeric aggregation is not a number
+     * @throws IOException if the reader fails
+     */
+    public CSVArray aggregate(BufferedReader r, String[] groupColumns, CSVAggregation... aggregations) throws CSVParseException, IOException {
+        CSVParser parser = new CSVParser(r, this.format);
+        ArrayList<String> row = new ArrayList<>();
+        if (!parser.readFirstRow(row)) return null;
+        CSVHeader header = this.format.getHasHeader() ? new CSVHeader(row) : new CSVHeader(row.size()); //dummy header
+        Aggregator aggregator = new Aggregator(header, groupColumns, aggregations);
+        RowFilter filter = this.format.hasFilters() ? new RowFilter(parser, header, this.format) : null;
+        if (!this.format.getHasHeader() && (filter == null || filter.accepts(row))) {
+            aggregator.addRow(row, parser, header.totalColumns());
+        }
+        if (filter != null) aggregator.addAll(filter, header.totalColumns());
+        else aggregator.addAll(parser, header.totalColumns());
+        return aggregator.toCSVArray();
+    }
+
+    /**
+     *Returns a <code>CSVRecordIterator</code> that parses the contents of the <code>File</code> argument one record at a time,
+     * instead of building a <code>CSVArray</code> of the whole file. The header is read when this method is called. The
+     * contents of the file must conform to specification RFC 4180 in order to be properly parsed. The returned iterator
+     * must be closed by the caller.
+     * @param file A reference to a file
+     * @return A <code>CSVRecordIterator</code> over the records of the file.
+     * @throws CSVParseException if the header cannot be parsed
+     * @throws IOException if the file cannot be read
+     */
+    public CSVRecordIterator iterator(File file) throws CSVParseException, IOException {
+        BufferedReader reader = this.openReader(file);
+        try {
+            return this.iterator(reader);
+        }
+        catch (CSVParseException | IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     *Returns a <code>CSVRecordIterator</code> that parses the characters of the <code>BufferedReader</code> one record at a time.
+     * The header is read when this method is called. Closing the returned iterator closes the reader.
+     * @param r the <code>BufferedReader</code>
+     * @return A <code>CSVRecordIterator</code> over the records read from <code>r</code>.
+     * @throws CSVParseException if the header cannot be parsed
+     * @throws IOException if the reader fails
+     */
+    public CSVRecordIterator iterator(BufferedReader r) throws CSVParseException, IOException {
+        return new CSVRecordIterator(new CSVParser(r, this.format), this.format);
+    }
+
+    /**
+     *Returns a <code>CSVRecordIterator</code> over the records of the <code>File</code> argument that start at or after
+     * byte <code>byteOffset</code>, without parsing the file up to it. This is meant for reading from an approximate
+     * position of a large file, such as a fraction of its size.
+     * <br><br>
+     * The header (or the first record, for a file without one) is read first. The file is then scanned from the offset
+     * for the first line end after which the next few records each parse with as many values as the first record; the
+     * iterator starts there. This skips any partial record the offset falls in, including the rest of a quoted value
+     * holding line ends, unless the lines that follow inside the value happen to look like records themselves, which
+     * is why the position is approximate. Line numbers in parse errors are counted from the start position. The file
+     * must be encoded in UTF-8 or in a single-byte character set compatible with ASCII. The returned iterator must be
+     * closed by the caller.
+     * @param file A reference to a file
+     * @param byteOffset the position of the file to start reading from, in bytes.
+     * @return A <code>CSVRecordIterator</code> over the records of the file from the offset.
+     * @throws CSVParseException if the header cannot be parsed
+     * @throws IOException if the file cannot be read, or its character set is not supported
+     */
+    public CSVRecordIterator iterator(File file, long byteOffset) throws CSVParseException, IOException {
+        if (byteOffset <= 0) return this.iterator(file);
+        Charset charSet = this.seekableCharset(file);
+        ArrayList<String> first = this.readFirstRow(file, charSet);
+        if (first == null) return this.iterator(file); //empty input
+        long start = this.findRecordStart(file, charSet, byteOffset, first.size());
+        BufferedReader reader = openReader(file, charSet, start);
+        try {
+            CSVParser parser = new CSVParser(reader, this.format);
+            parser.selectColumns(first);
+            CSVHeader header = this.format.getHasHeader() ? new CSVHeader(first) : new CSVHeader(first.size()); //dummy header
+            return new CSVRecordIterator(parser, header, this.format);
+        }
+        catch (RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     *Returns a <code>CSVArray</code> of the records of the <code>File</code> argument numbered <code>from</code> to
+     * <code>from + count - 1</code>, or to the last record, found through <code>index</code>: the file is read from the
+     * indexed record at or before <code>from</code>, parsing past the records before it without creating their values,
+     * instead of from its start. Records are numbered from 0, after the header if the file has one. If the input
+     * format has filters, records of the range that do not pass them are left out. The contents of the file must conform
+     * to specification RFC 4180 in order to be properly parsed.
+     * @param file A reference to a file
+     * @param index the index of the file, built with the same format
+     * @param from the number of the first record to read.
+     * @param count the largest number of records to read.
+     * @return A <code>CSVArray</code> instance.
+     * @throws CSVParseException
+     * @throws IOException if the file cannot be read, or its character set is not supported
+     * @throws IllegalArgumentException if <code>from</code> or <code>count</code> is negative, or the index is out of
+     * date for the file
+     */
+    public CSVArray readCSV(File file, CSVRowIndex index, long from, long count) throws CSVParseException, IOException {
+        if (from < 0 || count < 0) throw new IllegalArgumentException("The record number and count cannot be negative.");
+        index.check(file, this.format);
+        Charset charSet = this.seekableCharset(file);
+        ArrayList<String> first = this.readFirstRow(file, charSet);
+        if (first == null) return null;
+        boolean inRange = from < index.getRecordCount();
+        int entry = inRange ? index.entryOf(from) : 0;
+        long start = inRange ? index.offsetOf(entry) : file.length(); //past the last record, nothing is read
+        try (CSVParser parser = new CSVParser(openReader(file, charSet, start), this.format, inRange ? index.lineOf(entry) : 1)) {
+            parser.selectColumns(first);
+            CSVHeader header = this.format.getHasHeader() ? new CSVHeader(first) : new CSVHeader(first.size()); //dummy header
+            RowFilter filter = this.format.hasFilters() ? new RowFilter(parser, header, this.format) : null;
+            long skip = inRange ? from - (long) entry * index.getInterval() : 0;
+            while (skip > 0 && parser.skipRow()) {
+                skip--;
+            }
+            CSVArray ret = new CSVArray(header);
+            ArrayList<String> row = new ArrayList<>();
+            for (long i = 0; i < count && parser.readRow(row); i++) {
+                if (filter == null || filter.accepts(row)) ret.add(new CSVRecord(header, row));
+            }
+            return this.format.hasColumnTypes() ? new ColumnarCSVArray(ret, this.format) : ret;
+        }
+    }
+
+    /**
+     *Returns the record of the <code>File</code> argument numbered <code>record</code>, found through
+     * <code>index</code>. See {@link #readCSV(File, CSVRowIndex, long, long)}.
+     * @param file A reference to a file
+     * @param index the index of the file, built with the same format
+     * @param record the number of the record, starting at 0.
+     * @return the record, or <code>null</code> if the file has no such record or the record does not pass the filters of
+     * the input format.
+     * @throws CSVParseException
+     * @throws IOException if the file cannot be read, or its character set is not supported
+     * @throws IllegalArgumentException if <code>record</code> is negative, or the index is out of date for the file
+     */
+    public CSVRecord readRecord(File file, CSVRowIndex index, long record) throws CSVParseException, IOException {
+        CSVArray ret = this.readCSV(file, index, record, 1);
+        return ret == null || ret.isEmpty() ? null : ret.get(0);
+    }
+
+    /**
+     * Returns the character set of the file, which must be one in which ASCII characters are single bytes, so that the
+     * file can be read from the byte offset of a record.
+     * @throws UnsupportedEncodingException if the character set is not supported, or ASCII characters are not single
+     * bytes in it
+     */
+    Charset seekableCharset(File file) throws IOException {
+        String charSetName = this.getBestCharsetName(file);
+        if (!Charset.isSupported(charSetName)) throw new UnsupportedEncodingException(charSetName);
+        Charset charSet = Charset.forName(charSetName);
+        if (!MappedCSVReader.isAsciiCompatible(charSet)) throw new UnsupportedEncodingException(charSetName);
+        return charSet;
+    }
+
+    /**
+     * Returns the values of the first record of the file, before any column is selected, or <code>null</code> if the
+     * file is empty.
+     */
+    private ArrayList<String> readFirstRow(File file, Charset charSet) throws CSVParseException, IOException {
+        ArrayList<String> ret = new ArrayList<>();
+        try (CSVParser parser = new CSVParser(openReader(file, charSet, 0), this.format)) {
+            return parser.readRow(ret) ? ret : null;
+        }
+    }
+
+    /**
+     * Returns the position of the first line end at or after <code>offset</code> that is followed by records of
+     * <code>columns</code> values, or the size of the file if there is none. The file is read once from the offset; see
+     * {@link RecordStartScan}.
+     */
+    private long findRecordStart(File file, Charset charSet, long offset, int columns) throws IOException {
+        RecordStartScan scan = new RecordStartScan(this.format.getDelimiter(), charSet, columns);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer bb = ByteBuffer.allocate(seekBufferSize);
+            byte[] bytes = bb.array();
+            long position = offset - 1; //the byte before the offset tells whether the offset is at a line start
+            while (position < size) {
+                bb.clear();
+                int n = channel.read(bb, position);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    if (scan.next(bytes[i], position + i)) return scan.found();
+                }
+                position += n;
+            }
+            scan.end(size);
+            return scan.found() < 0 ? size : scan.found();
+        }
+    }
+
+    /**
+     * Finds the first line end followed by <code>seekCheckRecords</code> records of a given number of values, or by
+     * fewer that end the file, in a single pass over the bytes of the file.
+     * <br><br>
+     * Every line end is a candidate start. The records after a candidate are followed with the states of
+     * <code>CSVParser</code>, counting the values of each record and failing where the parser would throw. At a line
+     * end, every parse outside of a quoted value ends its record and is then in the same state as a parse starting
+     * there, so they are merged with the new candidate; the parses followed at once therefore differ in quote parity,
+     * and there are at most two. A candidate with fewer good records than an earlier candidate of the same parse can
+     * only start records if the earlier one does, so it is dropped, which leaves at most
+     * <code>seekCheckRecords</code> candidates per parse.
+     */
+    private static final class RecordStartScan {
+        private static final int FIELD_START = 0;
+        private static final int UNQUOTED = 1;
+        private static final int QUOTED = 2;
+        private static final int QUOTE_IN_QUOTED = 3;
+        private static final int AFTER_QUOTED = 4;
+        private static final int OTHER = -1; //a character the parser makes no distinction for
+        private static final int PARTIAL = -2; //the leading bytes of a character that may be the delimiter
+        private final char delim;
+        private final byte[] delimBytes; //the encoded delimiter if it is not ASCII, or none
+        private final int columns;
+        private final ArrayList<Parse> parses = new ArrayList<>();
+        private int matched = 0; //the bytes of the delimiter matched so far
+        private boolean afterCR = false; //whether the last byte was a carriage return ending a line
+        private long found = -1; //the first candidate found to start records, or -1
+
+        RecordStartScan(char delim, Charset charSet, int columns) {
+            this.delim = delim;
+            byte[] encoded = String.valueOf(delim).getBytes(charSet);
+            boolean mappable = delim >= 0x80 && new String(encoded, charSet).equals(String.valueOf(delim));
+            this.delimBytes = mappable ? encoded : new byte[0];
+            this.columns = columns;
+        }
+
+        /**
+         * Scans the byte at <code>position</code>, and returns whether the first candidate is known.
+         */
+        boolean next(byte b, long position) {
+            if (this.afterCR) {
+                this.afterCR = false;
+                if (b == '\n') { //the line feed of a CRLF
+                    this.addCandidate(position + 1);
+                    return this.isDone();
+                }
+                this.addCandidate(position);
+            }
+            int c = this.decode(b);
+            if (c == PARTIAL) return this.isDone();
+            if (c == '\n' || c == '\r') {
+                this.lineEnd();
+                if (c == '\r') this.afterCR = true;
+                else this.addCandidate(position + 1);
+            }
+            else {
+                for (int i = this.parses.size() - 1; i >= 0; i--) {
+                    if (!this.parses.get(i).step(c, this.delim)) this.parses.remove(i); //the parser would throw
+                }
+            }
+            return this.isDone();
+        }
+
+        /**
+         * Ends the scan at the end of the file, where the last record may have no line end.
+         */
+        void end(long size) {
+            if (this.afterCR) this.addCandidate(size);
+            for (Parse p : this.parses) {
+                if (p.state == QUOTED) continue; //a missing closing quote
+                if (!p.isBlank()) p.endRecord(p.fields + 1 == this.columns, this);
+                for (long[] candidate : p.candidates) { //the file ends before all their records are read
+                    if (this.found < 0 || candidate[0] < this.found) this.found = candidate[0];
+                }
+            }
+            this.parses.clear();
+        }
+
+        long found() {
+            return this.found;
+        }
+
+        /**
+         * Returns the character of a byte as far as the parser is concerned: itself for ASCII, the delimiter once all
+         * of its bytes are matched, or <code>OTHER</code>.
+         */
+        private int decode(byte b) {
+            if (b >= 0) {
+                this.matched = 0;
+                return b;
+            }
+            if (this.matched < this.delimBytes.length && b == this.delimBytes[this.matched]) {
+                if (++this.matched < this.delimBytes.length) return PARTIAL;
+                this.matched = 0;
+                return this.delim;
+            }
+            this.matched = this.delimBytes.length > 0 && b == this.delimBytes[0] ? 1 : 0;
+            return OTHER;
+        }
+
+        private void lineEnd() {
+            for (Iterator<Parse> it = this.parses.iterator(); it.hasNext(); ) {
+                Parse p = it.next();
+                if (p.state == QUOTED || p.isBlank()) continue; //a line end in a value, or a blank line
+                p.endRecord(p.fields + 1 == this.columns, this);
+                p.state = FIELD_START;
+                p.fields = 0;
+                p.spaces = false;
+                if (p.candidates.isEmpty()) it.remove();
+            }
+        }
+
+        /**
+         * Adds a candidate starting at <code>position</code>, merging the parses that are at the start of a record.
+         */
+        private void addCandidate(long position) {
+            if (this.found >= 0) return; //a later candidate cannot be first
+            Parse merged = new Parse();
+            for (Iterator<Parse> it = this.parses.iterator(); it.hasNext(); ) {
+                Parse p = it.next();
+                if (p.isBlank()) {
+                    merged.candidates.addAll(p.candidates);
+                    it.remove();
+                }
+            }
+            merged.candidates.add(new long[]{position, 0});
+            merged.candidates.sort(Comparator.comparingLong(candidate -> candidate[0]));
+            long best = -1;
+            for (Iterator<long[]> it = merged.candidates.iterator(); it.hasNext(); ) {
+                long[] candidate = it.next();
+                if (candidate[1] <= best) it.remove(); //an earlier candidate has as many good records
+                else best = candidate[1];
+            }
+            this.parses.add(merged);
+        }
+
+        /**
+         * Returns whether a candidate was found and no earlier candidate is still being checked.
+         */
+        private boolean isDone() {
+            if (this.found < 0) return false;
+            for (Parse p : this.parses) {
+                if (!p.candidates.isEmpty() && p.candidates.get(0)[0] < this.found) return false;
+            }
+            return true;
+        }
+
+        /**
+         * The state of the parse of the records after one or more candidates.
+         */
+        private static final class Parse {
+            int state = FIELD_START;
+            int fields = 0; //the values of the current record ended so far
+            boolean spaces = false; //whether spaces or tabs were read at the start of the current value
+            final ArrayList<long[]> candidates = new ArrayList<>(); //the position and good records of each candidate, in order
+
+            boolean isBlank() {
+                return this.state == FIELD_START && this.fields == 0 && !this.spaces;
+            }
+
+            /**
+             * Follows the parser over a character other than a line end, and returns whether it did not throw.
+             */
+            boolean step(int c, char delim) {
+                switch (this.state) {
+                    case FIELD_START:
+                        if (c == delim) {
+                            this.fields++;
+                            this.spaces = false;
                         }
-                    }
-                    if (i == ca.length - 1) { //end of line
-                        if (qCount == 0) {
-                            d.add(this.format.getTrimSpace() ? mainBuffer.toString().trim() : mainBuffer.toString());
-                            quotedFieldFinished = false;
-                            spaceBuffer.setLength(0);
-                            if (!headerSet) { //add header
-                                if (this.format.getHasHeader()) header = new CSVHeader(d);
-                                else {
-                                    header = new CSVHeader(columns); //dummy header
-                                }
-                                ret = new CSVArray(header);
-                                if (!this.format.getHasHeader()) {
-                                    CSVRecord rec = new CSVRecord(header, d);
-                                    ret.add(rec);
-                                }
-                                d.clear();
-                                headerSet = true;
-                            } else { //add new record
-                                CSVRecord rec = new CSVRecord(header, d);
-                                d.clear();
-                                ret.add(rec);
-                            }
-                            mainBuffer.setLength(0);
+                        else if (c == '"') this.state = QUOTED;
+                        else if (c == ' ' || c == '\t') this.spaces = true;
+                        else this.state = UNQUOTED;
+                        return true;
+                    case UNQUOTED:
+                        if (c == delim) {
+                            this.fields++;
+                            this.state = FIELD_START;
+                            this.spaces = false;
+                            return true;
                         }
-                        else if (qCount == 1 && !quotedFieldFinished) { //multi-line field
-                            mainBuffer.append('\n');
+                        return c != '"';
+                    case QUOTED:
+                        if (c == '"') this.state = QUOTE_IN_QUOTED;
+                        return true;
+                    default: //QUOTE_IN_QUOTED or AFTER_QUOTED
+                        if (this.state == QUOTE_IN_QUOTED && c == '"') { //a double quote
+                            this.state = QUOTED;
+                            return true;
                         }
-                        else {
-                            throw new CSVParseException(CSVParseException.MISSING_CLOSING_QUOTE, mainBuffer.toString(), lineNum);
+                        if (c == delim) {
+                            this.fields++;
+                            this.state = FIELD_START;
+                            this.spaces = false;
+                            return true;
                         }
-                    }
-                    if (c != ' ' && c != '\t') {
-                        lc = c;
+                        this.state = AFTER_QUOTED;
+                        return c == ' ' || c == '\t';
+                }
+            }
+
+            /**
+             * Counts a record for every candidate of this parse, and records those that are shown to start records.
+             */
+            void endRecord(boolean good, RecordStartScan scan) {
+                if (!good) {
+                    this.candidates.clear();
+                    return;
+                }
+                for (Iterator<long[]> it = this.candidates.iterator(); it.hasNext(); ) {
+                    long[] candidate = it.next();
+                    if (++candidate[1] == seekCheckRecords) {
+                        if (scan.found < 0 || candidate[0] < scan.found) scan.found = candidate[0];
+                        it.remove();
                     }
                 }
             }
-            return ret;
         }
-        catch (IOException e){
-            e.printStackTrace();
+    }
+
+    /**
+     *Returns a <code>CSVFollower</code> that reads the records appended to the <code>File</code> argument while it is
+     * being written, one batch per call to <code>poll</code>. Nothing is read until the first poll, which returns the
+     * records already in the file. The file need not exist yet.
+     * @param file A reference to a file
+     * @return A <code>CSVFollower</code> of the file.
+     */
+    public CSVFollower follow(File file) {
+        return new CSVFollower(file, this.format);
+    }
+
+    /**
+     *Returns a sequential <code>Stream</code> of the records in the <code>File</code> argument, parsed lazily as the stream is
+     * consumed. The stream should be closed after use, e.g. with a try-with-resources statement, to release the file.
+     * Parse errors encountered while the stream is consumed are thrown as <code>UncheckedCSVParseException</code>s.
+     * @param file A reference to a file
+     * @return A <code>Stream</code> of <code>CSVRecord</code>s.
+     * @throws CSVParseException if the header cannot be parsed
+     * @throws IOException if the file cannot be read
+     */
+    public Stream<CSVRecord> stream(File file) throws CSVParseException, IOException {
+        return toStream(this.iterator(file));
+    }
+
+    /**
+     *Returns a sequential <code>Stream</code> of the records read from the <code>BufferedReader</code>, parsed lazily as the
+     * stream is consumed. Closing the stream closes the reader.
+     * @param r the <code>BufferedReader</code>
+     * @return A <code>Stream</code> of <code>CSVRecord</code>s.
+     * @throws CSVParseException if the header cannot be parsed
+     * @throws IOException if the reader fails
+     */
+    public Stream<CSVRecord> stream(BufferedReader r) throws CSVParseException, IOException {
+        return toStream(this.iterator(r));
+    }
+
+    private static Stream<CSVRecord> toStream(CSVRecordIterator it) {
+        Spliterator<CSVRecord> split = Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(split, false).onClose(() -> {
+            try {
+                it.close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Opens a <code>BufferedReader</code> that decodes the file straight from a <code>FileChannel</code>, so that the file
+     * is never held in memory as a whole. The character set is that of the format, or is detected from a bounded prefix
+     * of the file.
+     * @param file the file to open
+     * @return a reader over the decoded contents of the file
+     * @throws IOException if the file cannot be opened
+     */
+    BufferedReader openReader(File file) throws IOException {
+        String charSetName = this.getBestCharsetName(file);
+        if (!Charset.isSupported(charSetName)) throw new UnsupportedEncodingException(charSetName);
+        return openReader(file, Charset.forName(charSetName), 0);
+    }
+
+    /**
+     * Opens a <code>BufferedReader</code> that decodes the file with the given character set from byte
+     * <code>position</code> on.
+     */
+    private static BufferedReader openReader(File file, Charset charSet, long position) throws IOException {
+        CharsetDecoder decoder = charSet.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            channel.position(position);
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new BufferedReader(Channels.newReader(channel, decoder, readBufferSize), readBufferSize);
+    }
+
+    /**
+     * Returns the best <code>Charset</code> to use for the file. If the <code>CSVFileFormat</code> object does not specify
+     * a <code>Charset</code>, only the first <code>charsetSampleSize</code> bytes of the file are used for detection.
+     * @param file the file
+     * @return canonical name of the Charset, as a String
+     * @throws IOException if the file cannot be read
+     */
+    String getBestCharsetName(File file) throws IOException {
+        if (this.format.getCharacterSetName() != null) {
+            return this.format.getCharacterSetName();
+        }
+        try (InputStream is = new BoundedInputStream(new FileInputStream(file), charsetSampleSize)) {
+            return this.getBestCharsetName(is);
         }
-        return null;
     }
 
     /**
@@ -15,21 +15,33 @@ import java.util.*;
  */
 public class CSVRecord {
 
-    private ArrayList<String> data;
+    private List<String> data;
     private CSVHeader sharedHeader;
 
     protected CSVRecord(CSVHeader h) {
         this.sharedHeader = h;
         this.data = new ArrayList<>();
-        for (int i = 0; i < h.totalColumns(); i++){
+        for (int i = 0; i < h.totalSlots(); i++){
             this.data.add("");
         }
     }
 
     protected CSVRecord(CSVHeader h, ArrayList<String> d) {
+        this(h, d, true);
+    }
+
+    /**
+     * Creates a record over the values in <code>d</code>. If <code>copyData</code> is false, the list is used as the
+     * backing store of the record instead of being copied, which lets readers hand over lazily decoded value lists.
+     * Such lists must support <code>get</code> and <code>set</code>; they are copied into an <code>ArrayList</code>
+     * the first time a value is inserted or removed. The values are given in column order; if columns of the header
+     * have been removed, added or swapped since it was last compacted, they are copied into the header's data slots.
+     */
+    CSVRecord(CSVHeader h, List<String> d, boolean copyData) {
         if (h.totalColumns() == d.size()) {
             this.sharedHeader = h;
-            this.data = new ArrayList(d);
+            if (!h.isCompact()) this.data = h.toSlots(d);
+            else this.data = copyData ? new ArrayList<>(d) : d;
         }
         else {
             List<Object> headerAndData = new ArrayList<>();
@@ -59,7 +71,10 @@ public class CSVRecord {
      * @return True if this object contains the value.
      */
     public boolean containsValue(String value){
-        return data.contains(value);
+        for (int i = 0; i < this.size(); i++) {
+            if (Objects.equals(this.get(i), value)) return true;
+        }
+        return false;
     }
 
     /**
@@ -68,10 +83,20 @@ public class CSVRecord {
      * @return The <code>String</code> value at the specified column.
      */
     public String get(String columnName) {
-        if (!this.sharedHeader.containsColumn(columnName)) {
+        int index = this.sharedHeader.indexOfColumn(columnName);
+        if (index < 0) {
             throw new ArrayIndexOutOfBoundsException("No column named \""+columnName+"\" exists in this CSVRecord.");
         }
-        return this.get(this.sharedHeader.indexOfColumn(columnName));
+        return this.get(index);
+    }
+
+    /**
+     * Returns the <code>String</code> value at the column referred to by <code>column</code>.
+     * @param column The handle of the column to get the value from.
+     * @return The <code>String</code> value at the specified column.
+     */
+    public String get(CSVColumnHandle column) {
+        return this.get(this.indexOf(column));
     }
 
     /**
@@ -80,7 +105,45 @@ public class CSVRecord {
      * @return The <code>String</code> value at the specified column.
      */
     public String get(int column) {
-        return data.get(column);
+        int slot = this.sharedHeader.slotOf(column);
+        return slot < this.data.size() ? this.data.get(slot) : ""; //columns added after this record was created are empty
+    }
+
+    /**
+     * Returns the value at the specified column as a <code>CharSequence</code>. For a record read with lazy values (see
+     * <code>CSVFileFormat.Builder.lazyValues</code>), the value is a view of the characters read, and no
+     * <code>String</code> is created for it; otherwise, it is the <code>String</code> value.
+     * @param column The index of the column to get the value from.
+     * @return The value at the specified column.
+     */
+    public CharSequence getCharSequence(int column) {
+        int slot = this.sharedHeader.slotOf(column);
+        if (slot >= this.data.size()) return "";
+        if (this.data instanceof FieldSliceList) return ((FieldSliceList) this.data).slice(slot);
+        return this.data.get(slot);
+    }
+
+    /**
+     * Returns the value at the specified column as a <code>CharSequence</code>; see {@link #getCharSequence(int)}.
+     * @param columnName The name of the column to get the value from.
+     * @return The value at the specified column.
+     */
+    public CharSequence getCharSequence(String columnName) {
+        int index = this.sharedHeader.indexOfColumn(columnName);
+        if (index < 0) {
+            throw new ArrayIndexOutOfBoundsException("No column named \""+columnName+"\" exists in this CSVRecord.");
+        }
+        return this.getCharSequence(index);
+    }
+
+    /**
+     * Returns whether the value at the specified column is empty, without creating a <code>String</code> for it.
+     */
+    boolean isMissing(int column) {
+        int slot = this.sharedHeader.slotOf(column);
+        if (slot >= this.data.size()) return true;
+        if (this.data instanceof FieldSliceList) return ((FieldSliceList) this.data).isEmpty(slot);
+        return this.data.get(slot).isEmpty();
     }
 
     /**
@@ -97,7 +160,7 @@ public class CSVRecord {
      * @return The number of values in this <code>CSVRecord.</code>
      */
     public int size(){
-        return this.data.size();
+        return this.sharedHeader.totalColumns();
     }
 
     /**
@@ -105,13 +168,11 @@ public class CSVRecord {
      * @return <code>true</code> if this CSVRecord is empty.
      */
     public boolean isEmpty() {
-        if (this.data.isEmpty()) return true;
-        else {
-            for (String s : this.data){
-                if (s != null && !s.equals("")) return false;
-            }
-            return true;
+        for (int i = 0; i < this.size(); i++){
+            String s = this.get(i);
+            if (s != null && !s.equals("")) return false;
         }
+        return true;
     }
 
     /**
@@ -120,10 +181,10 @@ public class CSVRecord {
      * @param index2 The second index.
      */
     public void swapValues(int index1, int index2){
-        if (index1 >= 0 && index1 < this.data.size() && index2 >= 0 && index1 < this.data.size()) {
-            String temp = this.data.get(index1);
-            this.data.set(index1, this.data.get(index2));
-            this.data.set(index2, temp);
+        if (index1 >= 0 && index1 < this.size() && index2 >= 0 && index2 < this.size()) {
+            String temp = this.get(index1);
+            this.setSlot(index1, this.get(index2));
+            this.setSlot(index2, temp);
         }
         else {
             ArrayList<Integer> indices = new ArrayList<>();
@@ -139,21 +200,31 @@ public class CSVRecord {
      * @param value The new value.
      */
     public void set (String column, Object value) {
-        if (this.sharedHeader.containsColumn(column)) {
-            this.data.set(this.sharedHeader.indexOfColumn(column), value.toString());
+        int index = this.sharedHeader.indexOfColumn(column);
+        if (index >= 0) {
+            this.setSlot(index, value.toString());
         }
         else {
             throw new CSVIntegrityException(CSVIntegrityException.INVALID_CSVRECORD_ADD, column);
         }
     }
 
+    /**
+     * Sets the value at the column referred to by <code>column</code> to the specified value.
+     * @param column The handle of the column who's value will be set.
+     * @param value The new value.
+     */
+    public void set (CSVColumnHandle column, Object value) {
+        this.set(this.indexOf(column), value);
+    }
+
     /**
      * Sets the value at the specified column to the specified value.
      * @param columnIndex The column index who's value will be set.
      * @param value The new value.
      */
     public void set (int columnIndex, Object value) {
-        if (columnIndex < this.data.size()) this.data.set(columnIndex, value.toString());
+        if (columnIndex >= 0 && columnIndex < this.size()) this.setSlot(columnIndex, value.toString());
         else throw new CSVIntegrityException(CSVIntegrityException.INVALID_CSVRECORD_ADD, columnIndex);
     }
 
@@ -161,8 +232,13 @@ public class CSVRecord {
      * Returns a list of all the values in this <code>CSVRecord</code>.
      * @return A <code>List</code> containing this record's values.
      */
-    public List getValues() {
-        return new ArrayList(this.data);
+    public List<String> getValues() {
+        if (this.sharedHeader.isCompact() && this.data.size() == this.size()) return new ArrayList<>(this.data);
+        ArrayList<String> ret = new ArrayList<>(this.size());
+        for (int i = 0; i < this.size(); i++) {
+            ret.add(this.get(i));
+        }
+        return ret;
     }
 
     /**
@@ -185,7 +261,7 @@ public class CSVRecord {
      * Sets all values of this <code>CSVRecord</code> to the empty string.
      */
     public void clearAll() {
-        for (int i = 0; i < this.data.size(); i++){
+        for (int i = 0; i < this.size(); i++){
             clear(i);
         }
     }
@@ -206,15 +282,28 @@ public class CSVRecord {
         this.set(column, "");
     }
 
+    /**
+     * Returns the value at the column referred to by <code>column</code> as a <code>double</code>.
+     * @param column The handle of the column who's value should be returned.
+     * @return <code>double</code> value at the column.
+     */
+    public double getDouble(CSVColumnHandle column) {
+        return this.getDouble(this.indexOf(column));
+    }
+
     /**
      * Returns the value at the specified column as a <code>double</code>.
      * @param column The column name who's value should be returned.
      * @return <code>double</code> value at the column.
      */
     public double getDouble(String column){
+        if (this.data instanceof ColumnarCSVArray.RowValues || this.data instanceof FieldSliceList) {
+            int index = this.sharedHeader.indexOfColumn(column);
+            if (index >= 0) return this.getDouble(index);
+        }
         String obj = this.get(column);
         if (obj != null){
-            return new Double(obj).doubleValue();
+            return Double.parseDouble(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.DOUBLE, column, this);
@@ -227,9 +316,16 @@ public class CSVRecord {
      * @return <code>double</code> value at the column.
      */
     public double getDouble(int column){
+        if (this.data instanceof ColumnarCSVArray.RowValues) {
+            return ((ColumnarCSVArray.RowValues) this.data).getDouble(column);
+        }
+        if (this.data instanceof FieldSliceList) {
+            int slot = this.sharedHeader.slotOf(column);
+            if (slot < this.data.size()) return ((FieldSliceList) this.data).getDouble(slot);
+        }
         String obj = this.get(column);
         if (obj != null){
-            return new Double(obj).doubleValue();
+            return Double.parseDouble(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.DOUBLE, column, this);
@@ -244,7 +340,7 @@ public class CSVRecord {
     public float getFloat(String column) {
         String obj = this.get(column);
         if (obj != null) {
-            return new Float(obj).floatValue();
+            return Float.parseFloat(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.FLOAT, column, this);
@@ -259,22 +355,35 @@ public class CSVRecord {
     public float getFloat(int column) {
         String obj = this.get(column);
         if (obj != null) {
-            return new Float(obj).floatValue();
+            return Float.parseFloat(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.FLOAT, column, this);
         }
     }
 
+    /**
+     * Returns the value at the column referred to by <code>column</code> as a <code>long</code>.
+     * @param column The handle of the column who's value should be returned.
+     * @return <code>long</code> value at the column.
+     */
+    public long getLong(CSVColumnHandle column) {
+        return this.getLong(this.indexOf(column));
+    }
+
     /**
      * Returns the value at the specified column as a <code>long</code>.
      * @param column The column name who's value should be returned.
      * @return <code>long</code> value at the column.
      */
     public long getLong(String column) {
+        if (this.data instanceof ColumnarCSVArray.RowValues || this.data instanceof FieldSliceList) {
+            int index = this.sharedHeader.indexOfColumn(column);
+            if (index >= 0) return this.getLong(index);
+        }
         String obj = this.get(column);
         if (obj != null) {
-            return new Long(obj).longValue();
+            return Long.parseLong(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.LONG, column, this);
@@ -287,24 +396,44 @@ public class CSVRecord {
      * @return <code>long</code> value at the column.
      */
     public long getLong(int column) {
+        if (this.data instanceof ColumnarCSVArray.RowValues) {
+            return ((ColumnarCSVArray.RowValues) this.data).getLong(column);
+        }
+        if (this.data instanceof FieldSliceList) {
+            int slot = this.sharedHeader.slotOf(column);
+            if (slot < this.data.size()) return ((FieldSliceList) this.data).getLong(slot);
+        }
         String obj = this.get(column);
         if (obj != null) {
-            return new Long(obj).longValue();
+            return Long.parseLong(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.LONG, column, this);
         }
     }
 
+    /**
+     * Returns the value at the column referred to by <code>column</code> as an <code>int</code>.
+     * @param column The handle of the column who's value should be returned.
+     * @return <code>int</code> value at the column.
+     */
+    public int getInt(CSVColumnHandle column) {
+        return this.getInt(this.indexOf(column));
+    }
+
     /**
      * Returns the value at the specified column as a <code>int</code>.
      * @param column The column name who's value should be returned.
      * @return <code>int</code> value at the column.
      */
     public int getInt(String column) {
+        if (this.data instanceof ColumnarCSVArray.RowValues || this.data instanceof FieldSliceList) {
+            int index = this.sharedHeader.indexOfColumn(column);
+            if (index >= 0) return this.getInt(index);
+        }
         String obj = this.get(column);
         if (obj != null) {
-            return new Integer(obj).intValue();
+            return Integer.parseInt(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.INT, column, this);
@@ -317,9 +446,16 @@ public class CSVRecord {
      * @return <code>int</code> value at the column.
      */
     public int getInt(int column) {
+        if (this.data instanceof ColumnarCSVArray.RowValues) {
+            return ((ColumnarCSVArray.RowValues) this.data).getInt(column);
+        }
+        if (this.data instanceof FieldSliceList) {
+            int slot = this.sharedHeader.slotOf(column);
+            if (slot < this.data.size()) return ((FieldSliceList) this.data).getInt(slot);
+        }
         String obj = this.get(column);
         if (obj != null) {
-            return new Integer(obj).intValue();
+            return Integer.parseInt(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.INT, column, this);
@@ -364,7 +500,7 @@ public class CSVRecord {
     public short getShort(String column) {
         String obj = this.get(column);
         if (obj != null && obj.length() == 1) {
-            return new Short(obj).shortValue();
+            return Short.parseShort(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.SHORT, column, this);
@@ -379,7 +515,7 @@ public class CSVRecord {
     public short getShort(int column) {
         String obj = this.get(column);
         if (obj != null && obj.length() == 1) {
-            return new Short(obj).shortValue();
+            return Short.parseShort(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.SHORT, column, this);
@@ -394,7 +530,7 @@ public class CSVRecord {
     public byte getByte(String column) {
         String obj = this.get(column);
         if (obj != null && obj.length() == 1) {
-            return new Byte(obj).byteValue();
+            return Byte.parseByte(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.BYTE, column, this);
@@ -409,7 +545,7 @@ public class CSVRecord {
     public byte getByte(int column) {
         String obj = this.get(column);
         if (obj != null && obj.length() == 1) {
-            return new Byte(obj).byteValue();
+            return Byte.parseByte(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.BYTE, column, this);
@@ -424,7 +560,7 @@ public class CSVRecord {
     public boolean getBoolean(String column) {
         String obj = this.get(column);
         if (obj != null && obj.length() == 1) {
-            return new Boolean(obj).booleanValue();
+            return Boolean.parseBoolean(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.BOOLEAN, column, this);
@@ -439,7 +575,7 @@ public class CSVRecord {
     public boolean getBoolean(int column) {
         String obj = this.get(column);
         if (obj != null && obj.length() == 1) {
-            return new Boolean(obj).booleanValue();
+            return Boolean.parseBoolean(obj);
         }
         else {
             throw new ValueConversionException(ValueConversionException.BOOLEAN, column, this);
@@ -448,25 +584,32 @@ public class CSVRecord {
 
     /**
      * Returns a <code>String</code> representation of this <code>CSVRecord</code>, delimited by the <code>char</code>.
-     * value passed as argument.
+     * value passed as argument. Values containing the delimiter, quotes or line breaks are quoted.
      * @param delimiter The delimiter to use in the representation.
      * @return A <code>String</code> representation of this <code>CSVRecord</code>
      */
     public String getRecordString(char delimiter) {
         StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < this.data.size(); i++){
-            sb.append(this.data.get(i));
-            if (i < this.data.size()-1) sb.append(delimiter);
-        }
+        this.appendRecordString(sb, delimiter);
         return sb.toString();
     }
 
+    /**
+     * Appends the representation returned by {@link #getRecordString(char)} to <code>sb</code>.
+     */
+    void appendRecordString(StringBuilder sb, char delimiter) {
+        for (int i = 0; i < this.size(); i++){
+            CSVWriter.appendValue(sb, this.getCharSequence(i), delimiter);
+            if (i < this.size()-1) sb.append(delimiter);
+        }
+    }
+
     @Override
     public String toString(){
         StringBuilder sb = new StringBuilder();
-        for (String s : this.data) {
+        for (int i = 0; i < this.size(); i++) {
             sb.append('[');
-            sb.append(s);
+            sb.append(this.get(i));
             sb.append(']');
         }
         return sb.toString();
@@ -477,28 +620,61 @@ public class CSVRecord {
         CSVRecord o = (CSVRecord) other;
         if (!o.sharedHeader.equals(this.sharedHeader)) return false;
         else {
-            for (int i = 0; i < this.data.size(); i++) {
+            for (int i = 0; i < this.size(); i++) {
                 if (!this.get(i).equals(o.get(i))) return false;
             }
             return true;
         }
     }
 
-    protected String remove(int columnNum) {
-        if (columnNum < this.sharedHeader.totalColumns()) return this.data.remove(columnNum);
-        else return null;
+    /**
+     * Returns the index of the column referred to by <code>column</code> in this record's header.
+     */
+    private int indexOf(CSVColumnHandle column) {
+        int index = column.indexIn(this.sharedHeader);
+        if (index < 0) {
+            throw new ArrayIndexOutOfBoundsException("No column named \""+column.getColumnName()+"\" exists in this CSVRecord.");
+        }
+        return index;
     }
 
-    protected String remove(String column){
-        if (this.sharedHeader.containsColumn(column)) return this.data.remove(this.sharedHeader.indexOfColumn(column));
-        else return null;
+    CSVHeader getSharedHeader() {
+        return this.sharedHeader;
     }
 
     protected void setSharedHeader(CSVHeader header) {
         this.sharedHeader = header;
     }
 
-    protected void insert(int index, String value) {
-        this.data.add(index, value);
+    /**
+     * Sets the value of the column at <code>column</code>, in the data slot the header maps it to.
+     */
+    private void setSlot(int column, String value) {
+        int slot = this.sharedHeader.slotOf(column);
+        if (slot >= this.data.size()) {
+            List<String> d = this.mutableData();
+            while (d.size() <= slot) d.add("");
+        }
+        this.data.set(slot, value);
+        this.sharedHeader.valuesChanged();
+    }
+
+    /**
+     * Rewrites the data of this record in column order, given the slot each column was held in before the header was
+     * compacted.
+     */
+    void compactData(int[] slots) {
+        ArrayList<String> d = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            d.add(slot < this.data.size() ? this.data.get(slot) : "");
+        }
+        this.data = d;
+    }
+
+    private List<String> mutableData() {
+        if (!(this.data instanceof ArrayList)) {
+            this.data = new ArrayList<>(this.data);
+        }
+        return this.data;
     }
 }
@@ -0,0 +1,194 @@
+package wah.giovann.csvhandler;
+
+import wah.giovann.csvhandler.error.CSVParseException;
+import wah.giovann.csvhandler.error.UncheckedCSVParseException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A <code>CSVRecordIterator</code> pulls <code>CSVRecord</code>s out of a .csv source one at a time, so that only
+ * the current record needs to be held in memory.
+ * <br><br>
+ * Instances are obtained from the <code>iterator</code> methods of <code>CSVReader</code>. The header (or the
+ * dummy header, if the input format specifies that the file has none) is read when the iterator is created, and is
+ * shared by every record the iterator returns. Because <code>Iterator.next()</code> cannot throw checked exceptions,
+ * parse errors are reported as <code>UncheckedCSVParseException</code>s and I/O errors as
+ * <code>UncheckedIOException</code>s. The iterator should be closed once it is no longer needed.
+ * <br><br>
+ * If the input format has lazy values, the records hold their values as slices of shared character buffers, and a
+ * <code>String</code> is only created for the values that are read. If the input format has filters, only the
+ * records that pass them are returned.
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public class CSVRecordIterator implements Iterator<CSVRecord>, Closeable {
+    private final CSVParser parser;
+    private final ArrayList<String> row;
+    private final FieldSliceList.Slab slab; //the buffer of lazy values, or null
+    private final boolean lazy;
+    private RowFilter filter; //the filter of the records read, or null
+    private CSVHeader header;
+    private CSVRecord next;
+    private boolean finished;
+
+    CSVRecordIterator(CSVParser parser, CSVFileFormat format) throws CSVParseException, IOException {
+        this.parser = parser;
+        this.row = new ArrayList<>();
+        this.lazy = format.getLazyValues();
+        this.slab = this.lazy && !format.hasFilters() ? new FieldSliceList.Slab() : null;
+        this.header = null;
+        this.next = null;
+        this.finished = false;
+        if (parser.readFirstRow(this.row)) {
+            this.header = format.getHasHeader() ? new CSVHeader(this.row) : new CSVHeader(this.row.size()); //dummy header
+            if (format.hasFilters()) this.filter = new RowFilter(parser, this.header, format);
+            if (!format.getHasHeader() && (this.filter == null || this.filter.accepts(this.row))) {
+                this.next = new CSVRecord(this.header, this.row);
+            }
+        }
+        else {
+            this.finished = true;
+        }
+    }
+
+    /**
+     * Creates an iterator over input that starts past the header, such as a file read from a byte offset, whose records
+     * have the columns of <code>h</code>. The parser must already be restricted to the selected columns, if any.
+     */
+    CSVRecordIterator(CSVParser parser, CSVHeader h, CSVFileFormat format) {
+        this.parser = parser;
+        this.row = new ArrayList<>();
+        this.lazy = format.getLazyValues();
+        this.slab = this.lazy && !format.hasFilters() ? new FieldSliceList.Slab() : null;
+        this.header = h;
+        this.next = null;
+        this.finished = false;
+        if (format.hasFilters()) this.filter = new RowFilter(parser, h, format);
+    }
+
+    /**
+     * Returns <code>true</code> if there are more records to read.
+     * @return <code>true</code> if the iteration has more records.
+     */
+    @Override
+    public boolean hasNext() {
+        if (this.next == null && !this.finished) {
+            try {
+                this.next = this.nextRecord();
+            }
+            catch (CSVParseException e) {
+                throw new UncheckedCSVParseException(e);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return this.next != null;
+    }
+
+    /**
+     * Returns the next <code>CSVRecord</code> in the source.
+     * @return the next <code>CSVRecord</code>.
+     */
+    @Override
+    public CSVRecord next() {
+        if (!this.hasNext()) throw new NoSuchElementException();
+        CSVRecord ret = this.next;
+        this.next = null;
+        return ret;
+    }
+
+    /**
+     * Skips the next <code>n</code> records, or every remaining record if there are fewer. Skipped records are parsed
+     * past without creating any of their values. If the input format has filters, only records that pass them are
+     * counted.
+     * @param n the number of records to skip.
+     * @return the number of records skipped.
+     */
+    public long skip(long n) {
+        try {
+            return this.skipRecords(n);
+        }
+        catch (CSVParseException e) {
+            throw new UncheckedCSVParseException(e);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns an <code>ArrayList</code> of the header columns shared by all records returned by this iterator. If the
+     * source was empty, the list is empty.
+     * @return An <code>ArrayList</code> of all the header values.
+     */
+    public ArrayList<String> getHeaderList() {
+        if (this.header == null) return new ArrayList<>();
+        return this.header.getColumnsList();
+    }
+
+    /**
+     * Closes the underlying source.
+     * @throws IOException if the source could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.finished = true;
+        this.next = null;
+        this.parser.close();
+    }
+
+    /**
+     * Returns the next record, or <code>null</code> at the end of the source, reporting errors as checked exceptions.
+     */
+    CSVRecord nextRecord() throws CSVParseException, IOException {
+        if (this.next != null) {
+            CSVRecord ret = this.next;
+            this.next = null;
+            return ret;
+        }
+        if (this.finished) return null;
+        if (this.filter != null) {
+            FieldSliceList values = this.filter.next();
+            if (values != null) {
+                return new CSVRecord(this.header, this.lazy ? values : new ArrayList<>(values), false);
+            }
+        }
+        else if (this.slab != null) {
+            if (this.parser.readRow(this.slab)) {
+                return new CSVRecord(this.header, this.slab.takeRow(), false);
+            }
+        }
+        else if (this.parser.readRow(this.row)) {
+            return new CSVRecord(this.header, this.row);
+        }
+        this.finished = true;
+        return null;
+    }
+
+    /**
+     * Skips the next <code>n</code> records, reporting errors as checked exceptions. See {@link #skip(long)}.
+     */
+    long skipRecords(long n) throws CSVParseException, IOException {
+        long skipped = 0;
+        if (n > 0 && this.next != null) {
+            this.next = null;
+            skipped++;
+        }
+        while (skipped < n && !this.finished) {
+            boolean read = this.filter != null ? this.filter.next() != null : this.parser.skipRow();
+            if (read) skipped++;
+            else this.finished = true;
+        }
+        return skipped;
+    }
+
+    CSVHeader getHeader() {
+        return this.header;
+    }
+}
@@ -0,0 +1,276 @@
+package wah.giovann.csvhandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A <code>CSVRowIndex</code> holds the byte offset of every <code>N</code>th record of a .csv file, so that
+ * <code>CSVReader</code> can read a record or a range of records by number with a seek and a short scan, instead of
+ * parsing the file from its start.
+ * <br><br>
+ * Records are numbered from 0, after the header if the file has one, exactly as <code>CSVReader.readCSV</code> reads
+ * them. The index is built in a single pass over the bytes of the file that keeps track of whether each line end is
+ * inside a quoted value, so records holding line ends are counted correctly. It can be saved next to the file it
+ * indexes and loaded again as long as the file is unchanged; see {@link #loadOrBuild(File, CSVFileFormat)}. The file must
+ * be encoded in UTF-8 or in a single-byte character set compatible with ASCII.
+ * <br><br>
+ * For example, to read records 1,000,000 to 1,000,099 of a large file:<br><br>
+ * <code>&nbsp;&nbsp;CSVRowIndex index = CSVRowIndex.loadOrBuild(file, format);</code><br>
+ * <code>&nbsp;&nbsp;CSVArray page = new CSVReader(format).readCSV(file, index, 1000000, 100);</code>
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public class CSVRowIndex {
+    /**
+     * Constant for the default number of records between indexed offsets.
+     */
+    public static final int DEFAULT_INTERVAL = 1024;
+    private static final int magic = 0x43535649; //"CSVI"
+    private static final int version = 1;
+    private static final int scanBufferSize = 64 * 1024;
+    private final int interval;
+    private final boolean hasHeader;
+    private final long fileLength;
+    private final long fileLastModified;
+    private final long recordCount;
+    private final long[] offsets; //the byte offset of records 0, interval, 2 * interval, ...
+    private final int[] lines; //the line number each of those records starts on
+
+    private CSVRowIndex(int interval, boolean hasHeader, long fileLength, long fileLastModified, long recordCount, long[] offsets, int[] lines) {
+        this.interval = interval;
+        this.hasHeader = hasHeader;
+        this.fileLength = fileLength;
+        this.fileLastModified = fileLastModified;
+        this.recordCount = recordCount;
+        this.offsets = offsets;
+        this.lines = lines;
+    }
+
+    /**
+     *Builds the index of the <code>File</code> argument with an offset every <code>DEFAULT_INTERVAL</code> records.
+     * @param file A reference to the file to index
+     * @param format the format of the file
+     * @return the index of the file.
+     * @throws IOException if the file cannot be read, or its character set is not supported
+     */
+    public static CSVRowIndex build(File file, CSVFileFormat format) throws IOException {
+        return build(file, format, DEFAULT_INTERVAL);
+    }
+
+    /**
+     *Builds the index of the <code>File</code> argument with an offset every <code>interval</code> records. A smaller
+     * interval makes reads shorter and the index larger, at 12 bytes per offset.
+     * @param file A reference to the file to index
+     * @param format the format of the file
+     * @param interval the number of records between indexed offsets
+     * @return the index of the file.
+     * @throws IOException if the file cannot be read, or its character set is not supported
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public static CSVRowIndex build(File file, CSVFileFormat format, int interval) throws IOException {
+        if (interval <= 0) throw new IllegalArgumentException("The interval must be positive.");
+        new CSVReader(format).seekableCharset(file);
+        long lastModified = file.lastModified();
+        long[] offsets = new long[16];
+        int[] lines = new int[16];
+        int entries = 0;
+        long records = format.getHasHeader() ? -1 : 0; //the number of the next record; the header is record -1
+        int line = 1;
+        boolean inRecord = false; //whether a record has started since the last line end outside of quotes
+        boolean quoted = false;
+        boolean lastCR = false;
+        long length;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            length = channel.size();
+            ByteBuffer bb = ByteBuffer.allocate(scanBufferSize);
+            byte[] bytes = bb.array();
+            long position = 0;
+            int n;
+            while ((n = channel.read(bb, position)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    byte b = bytes[i];
+                    if (b == '\n' && lastCR) { //the line feed of a CRLF
+                        lastCR = false;
+                        continue;
+                    }
+                    lastCR = b == '\r';
+                    if (b == '\n' || b == '\r') {
+                        line++;
+                        if (!quoted && inRecord) {
+                            inRecord = false;
+                            records++;
+                        }
+                        continue;
+                    }
+                    if (!inRecord) { //the first character of a record; line ends before it are blank lines
+                        inRecord = true;
+                        if (records >= 0 && records % interval == 0) {
+                            if (entries == offsets.length) {
+                                offsets = Arrays.copyOf(offsets, entries * 2);
+                                lines = Arrays.copyOf(lines, entries * 2);
+                            }
+                            offsets[entries] = position + i;
+                            lines[entries] = line;
+                            entries++;
+                        }
+                    }
+                    if (b == '"') quoted = !quoted;
+                }
+                position += n;
+                bb.clear();
+            }
+        }
+        if (inRecord) records++; //the last record has no line end
+        return new CSVRowIndex(interval, format.getHasHeader(), length, lastModified, Math.max(records, 0),
+                Arrays.copyOf(offsets, entries), Arrays.copyOf(lines, entries));
+    }
+
+    /**
+     *Returns the index saved next to the <code>File</code> argument (see {@link #indexFileOf(File)}) if it is up to date
+     * for the file and format, or else builds the index with an offset every <code>DEFAULT_INTERVAL</code> records and
+     * saves it there.
+     * @param file A reference to the indexed file
+     * @param format the format of the file
+     * @return the index of the file.
+     * @throws IOException if a file cannot be read or written, or the character set of the file is not supported
+     */
+    public static CSVRowIndex loadOrBuild(File file, CSVFileFormat format) throws IOException {
+        File indexFile = indexFileOf(file);
+        if (indexFile.isFile()) {
+            try {
+                CSVRowIndex ret = load(indexFile);
+                if (ret.isCurrent(file) && ret.hasHeader == format.getHasHeader()) return ret;
+            }
+            catch (IOException e) {
+                //a damaged index is rebuilt
+            }
+        }
+        CSVRowIndex ret = build(file, format);
+        ret.save(indexFile);
+        return ret;
+    }
+
+    /**
+     *Returns the file the index of the <code>File</code> argument is saved to by
+     * {@link #loadOrBuild(File, CSVFileFormat)}: a file in the same directory with <code>.idx</code> appended to its
+     * name.
+     * @param file A reference to the indexed file
+     * @return the index file.
+     */
+    public static File indexFileOf(File file) {
+        return new File(file.getPath() + ".idx");
+    }
+
+    /**
+     *Saves this index to the <code>File</code> argument, which is overwritten.
+     * @param indexFile the file to save the index to
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File indexFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeInt(this.interval);
+            out.writeBoolean(this.hasHeader);
+            out.writeLong(this.fileLength);
+            out.writeLong(this.fileLastModified);
+            out.writeLong(this.recordCount);
+            out.writeInt(this.offsets.length);
+            for (int i = 0; i < this.offsets.length; i++) {
+                out.writeLong(this.offsets[i]);
+                out.writeInt(this.lines[i]);
+            }
+        }
+    }
+
+    /**
+     *Loads an index saved by {@link #save(File)}.
+     * @param indexFile the file the index was saved to
+     * @return the index.
+     * @throws IOException if the file cannot be read, or is not an index
+     */
+    public static CSVRowIndex load(File indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != magic || in.readInt() != version) throw new IOException(indexFile + " is not a row index.");
+            int interval = in.readInt();
+            boolean hasHeader = in.readBoolean();
+            long fileLength = in.readLong();
+            long fileLastModified = in.readLong();
+            long recordCount = in.readLong();
+            int entries = in.readInt();
+            if (interval <= 0 || entries < 0 || entries != (recordCount + interval - 1) / interval) {
+                throw new IOException(indexFile + " is not a row index.");
+            }
+            long[] offsets = new long[entries];
+            int[] lines = new int[entries];
+            for (int i = 0; i < entries; i++) {
+                offsets[i] = in.readLong();
+                lines[i] = in.readInt();
+            }
+            return new CSVRowIndex(interval, hasHeader, fileLength, fileLastModified, recordCount, offsets, lines);
+        }
+    }
+
+    /**
+     *Returns whether the <code>File</code> argument has the same length and modification time as the file this index
+     * was built from, so that the index can be used to read it.
+     * @param file A reference to the indexed file
+     * @return <code>true</code> if the index is up to date, <code>false</code> otherwise.
+     */
+    public boolean isCurrent(File file) {
+        return file.length() == this.fileLength && file.lastModified() == this.fileLastModified;
+    }
+
+    /**
+     *Returns the number of records of the indexed file, not counting the header.
+     * @return the number of records.
+     */
+    public long getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     *Returns the number of records between indexed offsets.
+     * @return the interval of the index.
+     */
+    public int getInterval() {
+        return this.interval;
+    }
+
+    /**
+     * Checks that this index can be used to read <code>file</code> with <code>format</code>.
+     * @throws IllegalArgumentException if the file changed since the index was built, or the format disagrees with
+     * the index on whether the file has a header
+     */
+    void check(File file, CSVFileFormat format) {
+        if (!this.isCurrent(file)) throw new IllegalArgumentException("The index is out of date for " + file + ".");
+        if (this.hasHeader != format.getHasHeader()) {
+            throw new IllegalArgumentException("The index was built for a file " + (this.hasHeader ? "with" : "without") + " a header.");
+        }
+    }
+
+    /**
+     * Returns the indexed entry at or before <code>record</code>, which must be less than the record count.
+     */
+    int entryOf(long record) {
+        return (int) (record / this.interval);
+    }
+
+    long offsetOf(int entry) {
+        return this.offsets[entry];
+    }
+
+    int lineOf(int entry) {
+        return this.lines[entry];
+    }
+}
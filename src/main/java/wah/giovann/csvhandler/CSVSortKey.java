@@ -0,0 +1,255 @@
+package wah.giovann.csvhandler;
+
+import wah.giovann.csvhandler.error.ValueConversionException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The columns a <code>CSVArray</code> is sorted by with <code>CSVArray.sortBy(CSVSortKey)</code>, in order of
+ * precedence: records are ordered by the first column, records with equal values in it by the second column, and so on.
+ * Records that are equal in every column keep their relative order.
+ * <br><br>
+ * Each column is compared either alphanumerically or numerically, in ascending or descending order. Empty values are
+ * placed after all other values of the column unless the column is declared with empty values first, whatever its
+ * order. A <code>CSVSortKey</code> is built with a <code>CSVSortKey.Builder</code>, for example:
+ * <br><br>
+ *
+ *     <code>&nbsp;&nbsp;CSVSortKey key = new CSVSortKey.Builder()</code><br>
+ *     <code>&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;.column("region", false, true)</code><br>
+ *     <code>&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;.column("amount", true, false)</code><br>
+ *     <code>&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;.build();</code><br>
+ * <br>
+ * sorts by region in ascending alphanumeric order, then by amount in descending numeric order.
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public final class CSVSortKey {
+    private final List<Column> columns;
+
+    private CSVSortKey(List<Column> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Returns the number of columns in this key.
+     * @return the number of columns.
+     */
+    public int totalColumns() {
+        return this.columns.size();
+    }
+
+    /**
+     * Returns the name of the column of this key at <code>index</code>.
+     * @param index the position of the column in the key, starting at 0.
+     * @return the column name.
+     */
+    public String getColumnName(int index) {
+        return this.columns.get(index).name;
+    }
+
+    /**
+     * Returns the columns of this key as columns of <code>h</code>.
+     * @throws ArrayIndexOutOfBoundsException if a column does not exist
+     */
+    SortColumn[] resolve(CSVHeader h) {
+        SortColumn[] ret = new SortColumn[this.columns.size()];
+        for (int i = 0; i < ret.length; i++) {
+            Column c = this.columns.get(i);
+            int index = h.indexOfColumn(c.name);
+            if (index < 0) {
+                throw new ArrayIndexOutOfBoundsException("No column named \""+c.name+"\" exists in this CSVArray.");
+            }
+            ret[i] = new SortColumn(index, c.numeric, c.ascendingOrder, c.emptyFirst);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a <code>String</code> representation of this key.
+     * @return the columns of the key with their order.
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Column c : this.columns) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(c.name);
+            sb.append(c.numeric ? " NUMERIC" : " ALPHANUMERIC");
+            sb.append(c.ascendingOrder ? " ASC" : " DESC");
+            if (c.emptyFirst) sb.append(" EMPTY FIRST");
+        }
+        return sb.toString();
+    }
+
+    private static final class Column {
+        final String name;
+        final boolean numeric;
+        final boolean ascendingOrder;
+        final boolean emptyFirst;
+
+        Column(String name, boolean numeric, boolean ascendingOrder, boolean emptyFirst) {
+            this.name = name;
+            this.numeric = numeric;
+            this.ascendingOrder = ascendingOrder;
+            this.emptyFirst = emptyFirst;
+        }
+    }
+
+    /**
+     * A column of a sort key resolved to its index, with the keys of the rows being sorted once they are extracted.
+     */
+    static final class SortColumn {
+        final int index;
+        final boolean numeric;
+        final boolean ascendingOrder;
+        final boolean emptyFirst;
+        final boolean legacy; //whether it sorts like the legacy sortBy overloads, which throw NumberFormatException for any value that is not a number
+        private int[] ranks; //the rank of each row's value among the distinct values of an alphanumeric column
+        private double[] numbers;
+        private boolean[] empty;
+
+        SortColumn(int index, boolean numeric, boolean ascendingOrder, boolean emptyFirst) {
+            this(index, numeric, ascendingOrder, emptyFirst, false);
+        }
+
+        SortColumn(int index, boolean numeric, boolean ascendingOrder, boolean emptyFirst, boolean legacy) {
+            this.index = index;
+            this.numeric = numeric;
+            this.ascendingOrder = ascendingOrder;
+            this.emptyFirst = emptyFirst;
+            this.legacy = legacy;
+        }
+
+        /**
+         * Reads the key of every row of <code>array</code>, parsing numeric keys once.
+         * @throws ValueConversionException if a value of a numeric column is not a number
+         * @throws NumberFormatException instead, for a legacy column
+         */
+        void extract(CSVArray array) {
+            int size = array.size();
+            this.empty = new boolean[size];
+            if (this.numeric) {
+                this.numbers = new double[size];
+                for (int row = 0; row < size; row++) {
+                    if (array.isMissingAt(row, this.index)) {
+                        if (this.legacy) throw new NumberFormatException("empty String");
+                        this.empty[row] = true;
+                        continue;
+                    }
+                    try {
+                        this.numbers[row] = array.doubleAt(row, this.index);
+                    }
+                    catch (NumberFormatException e) {
+                        if (this.legacy) throw e;
+                        throw new ValueConversionException(ValueConversionException.DOUBLE, array.valueAt(row, this.index), -1, this.index);
+                    }
+                }
+            }
+            else {
+                //number the distinct values and sort only those, so that rows are compared by int rank
+                HashMap<String, Integer> ids = new HashMap<>();
+                ArrayList<String> distinct = new ArrayList<>();
+                this.ranks = new int[size];
+                for (int row = 0; row < size; row++) {
+                    String v = array.valueAt(row, this.index);
+                    Integer id = ids.get(v);
+                    if (id == null) {
+                        id = distinct.size();
+                        ids.put(v, id);
+                        distinct.add(v);
+                    }
+                    this.ranks[row] = id;
+                    this.empty[row] = v.isEmpty();
+                }
+                int[] byRank = IndexSorter.sortedRows(distinct.size(), (i, j) -> distinct.get(i).compareTo(distinct.get(j)));
+                int[] rankOf = new int[byRank.length];
+                for (int r = 0; r < byRank.length; r++) {
+                    rankOf[byRank[r]] = r;
+                }
+                for (int row = 0; row < size; row++) {
+                    this.ranks[row] = rankOf[this.ranks[row]];
+                }
+            }
+        }
+
+        int compare(int row1, int row2) {
+            boolean e1 = this.empty[row1];
+            boolean e2 = this.empty[row2];
+            if (e1 || e2) return this.compareEmpty(e1, e2);
+            int cmp = this.numeric ? Double.compare(this.numbers[row1], this.numbers[row2])
+                    : Integer.compare(this.ranks[row1], this.ranks[row2]);
+            return this.ascendingOrder ? cmp : -cmp;
+        }
+
+        /**
+         * Compares two values of the column that were not extracted, in the same order as {@link #compare(int, int)}.
+         * <code>number1</code> and <code>number2</code> are the parsed values of a numeric column, and are ignored
+         * otherwise or when the value is empty.
+         */
+        int compareValues(String value1, double number1, String value2, double number2) {
+            boolean e1 = value1.isEmpty();
+            boolean e2 = value2.isEmpty();
+            if (e1 || e2) return this.compareEmpty(e1, e2);
+            int cmp = this.numeric ? Double.compare(number1, number2) : value1.compareTo(value2);
+            return this.ascendingOrder ? cmp : -cmp;
+        }
+
+        private int compareEmpty(boolean e1, boolean e2) {
+            if (e1 && e2) return 0;
+            return e1 == this.emptyFirst ? -1 : 1;
+        }
+    }
+
+    /**
+     * Builds a <code>CSVSortKey</code> from columns added in order of precedence.
+     * @author Giovann Wah
+     * @version 1.0
+     */
+    public static class Builder {
+        private ArrayList<Column> columns;
+
+        /**
+         * Constructs a <code>CSVSortKey.Builder</code> instance with no columns.
+         */
+        public Builder() {
+            this.columns = new ArrayList<>();
+        }
+
+        /**
+         * Adds a column to the key, with its empty values placed last.
+         * @param column the name of the column.
+         * @param numeric if true, compare the values of the column as numbers. Otherwise, compare them alphanumerically.
+         * @param ascendingOrder if true, sort the column in ascending order. Otherwise, sort it in descending order.
+         * @return <code>CSVSortKey.Builder</code> instance.
+         */
+        public Builder column(String column, boolean numeric, boolean ascendingOrder) {
+            return this.column(column, numeric, ascendingOrder, false);
+        }
+
+        /**
+         * Adds a column to the key.
+         * @param column the name of the column.
+         * @param numeric if true, compare the values of the column as numbers. Otherwise, compare them alphanumerically.
+         * @param ascendingOrder if true, sort the column in ascending order. Otherwise, sort it in descending order.
+         * @param emptyFirst if true, place empty values before all other values of the column. Otherwise, place them
+         *                   after all other values.
+         * @return <code>CSVSortKey.Builder</code> instance.
+         */
+        public Builder column(String column, boolean numeric, boolean ascendingOrder, boolean emptyFirst) {
+            if (column == null) throw new IllegalArgumentException("The column of a sort key cannot be null.");
+            this.columns.add(new Column(column, numeric, ascendingOrder, emptyFirst));
+            return this;
+        }
+
+        /**
+         * Returns a <code>CSVSortKey</code> instance with the columns added to this builder.
+         * @return <code>CSVSortKey</code> instance.
+         * @throws IllegalArgumentException if no column was added
+         */
+        public CSVSortKey build() {
+            if (this.columns.isEmpty()) throw new IllegalArgumentException("A sort key needs at least one column.");
+            return new CSVSortKey(new ArrayList<>(this.columns));
+        }
+    }
+}
@@ -1,23 +1,40 @@
 package wah.giovann.csvhandler;
 
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  *<code>CSVWriter</code> is a very simple class used to quickly write a <code>CSVArray</code> instance to file.
  * <br><br>
  * It takes a <code>CSVFileFormat</code> instance as an argument to the constructor, which in term determines the
- * format that the .csv file will be written in. Here, only format's <code>outputFileLineEnd</code> and <code>delimiter</code>
- * fields will be used to write the <code>CSVArray</code> to file. The data written to the file is
- * compliant with RFC 4180 (see <a href="https://en.wikipedia.org/wiki/Comma-separated_values" target="_blank">the CSV wikipedia page</a>).
+ * format that the .csv file will be written in. Here, only format's <code>outputFileLineEnd</code>, <code>delimiter</code>
+ * and <code>characterSetName</code> fields will be used to write the <code>CSVArray</code> to file; if no character set
+ * is specified, the platform default is used. The data written to the file is compliant with RFC 4180
+ * (see <a href="https://en.wikipedia.org/wiki/Comma-separated_values" target="_blank">the CSV wikipedia page</a>):
+ * values containing the delimiter, quotes or line breaks are quoted.
+ * <br><br>
+ * Data can also be written incrementally, without ever holding it all in memory: {@link #open(String, boolean)} a file,
+ * write the header and records one at a time with {@link #writeHeader(List)} and {@link #writeRecord(CSVRecord)}, and
+ * {@link #close()} the writer when done. {@link #write(Iterator, String, boolean)} does this for all the records of
+ * an <code>Iterator</code>, such as a <code>CSVRecordIterator</code>.
  *
  * @author Giovann Wah
  * @version 1.0
  */
-public class CSVWriter {
+public class CSVWriter implements Closeable {
+    private static final int writeBufferSize = 64 * 1024;
     private CSVFileFormat format;
+    private Writer out;
+    private final StringBuilder line;
 
     /**
      *Creates a new <code>CSVWriter</code> instance, based on the output <code>CSVFileFormat</code> instance argument.
@@ -25,6 +42,8 @@ public class CSVWriter {
      */
     public CSVWriter(CSVFileFormat outputFormat) {
         this.format = outputFormat;
+        this.out = null;
+        this.line = new StringBuilder();
     }
 
     /**
@@ -36,30 +55,171 @@ public class CSVWriter {
      * @param append if true, append the data to the file in the filePath. Otherwise, overwrite.
      */
     public void write(CSVArray array, String filePath, boolean append) {
-        int index = filePath.lastIndexOf('/');
-        String dir = filePath.substring(0,index);
-        File f = null;
-        FileWriter fw = null;
-        try {
-            f = new File(dir);
-            if (f.isDirectory() && !f.exists()) f.mkdirs();
-            fw = new FileWriter(filePath,append);
-            fw.write(array.csvString(format));
+        try (CSVWriter w = new CSVWriter(this.format)) {
+            w.open(filePath, append);
+            w.writeHeader(array.getHeader());
+            for (CSVRecord r : array) {
+                w.writeRecord(r);
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     *Writes the records returned by the <code>Iterator</code> to a file, one at a time, so that the records never
+     * need to be held in memory together. The header of the first record is written first, unless it is a dummy header.
+     * The file path is specified by the <code>filePath</code> string parameter. Whether or not the data is appended to the
+     * file is determined by the <code>append</code> parameter.
+     * @param records the records to write to file.
+     * @param filePath the path where the file will be saved.
+     * @param append if true, append the data to the file in the filePath. Otherwise, overwrite.
+     */
+    public void write(Iterator<CSVRecord> records, String filePath, boolean append) {
+        try (CSVWriter w = new CSVWriter(this.format)) {
+            w.open(filePath, append);
+            boolean first = true;
+            while (records.hasNext()) {
+                CSVRecord r = records.next();
+                if (first) {
+                    w.writeHeader(r.getSharedHeader());
+                    first = false;
+                }
+                w.writeRecord(r);
+            }
         }
         catch (IOException e) {
             e.printStackTrace();
         }
-        finally {
+    }
+
+    /**
+     *Opens a file for incremental writing. Any missing parent directories are created. Records are buffered and
+     * written to the file as the buffer fills up, or when {@link #flush()} or {@link #close()} is called.
+     * @param filePath the path where the file will be saved.
+     * @param append if true, append the data to the file in the filePath. Otherwise, overwrite.
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalStateException if this writer already has an open file
+     */
+    public void open(String filePath, boolean append) throws IOException {
+        if (this.out != null) throw new IllegalStateException("This CSVWriter already has an open file.");
+        File f = new File(filePath).getAbsoluteFile();
+        File dir = f.getParentFile();
+        if (dir != null && !dir.exists()) dir.mkdirs();
+        FileChannel channel = append ?
+                FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND) :
+                FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        Charset charSet = this.format.getCharacterSetName() != null ?
+                Charset.forName(this.format.getCharacterSetName()) :
+                Charset.defaultCharset();
+        this.out = new BufferedWriter(Channels.newWriter(channel, charSet.newEncoder(), -1), writeBufferSize);
+    }
+
+    /**
+     *Writes a header line to the open file.
+     * @param columns the header column names.
+     * @throws IOException if the line cannot be written
+     * @throws IllegalStateException if no file is open
+     */
+    public void writeHeader(List<String> columns) throws IOException {
+        this.writeLine(columns);
+    }
+
+    /**
+     *Writes the values of a <code>CSVRecord</code> as a line of the open file.
+     * @param record the record to write.
+     * @throws IOException if the line cannot be written
+     * @throws IllegalStateException if no file is open
+     */
+    public void writeRecord(CSVRecord record) throws IOException {
+        this.checkOpen();
+        this.line.setLength(0);
+        record.appendRecordString(this.line, this.format.getDelimiter());
+        if (this.line.length() == 0 && record.size() == 1) this.line.append("\"\""); //a blank line would be skipped when read
+        this.line.append(this.format.getOutputFileLineEnd());
+        this.out.append(this.line);
+    }
+
+    /**
+     *Writes a list of values as a line of the open file.
+     * @param values the values to write.
+     * @throws IOException if the line cannot be written
+     * @throws IllegalStateException if no file is open
+     */
+    public void writeRecord(List<String> values) throws IOException {
+        this.writeLine(values);
+    }
+
+    /**
+     *Writes any buffered data to the open file.
+     * @throws IOException if the data cannot be written
+     */
+    public void flush() throws IOException {
+        if (this.out != null) this.out.flush();
+    }
+
+    /**
+     *Writes any buffered data and closes the open file, if any. The writer can then be used to open another file.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.out != null) {
             try {
-                if (fw != null) fw.close();
-                if (f != null) f = null;
+                this.out.close();
             }
-            catch(Exception e) {
-                e.printStackTrace();
+            finally {
+                this.out = null;
             }
         }
     }
 
+    private void writeHeader(CSVHeader header) throws IOException {
+        if (!header.getIsDummyHeader()) {
+            this.writeLine(header.getColumnsList());
+        }
+    }
+
+    private void writeLine(List<String> values) throws IOException {
+        this.checkOpen();
+        this.line.setLength(0);
+        char delim = this.format.getDelimiter();
+        for (int i = 0; i < values.size(); i++) {
+            appendValue(this.line, values.get(i), delim);
+            if (i < values.size() - 1) this.line.append(delim);
+        }
+        if (this.line.length() == 0 && values.size() == 1) this.line.append("\"\""); //a blank line would be skipped when read
+        this.line.append(this.format.getOutputFileLineEnd());
+        this.out.append(this.line);
+    }
+
+    private void checkOpen() {
+        if (this.out == null) throw new IllegalStateException("This CSVWriter has no open file.");
+    }
+
+    /**
+     * Appends a value to <code>sb</code>, enclosed in quotes if it contains the delimiter, a quote or a line break.
+     */
+    static void appendValue(StringBuilder sb, CharSequence value, char delim) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == delim || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') sb.append('"');
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
     /**
      *Returns the <code>CSVFileFormat</code> associated with this <code>CSVReader</code>.
      * @return the input file format .
@@ -0,0 +1,206 @@
+package wah.giovann.csvhandler;
+
+import wah.giovann.csvhandler.error.ValueConversionException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An index on one column of a <code>CSVArray</code>, of one of the <code>CSVArray</code> <code>_INDEX</code> types.
+ * <br><br>
+ * Hash and sorted indices number the distinct values of the column, and keep the rows grouped by value in a single
+ * array of row indices, with the offset at which the rows of each value start. A hash value map finds the rows of a
+ * value in constant time; a sorted index also orders the distinct values as <code>String</code>s, so that a range of
+ * values is found by binary search. A numeric index keeps the rows with a value in the order of their values parsed as
+ * <code>double</code>s.
+ * <br><br>
+ * The index remembers the versions of the array and of its header it was built from, and is rebuilt the next time it
+ * is used after they have changed: when records have been added, removed, replaced or reordered, when a value has been
+ * set, or when the columns have changed.
+ */
+final class ColumnIndex {
+    private static final int[] noRows = new int[0];
+    private final String column;
+    private final int type;
+    private int[] order = null; //the indexed rows, grouped or sorted by value
+    private HashMap<String, Integer> positions = null; //the position of each distinct value in keys
+    private String[] keys = null; //the distinct values, sorted for a sorted index
+    private int[] offsets = null; //where the rows of each distinct value start in order
+    private double[] sortedNumbers = null;
+    private int version;
+    private int headerVersion;
+    private int valuesVersion;
+
+    ColumnIndex(String column, int type) {
+        this.column = column;
+        this.type = type;
+    }
+
+    /**
+     * Returns whether the indexed column still exists in <code>array</code>.
+     */
+    boolean isValid(CSVArray array) {
+        return array.getHeader().containsColumn(this.column);
+    }
+
+    /**
+     * Returns the indices, in ascending order, of the rows of <code>array</code> whose value in the indexed column is
+     * <code>value</code>. Only hash and sorted indices support this.
+     */
+    int[] lookup(CSVArray array, String value) {
+        this.update(array);
+        Integer p = this.positions.get(value);
+        if (p == null) return noRows;
+        return Arrays.copyOfRange(this.order, this.offsets[p], this.offsets[p + 1]);
+    }
+
+    /**
+     * Returns the indices, in ascending order, of the rows of <code>array</code> whose value in the indexed column is
+     * between <code>from</code> and <code>to</code>, both inclusive; a <code>null</code> bound is unbounded. Only
+     * sorted indices support this.
+     */
+    int[] range(CSVArray array, String from, String to) {
+        this.update(array);
+        int start = from == null ? 0 : this.lowerBound(from, false);
+        int end = to == null ? this.keys.length : this.lowerBound(to, true);
+        return start >= end ? noRows : this.rows(this.offsets[start], this.offsets[end]);
+    }
+
+    /**
+     * Returns the indices, in ascending order, of the rows of <code>array</code> whose value in the indexed column,
+     * parsed as a <code>double</code>, is between <code>from</code> and <code>to</code>, both inclusive. Only numeric
+     * indices support this.
+     */
+    int[] range(CSVArray array, double from, double to) {
+        this.update(array);
+        int start = this.lowerBound(from, false);
+        int end = this.lowerBound(to, true);
+        return this.rows(start, end);
+    }
+
+    private int[] rows(int start, int end) {
+        if (start >= end) return noRows;
+        int[] ret = Arrays.copyOfRange(this.order, start, end);
+        Arrays.sort(ret);
+        return ret;
+    }
+
+    /**
+     * Returns the position of the first distinct value not less than <code>value</code>, or, if <code>after</code> is
+     * true, of the first distinct value greater than <code>value</code>.
+     */
+    private int lowerBound(String value, boolean after) {
+        int lo = 0;
+        int hi = this.keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = this.keys[mid].compareTo(value);
+            if (cmp < 0 || (after && cmp == 0)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private int lowerBound(double value, boolean after) {
+        int lo = 0;
+        int hi = this.sortedNumbers.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Double.compare(this.sortedNumbers[mid], value);
+            if (cmp < 0 || (after && cmp == 0)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Builds the index, or rebuilds it if <code>array</code> has changed since it was built.
+     */
+    void update(CSVArray array) {
+        CSVHeader h = array.getHeader();
+        if (this.order != null && this.version == array.version() && this.headerVersion == h.getModCount()
+                && this.valuesVersion == h.getValuesVersion()) return;
+        int c = h.indexOfColumn(this.column);
+        if (this.type == CSVArray.NUMERIC_INDEX) this.buildNumeric(array, c);
+        else this.buildValues(array, c);
+        this.version = array.version();
+        this.headerVersion = h.getModCount();
+        this.valuesVersion = h.getValuesVersion();
+    }
+
+    private void buildValues(CSVArray array, int c) {
+        int size = array.size();
+        HashMap<String, Integer> ids = new HashMap<>();
+        ArrayList<String> distinct = new ArrayList<>();
+        int[] rowIds = new int[size];
+        int[] counts = new int[16];
+        for (int row = 0; row < size; row++) {
+            String v = array.valueAt(row, c);
+            Integer id = ids.get(v);
+            if (id == null) {
+                id = distinct.size();
+                ids.put(v, id);
+                distinct.add(v);
+                if (id == counts.length) counts = Arrays.copyOf(counts, id * 2);
+            }
+            rowIds[row] = id;
+            counts[id]++;
+        }
+        int d = distinct.size();
+        //the distinct values in key order: first appearance for a hash index, alphanumeric for a sorted one
+        int[] byPosition;
+        if (this.type == CSVArray.SORTED_INDEX) {
+            byPosition = IndexSorter.sortedRows(d, (i, j) -> distinct.get(i).compareTo(distinct.get(j)));
+        }
+        else {
+            byPosition = new int[d];
+            for (int i = 0; i < d; i++) {
+                byPosition[i] = i;
+            }
+        }
+        int[] position = new int[d];
+        this.keys = new String[d];
+        this.offsets = new int[d + 1];
+        for (int p = 0; p < d; p++) {
+            int id = byPosition[p];
+            position[id] = p;
+            this.keys[p] = distinct.get(id);
+            this.offsets[p + 1] = this.offsets[p] + counts[id];
+        }
+        int[] next = Arrays.copyOf(this.offsets, d);
+        this.order = new int[size];
+        for (int row = 0; row < size; row++) {
+            this.order[next[position[rowIds[row]]]++] = row;
+        }
+        for (Map.Entry<String, Integer> e : ids.entrySet()) {
+            e.setValue(position[e.getValue()]);
+        }
+        this.positions = ids;
+    }
+
+    private void buildNumeric(CSVArray array, int c) {
+        //rows with an empty value are left out of a numeric index
+        int size = array.size();
+        double[] numbers = new double[size];
+        int[] rows = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (array.isMissingAt(row, c)) continue;
+            try {
+                numbers[row] = array.doubleAt(row, c);
+            }
+            catch (NumberFormatException e) {
+                throw new ValueConversionException(ValueConversionException.DOUBLE, array.valueAt(row, c), -1, c);
+            }
+            rows[count++] = row;
+        }
+        IndexSorter.sort(rows, count, (r1, r2) -> Double.compare(numbers[r1], numbers[r2]));
+        this.order = Arrays.copyOf(rows, count);
+        this.sortedNumbers = new double[count];
+        for (int i = 0; i < count; i++) {
+            this.sortedNumbers[i] = numbers[this.order[i]];
+        }
+    }
+}
@@ -0,0 +1,719 @@
+package wah.giovann.csvhandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The values of one column of a <code>ColumnarCSVArray</code>, stored in primitive arrays instead of one
+ * <code>String</code> object per cell.
+ * <br><br>
+ * New columns start out dictionary-encoded: every distinct value is stored once and each cell only holds an
+ * <code>int</code> code. Once a column turns out to have too many distinct values for this to pay off, it is
+ * converted to a packed representation that keeps the characters of all values in one shared <code>char</code>
+ * array. Operations that may change the representation return the vector that replaces this one.
+ * <br><br>
+ * Columns declared as <code>int</code>, <code>long</code> or <code>double</code> columns by the input format are
+ * instead parsed once into a primitive array, and their values are formatted back into text only when they are read as
+ * <code>String</code>s. Empty values are kept as missing values; any other value that cannot be parsed is rejected with
+ * a <code>NumberFormatException</code>.
+ */
+abstract class ColumnVector {
+    protected int size;
+
+    int size() {
+        return this.size;
+    }
+
+    abstract String get(int row);
+
+    abstract ColumnVector set(int row, String value);
+
+    abstract ColumnVector add(String value);
+
+    abstract ColumnVector insert(int row, String value);
+
+    /**
+     * Appends the value held in <code>chars</code> from <code>start</code> (inclusive) to <code>end</code> (exclusive).
+     */
+    ColumnVector add(char[] chars, int start, int end) {
+        return this.add(start == end ? "" : new String(chars, start, end - start));
+    }
+
+    abstract void remove(int row);
+
+    /**
+     * Returns a new vector holding the values of the given rows, in the given order.
+     */
+    abstract ColumnVector select(int[] rows, int count);
+
+    abstract void clear();
+
+    abstract void trimToSize();
+
+    /**
+     * Returns the type of this column, one of the <code>CSVFileFormat</code> <code>_COLUMN_TYPE</code> constants.
+     */
+    int type() {
+        return CSVFileFormat.STRING_COLUMN_TYPE;
+    }
+
+    /**
+     * Returns whether the value of the row is empty.
+     */
+    boolean isMissing(int row) {
+        return this.get(row).isEmpty();
+    }
+
+    double getDouble(int row) {
+        return Double.parseDouble(this.get(row));
+    }
+
+    long getLong(int row) {
+        return Long.parseLong(this.get(row));
+    }
+
+    int getInt(int row) {
+        return Integer.parseInt(this.get(row));
+    }
+
+    /**
+     * Returns a new, empty vector of the given <code>CSVFileFormat</code> column type.
+     */
+    static ColumnVector create(int type) {
+        switch (type) {
+            case CSVFileFormat.INT_COLUMN_TYPE:
+                return new IntVector();
+            case CSVFileFormat.LONG_COLUMN_TYPE:
+                return new LongVector();
+            case CSVFileFormat.DOUBLE_COLUMN_TYPE:
+                return new DoubleVector();
+            default:
+                return new DictionaryVector();
+        }
+    }
+
+    /**
+     * Returns a new vector holding <code>rows</code> copies of <code>value</code>.
+     */
+    static ColumnVector filled(String value, int rows) {
+        DictionaryVector ret = new DictionaryVector();
+        int code = ret.code(value);
+        ret.codes = new int[Math.max(rows, 16)];
+        Arrays.fill(ret.codes, 0, rows, code);
+        ret.size = rows;
+        return ret;
+    }
+
+    static int grow(int current, int needed) {
+        int n = Math.max(current + (current >> 1), 16);
+        return Math.max(n, needed);
+    }
+
+    /**
+     * A column of <code>int</code> codes into a dictionary of distinct values.
+     */
+    static final class DictionaryVector extends ColumnVector {
+        private static final int maxDictionarySize = 1 << 16;
+        private static final int minRowsForRatio = 1024;
+        private int[] codes = new int[16];
+        private ArrayList<String> dictionary = new ArrayList<>();
+        private HashMap<String, Integer> lookup = new HashMap<>();
+        private boolean sharedDictionary = false; //whether the dictionary and lookup are shared with another vector, and must be copied before adding to them
+
+        int code(String value) {
+            Integer c = this.lookup.get(value);
+            if (c == null) {
+                if (this.sharedDictionary) {
+                    this.dictionary = new ArrayList<>(this.dictionary);
+                    this.lookup = new HashMap<>(this.lookup);
+                    this.sharedDictionary = false;
+                }
+                c = this.dictionary.size();
+                this.dictionary.add(value);
+                this.lookup.put(value, c);
+            }
+            return c;
+        }
+
+        /**
+         * Returns whether the dictionary has grown too large, compared to the number of rows, to save memory.
+         */
+        private boolean tooManyValues() {
+            int distinct = this.dictionary.size();
+            return distinct > maxDictionarySize || (this.size >= minRowsForRatio && distinct > this.size / 2);
+        }
+
+        @Override
+        String get(int row) {
+            if (row < 0 || row >= this.size) throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + this.size);
+            return this.dictionary.get(this.codes[row]);
+        }
+
+        @Override
+        ColumnVector set(int row, String value) {
+            if (row < 0 || row >= this.size) throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + this.size);
+            this.codes[row] = this.code(value);
+            return this.tooManyValues() ? this.toPacked() : this;
+        }
+
+        @Override
+        ColumnVector add(String value) {
+            return this.insert(this.size, value);
+        }
+
+        @Override
+        ColumnVector insert(int row, String value) {
+            if (row < 0 || row > this.size) throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + this.size);
+            if (this.size == this.codes.length) this.codes = Arrays.copyOf(this.codes, grow(this.codes.length, this.size + 1));
+            System.arraycopy(this.codes, row, this.codes, row + 1, this.size - row);
+            this.codes[row] = this.code(value);
+            this.size++;
+            return this.tooManyValues() ? this.toPacked() : this;
+        }
+
+        @Override
+        void remove(int row) {
+            if (row < 0 || row >= this.size) throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + this.size);
+            System.arraycopy(this.codes, row + 1, this.codes, row, this.size - row - 1);
+            this.size--;
+        }
+
+        @Override
+        ColumnVector select(int[] rows, int count) {
+            DictionaryVector ret = new DictionaryVector();
+            ret.dictionary = this.dictionary;
+            ret.lookup = this.lookup;
+            ret.sharedDictionary = true;
+            this.sharedDictionary = true;
+            ret.codes = new int[Math.max(count, 16)];
+            for (int i = 0; i < count; i++) {
+                ret.codes[i] = this.codes[rows[i]];
+            }
+            ret.size = count;
+            return ret;
+        }
+
+        @Override
+        void clear() {
+            this.size = 0;
+            this.codes = new int[16];
+            this.dictionary = new ArrayList<>();
+            this.lookup = new HashMap<>();
+            this.sharedDictionary = false;
+        }
+
+        @Override
+        void trimToSize() {
+            this.codes = Arrays.copyOf(this.codes, this.size);
+        }
+
+        private PackedVector toPacked() {
+            PackedVector ret = new PackedVector();
+            for (int i = 0; i < this.size; i++) {
+                ret.add(this.dictionary.get(this.codes[i]));
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * A column whose values are stored back to back in one <code>char</code> array, delimited by start and end
+     * offsets. A value that is replaced is appended to the end of the array, and the array is compacted once more
+     * than half of it is unused.
+     */
+    static final class PackedVector extends ColumnVector {
+        private char[] chars = new char[256];
+        private int charsUsed = 0;
+        private long liveChars = 0;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16]; //-1 for null values
+
+        @Override
+        String get(int row) {
+            if (row < 0 || row >= this.size) throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + this.size);
+            int end = this.ends[row];
+            if (end < 0) return null;
+            return new String(this.chars, this.starts[row], end - this.starts[row]);
+        }
+
+        @Override
+        ColumnVector set(int row, String value) {
+            if (row < 0 || row >= this.size) throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + this.size);
+            this.release(row);
+            this.store(row, value);
+            if (this.charsUsed > 1024 && this.liveChars < this.charsUsed / 2) this.compact();
+            return this;
+        }
+
+        @Override
+        ColumnVector add(String value) {
+            return this.insert(this.size, value);
+        }
+
+        @Override
+        ColumnVector insert(int row, String value) {
+            if (row < 0 || row > this.size) throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + this.size);
+            if (this.size == this.starts.length) {
+                int n = grow(this.starts.length, this.size + 1);
+                this.starts = Arrays.copyOf(this.starts, n);
+                this.ends = Arrays.copyOf(this.ends, n);
+            }
+            System.arraycopy(this.starts, row, this.starts, row + 1, this.size - row);
+            System.arraycopy(this.ends, row, this.ends, row + 1, this.size - row);
+            this.size++;
+            this.store(row, value);
+            return this;
+        }
+
+        @Override
+        void remove(int row) {
+            if (row < 0 || row >= this.size) throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + this.size);
+            this.release(row);
+            System.arraycopy(this.starts, row + 1, this.starts, row, this.size - row - 1);
+            System.arraycopy(this.ends, row + 1, this.ends, row, this.size - row - 1);
+            this.size--;
+        }
+
+        @Override
+        ColumnVector select(int[] rows, int count) {
+            PackedVector ret = new PackedVector();
+            ret.starts = new int[Math.max(count, 16)];
+            ret.ends = new int[Math.max(count, 16)];
+            long needed = 0;
+            for (int i = 0; i < count; i++) {
+                int end = this.ends[rows[i]];
+                if (end >= 0) needed += end - this.starts[rows[i]];
+            }
+            ret.chars = new char[(int) Math.max(needed, 256)];
+            for (int i = 0; i < count; i++) {
+                int row = rows[i];
+                int end = this.ends[row];
+                if (end < 0) {
+                    ret.ends[i] = -1;
+                    continue;
+                }
+                int len = end - this.starts[row];
+                System.arraycopy(this.chars, this.starts[row], ret.chars, ret.charsUsed, len);
+                ret.starts[i] = ret.charsUsed;
+                ret.charsUsed += len;
+                ret.ends[i] = ret.charsUsed;
+            }
+            ret.liveChars = ret.charsUsed;
+            ret.size = count;
+            return ret;
+        }
+
+        @Override
+        void clear() {
+            this.size = 0;
+            this.chars = new char[256];
+            this.charsUsed = 0;
+            this.liveChars = 0;
+            this.starts = new int[16];
+            this.ends = new int[16];
+        }
+
+        @Override
+        void trimToSize() {
+            this.starts = Arrays.copyOf(this.starts, this.size);
+            this.ends = Arrays.copyOf(this.ends, this.size);
+            this.chars = Arrays.copyOf(this.chars, this.charsUsed);
+        }
+
+        private void store(int row, String value) {
+            if (value == null) {
+                this.starts[row] = 0;
+                this.ends[row] = -1;
+                return;
+            }
+            int len = value.length();
+            if (this.charsUsed + len > this.chars.length) {
+                long n = Math.max((long) this.chars.length * 2, (long) this.charsUsed + len);
+                if (n > Integer.MAX_VALUE - 8) {
+                    if ((long) this.charsUsed + len > Integer.MAX_VALUE - 8) throw new OutOfMemoryError("Column values exceed the maximum array size.");
+                    n = Integer.MAX_VALUE - 8;
+                }
+                this.chars = Arrays.copyOf(this.chars, (int) n);
+            }
+            value.getChars(0, len, this.chars, this.charsUsed);
+            this.starts[row] = this.charsUsed;
+            this.charsUsed += len;
+            this.ends[row] = this.charsUsed;
+            this.liveChars += len;
+        }
+
+        private void release(int row) {
+            if (this.ends[row] >= 0) this.liveChars -= this.ends[row] - this.starts[row];
+        }
+
+        private void compact() {
+            int[] all = new int[this.size];
+            for (int i = 0; i < this.size; i++) {
+                all[i] = i;
+            }
+            PackedVector c = (PackedVector) this.select(all, this.size);
+            this.chars = c.chars;
+            this.charsUsed = c.charsUsed;
+            this.liveChars = c.liveChars;
+            this.starts = c.starts;
+            this.ends = c.ends;
+        }
+    }
+
+    /**
+     * A column of parsed numbers. Subclasses hold the values in a primitive array; whether a row is missing is kept in
+     * a separate array that is only allocated once the first empty value is stored.
+     */
+    abstract static class NumericVector extends ColumnVector {
+        private boolean[] missing = null;
+
+        abstract int capacity();
+
+        abstract void resize(int capacity);
+
+        /**
+         * Returns the primitive array holding the values.
+         */
+        abstract Object values();
+
+        abstract NumericVector empty();
+
+        /**
+         * Parses <code>value</code> into the given row.
+         */
+        abstract void parse(int row, String value);
+
+        /**
+         * Parses the value held in <code>chars</code> from <code>start</code> to <code>end</code> into the given row.
+         */
+        abstract void parse(int row, char[] chars, int start, int end);
+
+        abstract String format(int row);
+
+        /**
+         * Copies the value of <code>row</code> to row <code>toRow</code> of <code>to</code>, which has the same type.
+         */
+        abstract void copy(int row, NumericVector to, int toRow);
+
+        @Override
+        boolean isMissing(int row) {
+            if (row < 0 || row >= this.size) throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + this.size);
+            return this.missing != null && this.missing[row];
+        }
+
+        /**
+         * Checks that the row holds a value, before it is read as a primitive.
+         */
+        void checkValue(int row) {
+            if (this.isMissing(row)) throw new NumberFormatException("empty String");
+        }
+
+        @Override
+        String get(int row) {
+            return this.isMissing(row) ? "" : this.format(row);
+        }
+
+        @Override
+        ColumnVector set(int row, String value) {
+            if (row < 0 || row >= this.size) throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + this.size);
+            this.store(row, value);
+            return this;
+        }
+
+        @Override
+        ColumnVector add(String value) {
+            return this.insert(this.size, value);
+        }
+
+        @Override
+        ColumnVector insert(int row, String value) {
+            if (row < 0 || row > this.size) throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + this.size);
+            if (this.size == this.capacity()) {
+                int n = grow(this.capacity(), this.size + 1);
+                this.resize(n);
+                if (this.missing != null) this.missing = Arrays.copyOf(this.missing, n);
+            }
+            if (row < this.size) {
+                System.arraycopy(this.values(), row, this.values(), row + 1, this.size - row);
+                if (this.missing != null) System.arraycopy(this.missing, row, this.missing, row + 1, this.size - row);
+            }
+            try {
+                this.store(row, value);
+            }
+            catch (NumberFormatException e) {
+                if (row < this.size) {
+                    System.arraycopy(this.values(), row + 1, this.values(), row, this.size - row);
+                    if (this.missing != null) System.arraycopy(this.missing, row + 1, this.missing, row, this.size - row);
+                }
+                throw e;
+            }
+            this.size++;
+            return this;
+        }
+
+        @Override
+        ColumnVector add(char[] chars, int start, int end) {
+            if (this.size == this.capacity()) {
+                int n = grow(this.capacity(), this.size + 1);
+                this.resize(n);
+                if (this.missing != null) this.missing = Arrays.copyOf(this.missing, n);
+            }
+            if (start == end) {
+                this.markMissing(this.size, true);
+            }
+            else {
+                this.parse(this.size, chars, start, end);
+                this.markMissing(this.size, false);
+            }
+            this.size++;
+            return this;
+        }
+
+        @Override
+        void remove(int row) {
+            if (row < 0 || row >= this.size) throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + this.size);
+            System.arraycopy(this.values(), row + 1, this.values(), row, this.size - row - 1);
+            if (this.missing != null) System.arraycopy(this.missing, row + 1, this.missing, row, this.size - row - 1);
+            this.size--;
+        }
+
+        @Override
+        ColumnVector select(int[] rows, int count) {
+            NumericVector ret = this.empty();
+            ret.resize(Math.max(count, 16));
+            for (int i = 0; i < count; i++) {
+                if (this.missing != null && this.missing[rows[i]]) {
+                    ret.markMissing(i, true);
+                }
+                else {
+                    this.copy(rows[i], ret, i);
+                }
+            }
+            ret.size = count;
+            return ret;
+        }
+
+        @Override
+        void clear() {
+            this.size = 0;
+            this.resize(16);
+            this.missing = null;
+        }
+
+        @Override
+        void trimToSize() {
+            this.resize(this.size);
+            if (this.missing != null) this.missing = Arrays.copyOf(this.missing, this.size);
+        }
+
+        private void store(int row, String value) {
+            if (value == null || value.isEmpty()) {
+                this.markMissing(row, true);
+                return;
+            }
+            this.parse(row, value);
+            this.markMissing(row, false);
+        }
+
+        private void markMissing(int row, boolean m) {
+            if (this.missing == null) {
+                if (!m) return;
+                this.missing = new boolean[this.capacity()];
+            }
+            this.missing[row] = m;
+        }
+    }
+
+    /**
+     * A column of <code>int</code> values.
+     */
+    static final class IntVector extends NumericVector {
+        private int[] values = new int[16];
+
+        @Override
+        int type() {
+            return CSVFileFormat.INT_COLUMN_TYPE;
+        }
+
+        @Override
+        int capacity() {
+            return this.values.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+
+        @Override
+        Object values() {
+            return this.values;
+        }
+
+        @Override
+        NumericVector empty() {
+            return new IntVector();
+        }
+
+        @Override
+        void parse(int row, String value) {
+            this.values[row] = Integer.parseInt(value);
+        }
+
+        @Override
+        void parse(int row, char[] chars, int start, int end) {
+            this.values[row] = NumberParser.parseInt(chars, start, end);
+        }
+
+        @Override
+        String format(int row) {
+            return Integer.toString(this.values[row]);
+        }
+
+        @Override
+        void copy(int row, NumericVector to, int toRow) {
+            ((IntVector) to).values[toRow] = this.values[row];
+        }
+
+        @Override
+        double getDouble(int row) {
+            this.checkValue(row);
+            return this.values[row];
+        }
+
+        @Override
+        long getLong(int row) {
+            this.checkValue(row);
+            return this.values[row];
+        }
+
+        @Override
+        int getInt(int row) {
+            this.checkValue(row);
+            return this.values[row];
+        }
+    }
+
+    /**
+     * A column of <code>long</code> values.
+     */
+    static final class LongVector extends NumericVector {
+        private long[] values = new long[16];
+
+        @Override
+        int type() {
+            return CSVFileFormat.LONG_COLUMN_TYPE;
+        }
+
+        @Override
+        int capacity() {
+            return this.values.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+
+        @Override
+        Object values() {
+            return this.values;
+        }
+
+        @Override
+        NumericVector empty() {
+            return new LongVector();
+        }
+
+        @Override
+        void parse(int row, String value) {
+            this.values[row] = Long.parseLong(value);
+        }
+
+        @Override
+        void parse(int row, char[] chars, int start, int end) {
+            this.values[row] = NumberParser.parseLong(chars, start, end);
+        }
+
+        @Override
+        String format(int row) {
+            return Long.toString(this.values[row]);
+        }
+
+        @Override
+        void copy(int row, NumericVector to, int toRow) {
+            ((LongVector) to).values[toRow] = this.values[row];
+        }
+
+        @Override
+        double getDouble(int row) {
+            this.checkValue(row);
+            return this.values[row];
+        }
+
+        @Override
+        long getLong(int row) {
+            this.checkValue(row);
+            return this.values[row];
+        }
+    }
+
+    /**
+     * A column of <code>double</code> values.
+     */
+    static final class DoubleVector extends NumericVector {
+        private double[] values = new double[16];
+
+        @Override
+        int type() {
+            return CSVFileFormat.DOUBLE_COLUMN_TYPE;
+        }
+
+        @Override
+        int capacity() {
+            return this.values.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+
+        @Override
+        Object values() {
+            return this.values;
+        }
+
+        @Override
+        NumericVector empty() {
+            return new DoubleVector();
+        }
+
+        @Override
+        void parse(int row, String value) {
+            this.values[row] = Double.parseDouble(value);
+        }
+
+        @Override
+        void parse(int row, char[] chars, int start, int end) {
+            this.values[row] = NumberParser.parseDouble(chars, start, end);
+        }
+
+        @Override
+        String format(int row) {
+            return Double.toString(this.values[row]);
+        }
+
+        @Override
+        void copy(int row, NumericVector to, int toRow) {
+            ((DoubleVector) to).values[toRow] = this.values[row];
+        }
+
+        @Override
+        double getDouble(int row) {
+            this.checkValue(row);
+            return this.values[row];
+        }
+    }
+}
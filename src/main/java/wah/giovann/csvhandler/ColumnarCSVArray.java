@@ -0,0 +1,760 @@
+package wah.giovann.csvhandler;
+
+import wah.giovann.csvhandler.error.CSVIntegrityException;
+import wah.giovann.csvhandler.error.CSVParseException;
+import wah.giovann.csvhandler.error.ValueConversionException;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A <code>ColumnarCSVArray</code> is a <code>CSVArray</code> that stores its data column by column instead of as
+ * one list of values per record.
+ * <br><br>
+ * Each column is kept in a single primitive-array based vector. Columns with few distinct values are
+ * dictionary-encoded, so that each distinct value is stored only once; other columns keep the characters of all their
+ * values in one shared array. For large files this takes a fraction of the memory of a <code>CSVArray</code>, which
+ * needs a list and a <code>String</code> object for every record and value.
+ * <br><br>
+ * The <code>CSVRecord</code>s of a <code>ColumnarCSVArray</code> are views of a row position: reading or setting one
+ * of their values reads or writes the underlying column, and a new view is created every time a record is retrieved.
+ * Adding a record to the array copies its values into the columns. After the array is sorted or rows are inserted or
+ * removed, previously retrieved records refer to whatever row is now at their position.
+ * <br><br>
+ * Columns declared as <code>int</code>, <code>long</code> or <code>double</code> columns by a <code>CSVFileFormat</code>
+ * are parsed once, when they are stored, into primitive arrays. Their values can be read without any parsing or
+ * allocation with {@link #getDouble(int, int)}, {@link #getLong(int, int)} and {@link #getInt(int, int)}, and the
+ * <code>getDouble</code>, <code>getLong</code> and <code>getInt</code> methods of the array's records read them the same
+ * way. When such values are read as <code>String</code>s they are formatted from the parsed number, so <code>1.50</code>
+ * reads back as <code>1.5</code>. Empty values are allowed in typed columns; storing any other value that cannot be
+ * parsed throws a <code>ValueConversionException</code>.
+ * <br><br>
+ * A <code>ColumnarCSVArray</code> can be built from another <code>CSVArray</code>, or read directly from a file with
+ * <code>CSVReader.readColumnarCSV</code>. <code>CSVReader.readCSV</code> also returns a <code>ColumnarCSVArray</code>
+ * when its format declares column types.
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public class ColumnarCSVArray extends CSVArray {
+    private static final long serialVersionUID = 1L;
+    private final ArrayList<ColumnVector> columns;
+    private final Rows rows;
+
+    /**
+     * Constructs a new <code>ColumnarCSVArray</code> instance holding a copy of the header and records of another
+     * <code>CSVArray</code> instance.
+     * @param other A <code>CSVArray</code> instance.
+     */
+    public ColumnarCSVArray(CSVArray other) {
+        this(other, CSVFileFormat.DEFAULT_FORMAT);
+    }
+
+    /**
+     * Constructs a new <code>ColumnarCSVArray</code> instance holding a copy of the header and records of another
+     * <code>CSVArray</code> instance, with the column types declared by <code>format</code>.
+     * @param other A <code>CSVArray</code> instance.
+     * @param format The <code>CSVFileFormat</code> declaring the column types.
+     * @throws ValueConversionException if a value of a typed column cannot be parsed
+     */
+    public ColumnarCSVArray(CSVArray other, CSVFileFormat format) {
+        this(compacted(new CSVHeader(other.getHeader())), format);
+        for (CSVRecord r : other) {
+            this.appendRow(r.getValues(), -1);
+        }
+    }
+
+    /**
+     * Constructs a new, empty <code>ColumnarCSVArray</code> instance with the specified <code>CSVHeader</code> instance.
+     * @param h The <code>CSVHeader</code> instance.
+     */
+    ColumnarCSVArray(CSVHeader h) {
+        this(h, CSVFileFormat.DEFAULT_FORMAT);
+    }
+
+    /**
+     * Constructs a new, empty <code>ColumnarCSVArray</code> instance with the specified <code>CSVHeader</code> instance,
+     * with the column types declared by <code>format</code>. A type declared for a column name takes precedence over
+     * one declared for the column index.
+     */
+    ColumnarCSVArray(CSVHeader h, CSVFileFormat format) {
+        super(h);
+        this.columns = new ArrayList<>();
+        this.rows = new Rows();
+        for (int i = 0; i < h.totalColumns(); i++) {
+            int type = format.getColumnType(i);
+            if (!h.getIsDummyHeader() && format.getColumnType(h.getColumnName(i)) != CSVFileFormat.STRING_COLUMN_TYPE) {
+                type = format.getColumnType(h.getColumnName(i));
+            }
+            this.columns.add(ColumnVector.create(type));
+        }
+    }
+
+    private static CSVHeader compacted(CSVHeader h) {
+        h.compact();
+        return h;
+    }
+
+    /**
+     * Appends a row of values, which must match the header in size. <code>line</code> is the input line the row was
+     * read from, reported if a value cannot be converted, or -1.
+     */
+    void appendRow(List<String> values, long line) {
+        this.rows.checkRowSize(values);
+        this.rows.insertRow(this.rows.count, values, line);
+    }
+
+    /**
+     * Appends every remaining record read by <code>parser</code>. Fields are stored straight from the parser's buffer,
+     * so values of typed columns are converted without creating a <code>String</code> first.
+     */
+    void appendAll(CSVParser parser) throws CSVParseException, IOException {
+        Appender appender = new Appender(parser);
+        while (parser.readRow(appender)) {
+            appender.endRow();
+        }
+    }
+
+    /**
+     * Appends every remaining record read by <code>filter</code> that passes its filters.
+     */
+    void appendAll(RowFilter filter) throws CSVParseException, IOException {
+        Appender appender = new Appender(filter.getParser());
+        FieldSliceList values;
+        while ((values = filter.next()) != null) {
+            values.replay(appender);
+            appender.endRow();
+        }
+    }
+
+    /**
+     * Returns the value at the specified row and column.
+     * @param row The index of the row.
+     * @param column The index of the column.
+     * @return The <code>String</code> value at that position.
+     */
+    public String getValue(int row, int column) {
+        this.rows.checkIndex(row);
+        return this.columns.get(column).get(row);
+    }
+
+    /**
+     * Sets the value at the specified row and column.
+     * @param row The index of the row.
+     * @param column The index of the column.
+     * @param value The new value.
+     */
+    public void setValue(int row, int column, String value) {
+        this.rows.checkIndex(row);
+        this.setCell(row, column, value);
+    }
+
+    /**
+     * Returns the value at the specified row and column as a <code>double</code>. Values of <code>int</code>,
+     * <code>long</code> and <code>double</code> columns are returned without being parsed again.
+     * @param row The index of the row.
+     * @param column The index of the column.
+     * @return <code>double</code> value at that position.
+     */
+    public double getDouble(int row, int column) {
+        this.checkNumber(row, column, ValueConversionException.DOUBLE);
+        return this.columns.get(column).getDouble(row);
+    }
+
+    /**
+     * Returns the value at the specified row and column as a <code>long</code>. Values of <code>int</code> and
+     * <code>long</code> columns are returned without being parsed again.
+     * @param row The index of the row.
+     * @param column The index of the column.
+     * @return <code>long</code> value at that position.
+     */
+    public long getLong(int row, int column) {
+        this.checkNumber(row, column, ValueConversionException.LONG);
+        return this.columns.get(column).getLong(row);
+    }
+
+    /**
+     * Returns the value at the specified row and column as an <code>int</code>. Values of <code>int</code> columns
+     * are returned without being parsed again.
+     * @param row The index of the row.
+     * @param column The index of the column.
+     * @return <code>int</code> value at that position.
+     */
+    public int getInt(int row, int column) {
+        this.checkNumber(row, column, ValueConversionException.INT);
+        return this.columns.get(column).getInt(row);
+    }
+
+    /**
+     * Returns the type of the column at the specified index, one of the <code>CSVFileFormat</code>
+     * <code>_COLUMN_TYPE</code> constants.
+     * @param column The index of the column.
+     * @return The type of the column.
+     */
+    public int getColumnType(int column) {
+        return this.columns.get(column).type();
+    }
+
+    /**
+     * Returns the number of columns in this array.
+     * @return The number of columns.
+     */
+    public int totalColumns() {
+        return this.columns.size();
+    }
+
+    @Override
+    public ArrayList<String> getColumnList(int index) {
+        ColumnVector col = this.columns.get(index);
+        ArrayList<String> ret = new ArrayList<>(this.rows.count);
+        for (int r = 0; r < this.rows.count; r++) {
+            ret.add(col.get(r));
+        }
+        return ret;
+    }
+
+    @Override
+    public void removeColumn(int columnIndex) {
+        if (columnIndex < 0 || columnIndex >= this.columns.size() || this.getHeader().removeColumn(columnIndex) == null) {
+            ArrayList<Object> err = new ArrayList<>();
+            err.add(columnIndex);
+            err.add(this.getHeader());
+            throw new CSVIntegrityException(CSVIntegrityException.COLUMN_REMOVAL_FAILED, err);
+        }
+        this.getHeader().compact(); //the values live in the column vectors, so the header never needs a slot map
+        this.columns.remove(columnIndex);
+    }
+
+    @Override
+    public void addDummyColumn(int columnIndex) {
+        if (this.getHeader().getIsDummyHeader()) {
+            this.getHeader().addDummyColumn(columnIndex);
+            this.getHeader().compact();
+            this.columns.add(columnIndex, ColumnVector.filled("", this.rows.count));
+        }
+    }
+
+    @Override
+    public void addColumn(int columnIndex, String columnName) {
+        if (!this.getHeader().getIsDummyHeader()) {
+            this.getHeader().addColumn(columnIndex, columnName);
+            this.getHeader().compact();
+            this.columns.add(columnIndex, ColumnVector.filled("", this.rows.count));
+        }
+    }
+
+    @Override
+    public void swapColumns(int index1, int index2) {
+        this.getHeader().swapColumns(index1, index2);
+        this.getHeader().compact();
+        ColumnVector temp = this.columns.get(index1);
+        this.columns.set(index1, this.columns.get(index2));
+        this.columns.set(index2, temp);
+    }
+
+    @Override
+    public CSVRecord insertData(ArrayList<String> data, int index) {
+        if (index < 0 || index > this.rows.count) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.rows.count);
+        this.rows.checkRowSize(data);
+        this.rows.insertRow(index, data, -1);
+        return this.get(index);
+    }
+
+    @Override
+    public CSVRecord insertData(ArrayList<String> data) {
+        return this.insertData(data, this.rows.count);
+    }
+
+    @Override
+    public void copyState(CSVArray other) {
+        this.columns.clear();
+        for (int i = 0; i < other.getHeader().totalColumns(); i++) {
+            this.columns.add(ColumnVector.create(other instanceof ColumnarCSVArray ?
+                    ((ColumnarCSVArray) other).getColumnType(i) : CSVFileFormat.STRING_COLUMN_TYPE));
+        }
+        this.rows.count = 0;
+        super.copyState(other);
+    }
+
+    @Override
+    String valueAt(int row, int column) {
+        return this.columns.get(column).get(row);
+    }
+
+    @Override
+    boolean isMissingAt(int row, int column) {
+        return this.columns.get(column).isMissing(row);
+    }
+
+    @Override
+    double doubleAt(int row, int column) {
+        return this.columns.get(column).getDouble(row);
+    }
+
+    @Override
+    CSVArray copyRows(int[] rowIndices, int count) {
+        return this.select(rowIndices, count);
+    }
+
+    /**
+     * Returns a new <code>ColumnarCSVArray</code> holding the given rows of this array, in the given order, with a
+     * copy of this array's header.
+     */
+    @Override
+    ColumnarCSVArray select(int[] rowIndices, int count) {
+        ColumnarCSVArray ret = new ColumnarCSVArray(new CSVHeader(this.getHeader()));
+        for (int c = 0; c < this.columns.size(); c++) {
+            ret.columns.set(c, this.columns.get(c).select(rowIndices, count));
+        }
+        ret.rows.count = count;
+        return ret;
+    }
+
+    private void setCell(int row, int column, String value) {
+        ColumnVector col = this.columns.get(column);
+        try {
+            this.columns.set(column, col.set(row, value));
+        }
+        catch (NumberFormatException e) {
+            throw this.conversionError(column, value, -1);
+        }
+        this.changed();
+    }
+
+    @Override
+    int version() {
+        return super.version() + this.rows.modCount();
+    }
+
+    private void checkNumber(int row, int column, int conversion) {
+        this.rows.checkIndex(row);
+        ColumnVector col = this.columns.get(column);
+        if (col instanceof ColumnVector.NumericVector && ((ColumnVector.NumericVector) col).isMissing(row)) {
+            throw new ValueConversionException(conversion, "", -1, column);
+        }
+    }
+
+    private ValueConversionException conversionError(int column, String value, long line) {
+        int conversion;
+        switch (this.columns.get(column).type()) {
+            case CSVFileFormat.INT_COLUMN_TYPE:
+                conversion = ValueConversionException.INT;
+                break;
+            case CSVFileFormat.LONG_COLUMN_TYPE:
+                conversion = ValueConversionException.LONG;
+                break;
+            default:
+                conversion = ValueConversionException.DOUBLE;
+                break;
+        }
+        return new ValueConversionException(conversion, value, line, column);
+    }
+
+    /**
+     * Reorders the rows so that row <code>i</code> becomes the row previously at <code>permutation[i]</code>.
+     */
+    @Override
+    void permute(int[] permutation) {
+        for (int c = 0; c < this.columns.size(); c++) {
+            this.columns.set(c, this.columns.get(c).select(permutation, permutation.length));
+        }
+        this.rows.changed();
+    }
+
+    /* The list operations inherited from ArrayList are all answered by the columns. */
+
+    @Override
+    public int size() {
+        return this.rows.count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.rows.count == 0;
+    }
+
+    @Override
+    public CSVRecord get(int index) {
+        return this.rows.get(index);
+    }
+
+    @Override
+    public CSVRecord set(int index, CSVRecord element) {
+        return this.rows.set(index, element);
+    }
+
+    @Override
+    public boolean add(CSVRecord element) {
+        return this.rows.add(element);
+    }
+
+    @Override
+    public void add(int index, CSVRecord element) {
+        this.rows.add(index, element);
+    }
+
+    @Override
+    public CSVRecord remove(int index) {
+        return this.rows.remove(index);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return this.rows.remove(o);
+    }
+
+    @Override
+    public void clear() {
+        this.rows.clear();
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends CSVRecord> c) {
+        return this.rows.addAll(c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends CSVRecord> c) {
+        return this.rows.addAll(index, c);
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        for (int i = fromIndex; i < toIndex; i++) {
+            this.rows.remove(fromIndex);
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return this.rows.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return this.rows.retainAll(c);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super CSVRecord> filter) {
+        return this.rows.removeIf(filter);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return this.rows.contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return this.rows.indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return this.rows.lastIndexOf(o);
+    }
+
+    @Override
+    public Iterator<CSVRecord> iterator() {
+        return this.rows.iterator();
+    }
+
+    @Override
+    public ListIterator<CSVRecord> listIterator() {
+        return this.rows.listIterator();
+    }
+
+    @Override
+    public ListIterator<CSVRecord> listIterator(int index) {
+        return this.rows.listIterator(index);
+    }
+
+    @Override
+    public List<CSVRecord> subList(int fromIndex, int toIndex) {
+        return this.rows.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public Spliterator<CSVRecord> spliterator() {
+        return Spliterators.spliterator(this.rows, Spliterator.ORDERED);
+    }
+
+    @Override
+    public void forEach(Consumer<? super CSVRecord> action) {
+        for (int i = 0; i < this.rows.count; i++) {
+            action.accept(this.rows.get(i));
+        }
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<CSVRecord> operator) {
+        this.rows.replaceAll(operator);
+    }
+
+    @Override
+    public void sort(Comparator<? super CSVRecord> c) {
+        int n = this.rows.count;
+        CSVRecord[] views = new CSVRecord[n];
+        for (int i = 0; i < n; i++) {
+            views[i] = this.rows.get(i);
+        }
+        this.permute(IndexSorter.sortedRows(n, (a, b) -> c == null ? 0 : c.compare(views[a], views[b])));
+    }
+
+    @Override
+    public Object[] toArray() {
+        return this.rows.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return this.rows.toArray(a);
+    }
+
+    @Override
+    public void trimToSize() {
+        for (ColumnVector col : this.columns) {
+            col.trimToSize();
+        }
+    }
+
+    @Override
+    public void ensureCapacity(int minCapacity) {
+    }
+
+    /**
+     * Returns a copy of this array, with its own columns and a copy of the header.
+     * @return A new <code>ColumnarCSVArray</code> instance.
+     */
+    @Override
+    public Object clone() {
+        int[] all = new int[this.rows.count];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        return this.select(all, all.length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this.rows.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.rows.hashCode();
+    }
+
+    /**
+     * The rows of the array as a list of record views.
+     */
+    private final class Rows extends AbstractList<CSVRecord> {
+        private int count = 0;
+
+        @Override
+        public CSVRecord get(int index) {
+            this.checkIndex(index);
+            return new CSVRecord(ColumnarCSVArray.this.getHeader(), new RowValues(index), false);
+        }
+
+        @Override
+        public int size() {
+            return this.count;
+        }
+
+        @Override
+        public CSVRecord set(int index, CSVRecord element) {
+            this.checkIndex(index);
+            List<String> values = element.getValues();
+            this.checkRowSize(values);
+            List<String> oldValues = new ArrayList<>(this.get(index).getValues());
+            for (int c = 0; c < columns.size(); c++) {
+                try {
+                    setCell(index, c, values.get(c));
+                }
+                catch (ValueConversionException e) {
+                    for (int k = 0; k < c; k++) {
+                        setCell(index, k, oldValues.get(k));
+                    }
+                    throw e;
+                }
+            }
+            return new CSVRecord(ColumnarCSVArray.this.getHeader(), oldValues, false);
+        }
+
+        @Override
+        public void add(int index, CSVRecord element) {
+            if (index < 0 || index > this.count) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.count);
+            List<String> values = element.getValues();
+            this.checkRowSize(values);
+            this.insertRow(index, values, -1);
+        }
+
+        @Override
+        public CSVRecord remove(int index) {
+            this.checkIndex(index);
+            CSVRecord old = new CSVRecord(ColumnarCSVArray.this.getHeader(), new ArrayList<>(this.get(index).getValues()), false);
+            for (ColumnVector col : columns) {
+                col.remove(index);
+            }
+            this.count--;
+            this.changed();
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            for (ColumnVector col : columns) {
+                col.clear();
+            }
+            this.count = 0;
+            this.changed();
+        }
+
+        void insertRow(int index, List<String> values, long line) {
+            for (int c = 0; c < columns.size(); c++) {
+                try {
+                    columns.set(c, columns.get(c).insert(index, values.get(c)));
+                }
+                catch (NumberFormatException e) {
+                    for (int k = 0; k < c; k++) {
+                        columns.get(k).remove(index);
+                    }
+                    throw conversionError(c, values.get(c), line);
+                }
+            }
+            this.count++;
+            this.changed();
+        }
+
+        void changed() {
+            this.modCount++;
+        }
+
+        int modCount() {
+            return this.modCount;
+        }
+
+        void checkIndex(int index) {
+            if (index < 0 || index >= this.count) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.count);
+        }
+
+        void checkRowSize(List<String> values) {
+            if (values.size() != columns.size()) {
+                List<Object> headerAndData = new ArrayList<>();
+                headerAndData.add(ColumnarCSVArray.this.getHeaderList());
+                headerAndData.add(new ArrayList<>(values));
+                throw new CSVIntegrityException(CSVIntegrityException.HEADER_AND_RECORD_DATA_INCOMPATABLE, headerAndData);
+            }
+        }
+    }
+
+    /**
+     * Receives the fields of records from a parser and appends them to the end of the columns. If a record turns out
+     * to be invalid, the fields already appended for it are removed again.
+     */
+    private final class Appender implements CSVParser.FieldSink {
+        private final CSVParser parser;
+        private int fields = 0; //fields of the current record appended so far
+
+        Appender(CSVParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public void field(int column, char[] chars, int start, int end) {
+            if (column >= columns.size()) {
+                throw this.sizeError(new String(chars, start, end - start));
+            }
+            ColumnVector col = columns.get(column);
+            try {
+                columns.set(column, col.add(chars, start, end));
+            }
+            catch (NumberFormatException e) {
+                this.rollback();
+                throw conversionError(column, new String(chars, start, end - start), this.parser.getRecordLineNumber());
+            }
+            this.fields = column + 1;
+        }
+
+        void endRow() {
+            if (this.fields != columns.size()) throw this.sizeError(null);
+            this.fields = 0;
+            rows.count++;
+            rows.changed();
+        }
+
+        private CSVIntegrityException sizeError(String extraValue) {
+            ArrayList<String> values = new ArrayList<>();
+            for (int c = 0; c < this.fields; c++) {
+                values.add(columns.get(c).get(rows.count));
+            }
+            if (extraValue != null) values.add(extraValue);
+            this.rollback();
+            List<Object> headerAndData = new ArrayList<>();
+            headerAndData.add(getHeaderList());
+            headerAndData.add(values);
+            return new CSVIntegrityException(CSVIntegrityException.HEADER_AND_RECORD_DATA_INCOMPATABLE, headerAndData);
+        }
+
+        private void rollback() {
+            for (int c = 0; c < this.fields; c++) {
+                columns.get(c).remove(rows.count);
+            }
+            this.fields = 0;
+        }
+    }
+
+    /**
+     * The values of one row, read from and written to the columns. Records check for this class to read typed values
+     * without parsing them.
+     */
+    final class RowValues extends AbstractList<String> {
+        private final int row;
+
+        RowValues(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public String get(int index) {
+            return columns.get(index).get(this.row);
+        }
+
+        @Override
+        public String set(int index, String value) {
+            String old = columns.get(index).get(this.row);
+            setCell(this.row, index, value);
+            return old;
+        }
+
+        double getDouble(int index) {
+            return ColumnarCSVArray.this.getDouble(this.row, index);
+        }
+
+        long getLong(int index) {
+            return ColumnarCSVArray.this.getLong(this.row, index);
+        }
+
+        int getInt(int index) {
+            return ColumnarCSVArray.this.getInt(this.row, index);
+        }
+
+        @Override
+        public int size() {
+            return columns.size();
+        }
+    }
+}
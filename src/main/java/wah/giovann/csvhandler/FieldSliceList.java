@@ -0,0 +1,189 @@
+package wah.giovann.csvhandler;
+
+import wah.giovann.csvhandler.error.CSVParseException;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * The values of a record read with lazy values (see <code>CSVFileFormat.Builder.lazyValues</code>), held as slices of
+ * a character buffer shared with the records read before and after it. A <code>String</code> is only created for a
+ * value when it is read, and numbers are parsed straight from the buffer.
+ * <br><br>
+ * Values set on the record replace their slices. A buffer stays in memory as long as one of the records holding
+ * slices of it does.
+ */
+final class FieldSliceList extends AbstractList<String> {
+    private final char[] chars;
+    private final int[] bounds; //the start (inclusive) and end (exclusive) of each value in chars
+    private String[] values; //the values created or set so far
+
+    FieldSliceList(char[] chars, int[] bounds) {
+        this.chars = chars;
+        this.bounds = bounds;
+    }
+
+    @Override
+    public String get(int index) {
+        if (this.values == null) this.values = new String[this.size()];
+        String s = this.values[index];
+        if (s == null) {
+            int start = this.bounds[2 * index];
+            int end = this.bounds[2 * index + 1];
+            s = start == end ? "" : new String(this.chars, start, end - start);
+            this.values[index] = s;
+        }
+        return s;
+    }
+
+    @Override
+    public String set(int index, String value) {
+        String old = this.get(index);
+        this.values[index] = value;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return this.bounds.length / 2;
+    }
+
+    /**
+     * Returns the value at <code>index</code> without creating a <code>String</code> for it, unless one was already
+     * created or set.
+     */
+    CharSequence slice(int index) {
+        if (this.values != null && this.values[index] != null) return this.values[index];
+        return new Slice(this.chars, this.bounds[2 * index], this.bounds[2 * index + 1]);
+    }
+
+    boolean isEmpty(int index) {
+        if (this.values != null && this.values[index] != null) return this.values[index].isEmpty();
+        return this.bounds[2 * index] == this.bounds[2 * index + 1];
+    }
+
+    double getDouble(int index) {
+        if (this.values != null && this.values[index] != null) return Double.parseDouble(this.values[index]);
+        return NumberParser.parseDouble(this.chars, this.bounds[2 * index], this.bounds[2 * index + 1]);
+    }
+
+    long getLong(int index) {
+        if (this.values != null && this.values[index] != null) return Long.parseLong(this.values[index]);
+        return NumberParser.parseLong(this.chars, this.bounds[2 * index], this.bounds[2 * index + 1]);
+    }
+
+    int getInt(int index) {
+        if (this.values != null && this.values[index] != null) return Integer.parseInt(this.values[index]);
+        return NumberParser.parseInt(this.chars, this.bounds[2 * index], this.bounds[2 * index + 1]);
+    }
+
+    /**
+     * Passes the characters of every value to <code>sink</code>, in order, as a parser would.
+     */
+    void replay(CSVParser.FieldSink sink) throws CSVParseException {
+        for (int i = 0; i < this.size(); i++) {
+            sink.field(i, this.chars, this.bounds[2 * i], this.bounds[2 * i + 1]);
+        }
+    }
+
+    /**
+     * A read-only view of a range of a character buffer.
+     */
+    private static final class Slice implements CharSequence {
+        private final char[] chars;
+        private final int start;
+        private final int end;
+
+        Slice(char[] chars, int start, int end) {
+            this.chars = chars;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return this.end - this.start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= this.length()) throw new IndexOutOfBoundsException("index " + index + ", length " + this.length());
+            return this.chars[this.start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > this.length() || start > end) {
+                throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + this.length());
+            }
+            return new Slice(this.chars, this.start + start, this.start + end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(this.chars, this.start, this.length());
+        }
+    }
+
+    /**
+     * Receives the fields of records read by a parser into a shared character buffer, and hands out the values of each
+     * record as a <code>FieldSliceList</code>. A new buffer is started when a record does not fit in the current one.
+     */
+    static final class Slab implements CSVParser.FieldSink {
+        private static final int slabSize = 1 << 16;
+        private char[] chars = new char[slabSize];
+        private int used = 0; //the characters of the records already handed out
+        private int end = 0; //the end of the characters of the current record
+        private int[] bounds = new int[32];
+        private int fields = 0;
+
+        @Override
+        public void field(int column, char[] c, int start, int stop) {
+            if (column == 0) { //a new record; drop what is left of a record that failed to parse
+                this.end = this.used;
+                this.fields = 0;
+            }
+            int length = stop - start;
+            if (this.end + length > this.chars.length) this.newSlab(length);
+            System.arraycopy(c, start, this.chars, this.end, length);
+            if (2 * this.fields + 2 > this.bounds.length) this.bounds = Arrays.copyOf(this.bounds, this.bounds.length * 2);
+            this.bounds[2 * this.fields] = this.end;
+            this.bounds[2 * this.fields + 1] = this.end + length;
+            this.fields++;
+            this.end += length;
+        }
+
+        /**
+         * Moves the current record to a new buffer with room for <code>length</code> more characters.
+         */
+        private void newSlab(int length) {
+            int recordLength = this.end - this.used;
+            char[] next = new char[Math.max(slabSize, 2 * (recordLength + length))];
+            System.arraycopy(this.chars, this.used, next, 0, recordLength);
+            for (int i = 0; i < 2 * this.fields; i++) {
+                this.bounds[i] -= this.used;
+            }
+            this.chars = next;
+            this.used = 0;
+            this.end = recordLength;
+        }
+
+        /**
+         * Drops the fields of the current record.
+         */
+        void discardRow() {
+            this.end = this.used;
+            this.fields = 0;
+        }
+
+        /**
+         * Returns the values of the record just read.
+         */
+        FieldSliceList takeRow() {
+            FieldSliceList ret = new FieldSliceList(this.chars, Arrays.copyOf(this.bounds, 2 * this.fields));
+            this.used = this.end;
+            this.fields = 0;
+            return ret;
+        }
+    }
+}
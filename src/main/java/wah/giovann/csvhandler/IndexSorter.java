@@ -0,0 +1,129 @@
+package wah.giovann.csvhandler;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts arrays of row indices by a comparison of the rows they refer to, without boxing them. The sort is a stable
+ * merge sort, so rows that compare as equal keep their relative order. Large arrays can be sorted in parallel: the
+ * halves of each split are sorted as separate <code>ForkJoinPool</code> tasks, and merged once both are done.
+ */
+final class IndexSorter {
+    private static final int insertionSortThreshold = 32;
+    private static final int minParallelSortSize = 1 << 13; //below this size, a range is sorted in a single task
+
+    /**
+     * Compares two rows by their indices.
+     */
+    interface RowComparator {
+        int compare(int row1, int row2);
+    }
+
+    private IndexSorter() {
+    }
+
+    /**
+     * Sorts the first <code>count</code> row indices of <code>rows</code> by <code>c</code>.
+     */
+    static void sort(int[] rows, int count, RowComparator c) {
+        int[] buffer = new int[count];
+        mergeSort(rows, buffer, 0, count, c);
+    }
+
+    /**
+     * Returns the row indices from 0 (inclusive) to <code>count</code> (exclusive), sorted by <code>c</code>.
+     */
+    static int[] sortedRows(int count, RowComparator c) {
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = i;
+        }
+        sort(rows, count, c);
+        return rows;
+    }
+
+    /**
+     * Sorts the first <code>count</code> row indices of <code>rows</code> by <code>c</code>, in parallel in
+     * <code>pool</code>. The comparison must be safe to call from several threads at once. The result is the same as
+     * that of {@link #sort(int[], int, RowComparator)}.
+     */
+    static void parallelSort(int[] rows, int count, RowComparator c, ForkJoinPool pool) {
+        if (count < minParallelSortSize || pool.getParallelism() < 2) {
+            sort(rows, count, c);
+            return;
+        }
+        int[] buffer = new int[count];
+        pool.invoke(new SortTask(rows, buffer, 0, count, c));
+    }
+
+    private static void mergeSort(int[] a, int[] buffer, int from, int to, RowComparator c) {
+        if (to - from <= insertionSortThreshold) {
+            insertionSort(a, from, to, c);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(a, buffer, from, mid, c);
+        mergeSort(a, buffer, mid, to, c);
+        merge(a, buffer, from, mid, to, c);
+    }
+
+    /**
+     * Merges the sorted runs <code>[from, mid)</code> and <code>[mid, to)</code> of <code>a</code>.
+     */
+    static void merge(int[] a, int[] buffer, int from, int mid, int to, RowComparator c) {
+        if (c.compare(a[mid - 1], a[mid]) <= 0) return; //already in order
+        System.arraycopy(a, from, buffer, from, mid - from);
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to) {
+            //take from the left run on ties, to keep the sort stable
+            if (c.compare(a[j], buffer[i]) < 0) a[k++] = a[j++];
+            else a[k++] = buffer[i++];
+        }
+        while (i < mid) {
+            a[k++] = buffer[i++];
+        }
+    }
+
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int[] a;
+        private final int[] buffer;
+        private final int from;
+        private final int to;
+        private final RowComparator c;
+
+        SortTask(int[] a, int[] buffer, int from, int to, RowComparator c) {
+            this.a = a;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.c = c;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from < minParallelSortSize) {
+                mergeSort(this.a, this.buffer, this.from, this.to, this.c);
+                return;
+            }
+            int mid = (this.from + this.to) >>> 1;
+            invokeAll(new SortTask(this.a, this.buffer, this.from, mid, this.c),
+                    new SortTask(this.a, this.buffer, mid, this.to, this.c));
+            merge(this.a, this.buffer, this.from, mid, this.to, this.c);
+        }
+    }
+
+    private static void insertionSort(int[] a, int from, int to, RowComparator c) {
+        for (int i = from + 1; i < to; i++) {
+            int row = a[i];
+            int j = i - 1;
+            while (j >= from && c.compare(a[j], row) > 0) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = row;
+        }
+    }
+}
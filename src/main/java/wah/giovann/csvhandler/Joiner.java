@@ -0,0 +1,194 @@
+package wah.giovann.csvhandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+
+/**
+ * Joins the records of two <code>CSVArray</code>s with equal values in their key columns, for
+ * <code>CSVArray.join</code>.
+ * <br><br>
+ * When both arrays are already sorted by their key columns, compared as <code>String</code>s column by column, they are
+ * joined by a single merging pass over both. Otherwise the right array is grouped by its key values in a hash table,
+ * which each record of the left array probes. Both produce the same records in the same order.
+ */
+final class Joiner {
+    private final CSVArray left;
+    private final CSVArray right;
+    private final int[] leftKeys;
+    private final int[] rightKeys;
+    private final int type;
+    private final int[] rightValues; //the columns of the right array that are not key columns
+    private final CSVHeader header;
+    private final CSVArray result;
+    private boolean[] matched; //the right records joined to a left record, for an outer join
+
+    Joiner(CSVArray left, CSVArray right, int[] leftKeys, int[] rightKeys, int type) {
+        this.left = left;
+        this.right = right;
+        this.leftKeys = leftKeys;
+        this.rightKeys = rightKeys;
+        this.type = type;
+        int rightColumns = right.getHeader().totalColumns();
+        boolean[] isKey = new boolean[rightColumns];
+        for (int c : rightKeys) {
+            isKey[c] = true;
+        }
+        this.rightValues = new int[rightColumns - countTrue(isKey)];
+        int n = 0;
+        for (int c = 0; c < rightColumns; c++) {
+            if (!isKey[c]) this.rightValues[n++] = c;
+        }
+        this.header = this.joinedHeader();
+        this.result = new CSVArray(this.header);
+    }
+
+    private static int countTrue(boolean[] b) {
+        int ret = 0;
+        for (boolean x : b) {
+            if (x) ret++;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the header of the result: the columns of the left array followed by the columns of the right array that
+     * are not key columns. A right column whose name is already taken gets the first free name made of its name
+     * followed by <code>_2</code>, <code>_3</code>, and so on.
+     */
+    private CSVHeader joinedHeader() {
+        CSVHeader lh = this.left.getHeader();
+        CSVHeader rh = this.right.getHeader();
+        int total = lh.totalColumns() + this.rightValues.length;
+        if (lh.getIsDummyHeader() && rh.getIsDummyHeader()) return new CSVHeader(total);
+        ArrayList<String> names = new ArrayList<>(lh.getColumnsList());
+        HashSet<String> taken = new HashSet<>(names);
+        for (int c : this.rightValues) {
+            String name = rh.getColumnName(c);
+            String unique = name;
+            for (int suffix = 2; taken.contains(unique); suffix++) {
+                unique = name + "_" + suffix;
+            }
+            taken.add(unique);
+            names.add(unique);
+        }
+        return new CSVHeader(names);
+    }
+
+    /**
+     * Joins the arrays and returns the joined records.
+     */
+    CSVArray join() {
+        if (this.type == CSVArray.OUTER_JOIN) this.matched = new boolean[this.right.size()];
+        if (isSorted(this.left, this.leftKeys) && isSorted(this.right, this.rightKeys)) this.mergeJoin();
+        else this.hashJoin();
+        if (this.matched != null) {
+            for (int row = 0; row < this.matched.length; row++) {
+                if (!this.matched[row]) this.addRecord(-1, row);
+            }
+        }
+        return this.result;
+    }
+
+    private void hashJoin() {
+        LinkedHashMap<CSVGroupKey, int[]> groups = CSVGrouping.group(this.right, this.rightKeys).getGroups();
+        String[] values = new String[this.leftKeys.length];
+        CSVGroupKey probe = new CSVGroupKey(values, false);
+        for (int row = 0; row < this.left.size(); row++) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = this.left.valueAt(row, this.leftKeys[i]);
+            }
+            probe.reset(values);
+            int[] matches = groups.get(probe);
+            this.addMatches(row, matches, matches == null ? 0 : matches.length);
+        }
+    }
+
+    private void mergeJoin() {
+        int r = 0;
+        int rightSize = this.right.size();
+        int[] run = new int[16];
+        int runStart = -1; //the first right record of the run of records with the key of the previous left record
+        int runLength = 0;
+        for (int row = 0; row < this.left.size(); row++) {
+            if (runStart >= 0 && this.compareKeys(row, runStart) == 0) { //same key as the previous left record
+                this.addMatches(row, run, runLength);
+                continue;
+            }
+            while (r < rightSize && this.compareKeys(row, r) > 0) {
+                r++;
+            }
+            runStart = -1;
+            runLength = 0;
+            while (r < rightSize && this.compareKeys(row, r) == 0) {
+                if (runLength == run.length) run = Arrays.copyOf(run, runLength * 2);
+                run[runLength++] = r++;
+            }
+            if (runLength > 0) runStart = run[0];
+            this.addMatches(row, run, runLength);
+        }
+    }
+
+    /**
+     * Adds the joined records of the left record <code>row</code> and the first <code>count</code> right records in
+     * <code>matches</code>, or the left record alone if there are none and the join keeps unmatched left records.
+     */
+    private void addMatches(int row, int[] matches, int count) {
+        if (count == 0) {
+            if (this.type != CSVArray.INNER_JOIN) this.addRecord(row, -1);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            this.addRecord(row, matches[i]);
+            if (this.matched != null) this.matched[matches[i]] = true;
+        }
+    }
+
+    /**
+     * Adds a joined record of the left record <code>leftRow</code> and the right record <code>rightRow</code>; either
+     * may be -1 for a record with empty values. A record with no left record takes its left key values from the right
+     * record.
+     */
+    private void addRecord(int leftRow, int rightRow) {
+        ArrayList<String> values = new ArrayList<>(this.header.totalColumns());
+        int leftColumns = this.left.getHeader().totalColumns();
+        for (int c = 0; c < leftColumns; c++) {
+            values.add(leftRow >= 0 ? this.left.valueAt(leftRow, c) : "");
+        }
+        if (leftRow < 0) {
+            for (int i = 0; i < this.leftKeys.length; i++) {
+                values.set(this.leftKeys[i], this.right.valueAt(rightRow, this.rightKeys[i]));
+            }
+        }
+        for (int c : this.rightValues) {
+            values.add(rightRow >= 0 ? this.right.valueAt(rightRow, c) : "");
+        }
+        this.result.add(new CSVRecord(this.header, values, false));
+    }
+
+    /**
+     * Compares the key of the left record <code>leftRow</code> with that of the right record <code>rightRow</code>.
+     */
+    private int compareKeys(int leftRow, int rightRow) {
+        for (int i = 0; i < this.leftKeys.length; i++) {
+            int cmp = this.left.valueAt(leftRow, this.leftKeys[i]).compareTo(this.right.valueAt(rightRow, this.rightKeys[i]));
+            if (cmp != 0) return cmp;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns whether the records of <code>array</code> are in ascending order of their values in <code>keys</code>.
+     */
+    private static boolean isSorted(CSVArray array, int[] keys) {
+        for (int row = 1; row < array.size(); row++) {
+            for (int i = 0; i < keys.length; i++) {
+                int cmp = array.valueAt(row - 1, keys[i]).compareTo(array.valueAt(row, keys[i]));
+                if (cmp < 0) break;
+                if (cmp > 0) return false;
+            }
+        }
+        return true;
+    }
+}
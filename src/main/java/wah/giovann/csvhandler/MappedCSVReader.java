@@ -0,0 +1,397 @@
+package wah.giovann.csvhandler;
+
+import wah.giovann.csvhandler.error.CSVIntegrityException;
+import wah.giovann.csvhandler.error.CSVParseException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The <code>MappedCSVReader</code> class reads large local .csv files by memory-mapping them instead of streaming
+ * them through a <code>Reader</code>.
+ * <br><br>
+ * Delimiters, quotes and line ends are located directly in the mapped bytes, and each <code>CSVRecord</code> only
+ * stores the positions of its fields. A field's bytes are decoded into a <code>String</code> the first time the
+ * field is accessed, so values that are never read are never decoded. This requires an encoding in which these
+ * characters are always encoded as single ASCII bytes, i.e. UTF-8 or an ASCII-compatible single-byte character set.
+ * For any other encoding (such as UTF-16), and for formats that declare column types, whose values must all be
+ * parsed when the file is read, the file is read with a <code>CSVReader</code> instead.
+ * <br><br>
+ * The accepted syntax is that of <code>CSVReader</code>. Line breaks inside quoted fields are kept as they appear in
+ * the file. Records keep their part of the mapping alive until they are garbage collected.
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public class MappedCSVReader {
+    private static final long maxWindowSize = Integer.MAX_VALUE;
+    private CSVFileFormat format;
+
+    /**
+     *Creates a new <code>MappedCSVReader</code> instance that can read a .csv file based on the given input file format.
+     * @param inputFormat - the input file format
+     */
+    public MappedCSVReader(CSVFileFormat inputFormat) {
+        this.format = inputFormat;
+    }
+
+    /**
+     *Returns a <code>CSVArray</code> instance after mapping and parsing the contents of the <code>File</code> argument. The
+     * contents the file must conform to specification RFC 4180 in order to be properly parsed.
+     * @param file A reference to a file
+     * @return A <code>CSVArray</code> instance.
+     * @throws CSVParseException
+     * @throws IOException if the file cannot be read, or its character set is not supported
+     */
+    public CSVArray readCSV(File file) throws CSVParseException, IOException {
+        CSVReader fallback = new CSVReader(this.format);
+        String charSetName = fallback.getBestCharsetName(file);
+        if (!Charset.isSupported(charSetName)) throw new UnsupportedEncodingException(charSetName);
+        Charset charSet = Charset.forName(charSetName);
+        if (!isAsciiCompatible(charSet) || this.format.getDelimiter() > 0x7F || this.format.hasColumnTypes()
+                || this.format.hasSelectedColumns() || this.format.hasFilters()) {
+            try (BufferedReader reader = fallback.openReader(file)) {
+                return fallback.readCSV(reader);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return this.parse(channel, charSet);
+        }
+    }
+
+    private CSVArray parse(FileChannel channel, Charset charSet) throws CSVParseException, IOException {
+        long fileSize = channel.size();
+        if (fileSize == 0) return null;
+        ByteScanner scanner = new ByteScanner(this.format, charSet);
+        long windowStart = 0;
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, maxWindowSize));
+        boolean lastWindow = windowStart + window.limit() == fileSize;
+        int pos = 0;
+        CSVHeader header = null;
+        CSVArray ret = null;
+        while (true) {
+            int next = scanner.scanRecord(window, pos, lastWindow);
+            if (next == ByteScanner.INCOMPLETE) {
+                if (scanner.recordStart == 0) {
+                    throw new IOException("A record starting at byte " + windowStart + " does not fit into a single mapping.");
+                }
+                windowStart += scanner.recordStart;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(fileSize - windowStart, maxWindowSize));
+                lastWindow = windowStart + window.limit() == fileSize;
+                pos = 0;
+                continue;
+            }
+            if (next == ByteScanner.END) break;
+            pos = next;
+            if (header == null) {
+                if (this.format.getHasHeader()) {
+                    header = new CSVHeader(scanner.decodeAll(window));
+                    ret = new CSVArray(header);
+                    continue;
+                }
+                header = new CSVHeader(scanner.fieldCount); //dummy header
+                ret = new CSVArray(header);
+            }
+            MappedFieldList values = new MappedFieldList(window, scanner.copyBounds(), charSet, this.format.getTrimSpace());
+            if (values.size() != header.totalColumns()) {
+                List<Object> headerAndData = new ArrayList<>();
+                headerAndData.add(header.getColumnsList());
+                headerAndData.add(new ArrayList<>(values));
+                throw new CSVIntegrityException(CSVIntegrityException.HEADER_AND_RECORD_DATA_INCOMPATABLE, headerAndData);
+            }
+            ret.add(new CSVRecord(header, values, false));
+        }
+        return ret;
+    }
+
+    /**
+     * Returns whether the byte scanning readers can work on data in the given character set, i.e. whether it is UTF-8
+     * or a single-byte character set that encodes every ASCII character as the corresponding ASCII byte.
+     * @param charSet the character set
+     * @return <code>true</code> if ASCII characters can be matched as single bytes.
+     */
+    static boolean isAsciiCompatible(Charset charSet) {
+        if (charSet.equals(StandardCharsets.UTF_8) || charSet.equals(StandardCharsets.US_ASCII)) return true;
+        if (!charSet.canEncode()) return false;
+        CharsetEncoder encoder = charSet.newEncoder();
+        if (encoder.maxBytesPerChar() != 1.0f) return false;
+        char[] ascii = new char[0x80];
+        for (char c = 0; c < ascii.length; c++) {
+            ascii[c] = c;
+        }
+        byte[] encoded = new String(ascii).getBytes(charSet);
+        if (encoded.length != ascii.length) return false;
+        for (int i = 0; i < encoded.length; i++) {
+            if (encoded[i] != i) return false;
+        }
+        return true;
+    }
+
+    /**
+     *Returns the <code>CSVFileFormat</code> associated with this <code>MappedCSVReader</code>
+     * @return the input file format .
+     */
+    public CSVFileFormat getFormat() {
+        return this.format;
+    }
+
+    /**
+     *Sets the <code>CSVFileFormat</code> associated with this <code>MappedCSVReader</code>
+     * @param f the new format
+     */
+    public void setFormat(CSVFileFormat f) {
+        this.format = f;
+    }
+
+    /**
+     * Finds the fields of one record at a time in a mapped window. Field positions are collected in
+     * <code>bounds</code> as pairs of start and end offsets, where the end offset has its sign bit set if the field
+     * is quoted and contains escaped (doubled) quotes.
+     */
+    private static final class ByteScanner {
+        static final int INCOMPLETE = -1;
+        static final int END = -2;
+        private static final int ESCAPED = Integer.MIN_VALUE;
+        private static final int FIELD_START = 0;
+        private static final int UNQUOTED = 1;
+        private static final int QUOTED = 2;
+        private static final int QUOTE_IN_QUOTED = 3;
+        private static final int AFTER_QUOTED = 4;
+
+        private final byte delim;
+        private final Charset charSet;
+        private final boolean trim;
+        private int[] bounds = new int[32];
+        private int fieldCount;
+        private int recordStart;
+        private int lineNum = 1;
+
+        ByteScanner(CSVFileFormat format, Charset charSet) {
+            this.delim = (byte) format.getDelimiter();
+            this.charSet = charSet;
+            this.trim = format.getTrimSpace();
+        }
+
+        /**
+         * Scans the record starting at <code>pos</code>, skipping blank lines.
+         * @return the position after the record's line end, <code>INCOMPLETE</code> if the window ends before the
+         * record does, or <code>END</code> if there are no more records.
+         */
+        @SuppressWarnings("fallthrough")
+        int scanRecord(MappedByteBuffer buf, int pos, boolean lastWindow) throws CSVParseException {
+            int limit = buf.limit();
+            int startLine = this.lineNum;
+            int lines = 0;
+            int state = FIELD_START;
+            int fieldStart = pos;
+            int quoteEnd = pos;
+            boolean escaped = false;
+            this.fieldCount = 0;
+            this.recordStart = pos;
+            int i = pos;
+            while (i < limit) {
+                byte c = buf.get(i);
+                boolean lineEnd = c == '\n' || c == '\r';
+                if (lineEnd && c == '\r' && i + 1 == limit && !lastWindow) break; //can't tell \r from \r\n yet
+                int lineEndLength = (c == '\r' && i + 1 < limit && buf.get(i + 1) == '\n') ? 2 : 1;
+                switch (state) {
+                    case FIELD_START:
+                        if (c == this.delim) {
+                            this.addField(fieldStart, i, false);
+                            fieldStart = i + 1;
+                        }
+                        else if (lineEnd) {
+                            lines++;
+                            if (this.fieldCount == 0 && fieldStart == i) { //blank line
+                                fieldStart = i + lineEndLength;
+                                this.recordStart = fieldStart;
+                                startLine = this.lineNum + lines;
+                                i += lineEndLength;
+                                continue;
+                            }
+                            this.addField(fieldStart, i, false);
+                            this.lineNum += lines;
+                            return i + lineEndLength;
+                        }
+                        else if (c == '"') {
+                            state = QUOTED;
+                            fieldStart = i + 1;
+                            escaped = false;
+                        }
+                        else if (c != ' ' && c != '\t') {
+                            state = UNQUOTED;
+                        }
+                        break;
+                    case UNQUOTED:
+                        if (c == this.delim) {
+                            this.addField(fieldStart, i, false);
+                            fieldStart = i + 1;
+                            state = FIELD_START;
+                        }
+                        else if (lineEnd) {
+                            this.addField(fieldStart, i, false);
+                            this.lineNum += lines + 1;
+                            return i + lineEndLength;
+                        }
+                        else if (c == '"') {
+                            throw new CSVParseException(CSVParseException.UNEXPECTED_QUOTE, this.decodeRaw(buf, fieldStart, i + 1), startLine + lines);
+                        }
+                        break;
+                    case QUOTED:
+                        if (c == '"') {
+                            state = QUOTE_IN_QUOTED;
+                            quoteEnd = i;
+                        }
+                        else if (lineEnd) {
+                            lines++;
+                            i += lineEndLength;
+                            continue;
+                        }
+                        break;
+                    case QUOTE_IN_QUOTED:
+                        if (c == '"') {
+                            escaped = true;
+                            state = QUOTED;
+                            break;
+                        }
+                        //fall through: the previous quote closed the field
+                    case AFTER_QUOTED:
+                        if (c == this.delim) {
+                            this.addField(fieldStart, quoteEnd, escaped);
+                            fieldStart = i + 1;
+                            state = FIELD_START;
+                        }
+                        else if (lineEnd) {
+                            this.addField(fieldStart, quoteEnd, escaped);
+                            this.lineNum += lines + 1;
+                            return i + lineEndLength;
+                        }
+                        else if (c == ' ' || c == '\t') {
+                            state = AFTER_QUOTED;
+                        }
+                        else {
+                            throw new CSVParseException(CSVParseException.UNEXPECTED_TOKEN, this.decodeRaw(buf, fieldStart, i + 1), startLine + lines);
+                        }
+                        break;
+                }
+                i++;
+            }
+            if (!lastWindow) return INCOMPLETE;
+            this.lineNum += lines;
+            switch (state) {
+                case FIELD_START:
+                    if (this.fieldCount == 0 && fieldStart == limit) return END;
+                    this.addField(fieldStart, limit, false);
+                    break;
+                case UNQUOTED:
+                    this.addField(fieldStart, limit, false);
+                    break;
+                case QUOTED:
+                    throw new CSVParseException(CSVParseException.MISSING_CLOSING_QUOTE, this.decodeRaw(buf, fieldStart, limit), startLine + lines);
+                default:
+                    this.addField(fieldStart, quoteEnd, escaped);
+                    break;
+            }
+            return limit;
+        }
+
+        private void addField(int start, int end, boolean escaped) {
+            int n = this.fieldCount * 2;
+            if (n + 2 > this.bounds.length) this.bounds = Arrays.copyOf(this.bounds, this.bounds.length * 2);
+            this.bounds[n] = start;
+            this.bounds[n + 1] = escaped ? end | ESCAPED : end;
+            this.fieldCount++;
+        }
+
+        int[] copyBounds() {
+            return Arrays.copyOf(this.bounds, this.fieldCount * 2);
+        }
+
+        ArrayList<String> decodeAll(MappedByteBuffer buf) {
+            ArrayList<String> ret = new ArrayList<>(this.fieldCount);
+            for (int i = 0; i < this.fieldCount; i++) {
+                ret.add(decode(buf, this.bounds, i, this.charSet, this.trim));
+            }
+            return ret;
+        }
+
+        private String decodeRaw(MappedByteBuffer buf, int start, int end) {
+            byte[] bytes = new byte[end - start];
+            for (int i = start; i < end; i++) {
+                bytes[i - start] = buf.get(i);
+            }
+            return new String(bytes, this.charSet);
+        }
+    }
+
+    /**
+     * Decodes field <code>index</code> described by <code>bounds</code>, collapsing escaped quotes.
+     */
+    private static String decode(MappedByteBuffer buf, int[] bounds, int index, Charset charSet, boolean trim) {
+        int start = bounds[index * 2];
+        int end = bounds[index * 2 + 1];
+        boolean escaped = end < 0;
+        end &= Integer.MAX_VALUE;
+        byte[] bytes = new byte[end - start];
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            bytes[n++] = b;
+            if (escaped && b == '"') i++;
+        }
+        String s = new String(bytes, 0, n, charSet);
+        return trim ? s.trim() : s;
+    }
+
+    /**
+     * The values of a mapped record, decoded on first access.
+     */
+    private static final class MappedFieldList extends AbstractList<String> {
+        private final MappedByteBuffer buf;
+        private final int[] bounds;
+        private final Charset charSet;
+        private final boolean trim;
+        private String[] values;
+
+        MappedFieldList(MappedByteBuffer buf, int[] bounds, Charset charSet, boolean trim) {
+            this.buf = buf;
+            this.bounds = bounds;
+            this.charSet = charSet;
+            this.trim = trim;
+        }
+
+        @Override
+        public String get(int index) {
+            if (this.values == null) this.values = new String[this.size()];
+            String s = this.values[index];
+            if (s == null) {
+                s = decode(this.buf, this.bounds, index, this.charSet, this.trim);
+                this.values[index] = s;
+            }
+            return s;
+        }
+
+        @Override
+        public String set(int index, String value) {
+            String old = this.get(index);
+            this.values[index] = value;
+            return old;
+        }
+
+        @Override
+        public int size() {
+            return this.bounds.length / 2;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package wah.giovann.csvhandler;
+
+/**
+ * Parses numbers directly from a range of a <code>char</code> array, without creating a <code>String</code>.
+ * <br><br>
+ * The methods accept what <code>Integer.parseInt</code>, <code>Long.parseLong</code> and
+ * <code>Double.parseDouble</code> accept for ASCII input, and return the same values. Integers, and decimals in plain
+ * notation with at most 15 significant digits, are converted without allocating: such a decimal is an exact
+ * <code>long</code> mantissa divided by an exact power of ten, and a single division of two exact <code>double</code>s
+ * is correctly rounded.
+ * Anything else, such as exponents, longer decimals, or the other notations <code>Double.parseDouble</code> supports,
+ * falls back to <code>Double.parseDouble</code>.
+ */
+final class NumberParser {
+    private static final int maxFastDigits = 15;
+    private static final double[] powersOfTen = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private NumberParser() {
+    }
+
+    /**
+     * Parses the characters from <code>start</code> (inclusive) to <code>end</code> (exclusive) as an <code>int</code>.
+     * @throws NumberFormatException if they are not a valid <code>int</code>
+     */
+    static int parseInt(char[] c, int start, int end) {
+        long v = parseLong(c, start, end);
+        if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) throw error(c, start, end);
+        return (int) v;
+    }
+
+    /**
+     * Parses the characters from <code>start</code> (inclusive) to <code>end</code> (exclusive) as a <code>long</code>.
+     * @throws NumberFormatException if they are not a valid <code>long</code>
+     */
+    static long parseLong(char[] c, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (c[i] == '-' || c[i] == '+')) {
+            negative = c[i] == '-';
+            i++;
+        }
+        if (i == end) throw error(c, start, end);
+        //accumulate negatively, as Long.MIN_VALUE has no positive counterpart
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplicationLimit = limit / 10;
+        long v = 0;
+        for (; i < end; i++) {
+            int digit = c[i] - '0';
+            if (digit < 0 || digit > 9) throw error(c, start, end);
+            if (v < multiplicationLimit) throw error(c, start, end);
+            v *= 10;
+            if (v < limit + digit) throw error(c, start, end);
+            v -= digit;
+        }
+        return negative ? v : -v;
+    }
+
+    /**
+     * Parses the characters from <code>start</code> (inclusive) to <code>end</code> (exclusive) as a <code>double</code>.
+     * @throws NumberFormatException if they are not a valid <code>double</code>
+     */
+    static double parseDouble(char[] c, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (c[i] == '-' || c[i] == '+')) {
+            negative = c[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0; //significant digits in the mantissa
+        int fractionDigits = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            char ch = c[i];
+            if (ch >= '0' && ch <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && ch == '0') {
+                    if (seenPoint) fractionDigits++; //leading zeros are not significant
+                    continue;
+                }
+                if (++digits > maxFastDigits) return slowParseDouble(c, start, end);
+                mantissa = mantissa * 10 + (ch - '0');
+                if (seenPoint) fractionDigits++;
+            }
+            else if (ch == '.' && !seenPoint) {
+                seenPoint = true;
+            }
+            else {
+                return slowParseDouble(c, start, end); //exponents, suffixes, hexadecimal, NaN, Infinity or errors
+            }
+        }
+        if (!seenDigit || fractionDigits >= powersOfTen.length) return slowParseDouble(c, start, end);
+        double v = fractionDigits == 0 ? mantissa : mantissa / powersOfTen[fractionDigits];
+        return negative ? -v : v;
+    }
+
+    private static double slowParseDouble(char[] c, int start, int end) {
+        return Double.parseDouble(new String(c, start, end - start));
+    }
+
+    private static NumberFormatException error(char[] c, int start, int end) {
+        return new NumberFormatException("For input string: \"" + new String(c, start, end - start) + "\"");
+    }
+}
@@ -0,0 +1,263 @@
+package wah.giovann.csvhandler;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import wah.giovann.csvhandler.error.CSVParseException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The <code>ParallelCSVReader</code> class parses a single large .csv file on several cores at once.
+ * <br><br>
+ * The file is split into byte ranges. Each range is first scanned in parallel for its quote count and for its first
+ * line ends, which is enough to work out, sequentially, where every range really begins: at the first line end
+ * that is not inside a quoted field, whatever the quote parity at the start of the range turns out to be. The
+ * ranges are then parsed in parallel by the same parser as <code>CSVReader</code>, and the results are stitched
+ * together in file order into a single <code>CSVArray</code>. The header, if the input format specifies one, is
+ * taken from the first range only. If the input format declares column types, the result is a
+ * <code>ColumnarCSVArray</code>.
+ * <br><br>
+ * Like <code>MappedCSVReader</code>, this requires UTF-8 or an ASCII-compatible single-byte character set. Other
+ * files, and files too small to be worth splitting, are read with a <code>CSVReader</code>.
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public class ParallelCSVReader {
+    private static final long minChunkSize = 1024 * 1024;
+    private static final int scanBufferSize = 64 * 1024;
+    private CSVFileFormat format;
+    private ForkJoinPool pool;
+
+    /**
+     *Creates a new <code>ParallelCSVReader</code> instance that reads files of the given input format using the common
+     * <code>ForkJoinPool</code>.
+     * @param inputFormat - the input file format
+     */
+    public ParallelCSVReader(CSVFileFormat inputFormat) {
+        this(inputFormat, ForkJoinPool.commonPool());
+    }
+
+    /**
+     *Creates a new <code>ParallelCSVReader</code> instance that reads files of the given input format using the given
+     * <code>ForkJoinPool</code>.
+     * @param inputFormat - the input file format
+     * @param pool - the pool the file is parsed on
+     */
+    public ParallelCSVReader(CSVFileFormat inputFormat, ForkJoinPool pool) {
+        this.format = inputFormat;
+        this.pool = pool;
+    }
+
+    /**
+     *Returns a <code>CSVArray</code> instance after parsing the contents of the <code>File</code> argument in parallel. The
+     * records of the array are in the same order as in the file. The contents the file must conform to specification
+     * RFC 4180 in order to be properly parsed.
+     * @param file A reference to a file
+     * @return A <code>CSVArray</code> instance.
+     * @throws CSVParseException
+     * @throws IOException if the file cannot be read, or its character set is not supported
+     */
+    public CSVArray readCSV(File file) throws CSVParseException, IOException {
+        CSVReader fallback = new CSVReader(this.format);
+        String charSetName = fallback.getBestCharsetName(file);
+        if (!Charset.isSupported(charSetName)) throw new UnsupportedEncodingException(charSetName);
+        Charset charSet = Charset.forName(charSetName);
+        long size = file.length();
+        long chunkSize = Math.max(minChunkSize, size / (this.pool.getParallelism() * 4L) + 1);
+        if (size <= chunkSize || !MappedCSVReader.isAsciiCompatible(charSet) || this.format.getDelimiter() > 0x7F
+                || this.format.hasSelectedColumns() || this.format.hasFilters()) {
+            try (BufferedReader reader = fallback.openReader(file)) {
+                return fallback.readCSV(reader);
+            }
+        }
+        List<long[]> ranges = this.findRanges(file, size, chunkSize);
+        List<Future<List<ArrayList<String>>>> parsed = new ArrayList<>();
+        for (long[] range : ranges) {
+            parsed.add(this.pool.submit(() -> parseRange(file, charSet, range[0], range[1], (int) range[2])));
+        }
+        CSVHeader header = null;
+        CSVArray ret = null;
+        for (Future<List<ArrayList<String>>> f : parsed) {
+            for (ArrayList<String> row : getResult(f)) {
+                if (header == null) {
+                    if (this.format.getHasHeader()) {
+                        header = new CSVHeader(row);
+                        ret = this.format.hasColumnTypes() ? new ColumnarCSVArray(header, this.format) : new CSVArray(header);
+                        continue;
+                    }
+                    header = new CSVHeader(row.size()); //dummy header
+                    ret = this.format.hasColumnTypes() ? new ColumnarCSVArray(header, this.format) : new CSVArray(header);
+                }
+                if (ret instanceof ColumnarCSVArray) ((ColumnarCSVArray) ret).appendRow(row, -1);
+                else ret.add(new CSVRecord(header, row, false));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Splits the file into ranges that each begin at the start of a record, returned as triples of start offset,
+     * end offset and the line number of the start.
+     */
+    private List<long[]> findRanges(File file, long size, long chunkSize) throws CSVParseException, IOException {
+        int chunks = (int) ((size + chunkSize - 1) / chunkSize);
+        List<Future<ChunkScan>> scans = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int k = 0; k < chunks; k++) {
+                long start = k * chunkSize;
+                long end = Math.min(size, start + chunkSize);
+                scans.add(this.pool.submit(() -> ChunkScan.scan(channel, start, end, size)));
+            }
+            List<long[]> ranges = new ArrayList<>();
+            long rangeStart = 0;
+            long rangeLine = 1;
+            long lines = 0; //line ends before the current chunk
+            int parity = 0; //quote parity at the start of the current chunk
+            for (int k = 0; k < chunks; k++) {
+                ChunkScan scan = getResult(scans.get(k));
+                if (k > 0 && scan.boundary[parity] >= 0) {
+                    ranges.add(new long[]{rangeStart, scan.boundary[parity], rangeLine});
+                    rangeStart = scan.boundary[parity];
+                    rangeLine = lines + scan.linesBeforeBoundary[parity] + 1;
+                }
+                lines += scan.lineEnds;
+                parity = (int) ((parity + scan.quotes) % 2);
+            }
+            ranges.add(new long[]{rangeStart, size, rangeLine});
+            return ranges;
+        }
+    }
+
+    private List<ArrayList<String>> parseRange(File file, Charset charSet, long start, long end, int firstLine) throws CSVParseException, IOException {
+        List<ArrayList<String>> rows = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             CSVParser parser = new CSVParser(new BufferedReader(new InputStreamReader(new BoundedInputStream(
+                     Channels.newInputStream(channel.position(start)), end - start), charSet)), this.format, firstLine)) {
+            ArrayList<String> row = new ArrayList<>();
+            while (parser.readRow(row)) {
+                rows.add(row);
+                row = new ArrayList<>(row.size());
+            }
+        }
+        return rows;
+    }
+
+    private static <T> T getResult(Future<T> f) throws CSVParseException, IOException {
+        try {
+            return f.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause != null && cause.getClass() == RuntimeException.class && cause.getCause() != null) {
+                cause = cause.getCause(); //ForkJoinPool wraps checked exceptions thrown by a Callable
+            }
+            if (cause instanceof CSVParseException) throw (CSVParseException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     *Returns the <code>CSVFileFormat</code> associated with this <code>ParallelCSVReader</code>
+     * @return the input file format .
+     */
+    public CSVFileFormat getFormat() {
+        return this.format;
+    }
+
+    /**
+     *Sets the <code>CSVFileFormat</code> associated with this <code>ParallelCSVReader</code>
+     * @param f the new format
+     */
+    public void setFormat(CSVFileFormat f) {
+        this.format = f;
+    }
+
+    /**
+     * The result of scanning one chunk of the file. For each possible quote parity at the start of the chunk,
+     * <code>boundary</code> holds the offset just after the first line end that would be outside of quotes (or -1 if
+     * there is none), and <code>linesBeforeBoundary</code> the number of line ends up to and including it.
+     */
+    private static final class ChunkScan {
+        final long[] boundary = {-1, -1};
+        final long[] linesBeforeBoundary = {0, 0};
+        long quotes = 0;
+        long lineEnds = 0;
+
+        static ChunkScan scan(FileChannel channel, long start, long end, long size) throws IOException {
+            ChunkScan ret = new ChunkScan();
+            ByteBuffer bb = ByteBuffer.allocate(scanBufferSize);
+            byte[] bytes = bb.array();
+            long offset = start;
+            boolean lastCR = false;
+            if (start > 0) { //a line feed completing a CRLF from the previous chunk is not a line end of its own
+                ByteBuffer one = ByteBuffer.allocate(1);
+                channel.read(one, start - 1);
+                lastCR = one.get(0) == '\r';
+            }
+            while (offset < end) {
+                bb.clear();
+                bb.limit((int) Math.min(bytes.length, end - offset));
+                int n = channel.read(bb, offset);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    byte b = bytes[i];
+                    if (b == '"') {
+                        ret.quotes++;
+                    }
+                    else if (b == '\n' || b == '\r') {
+                        if (b == '\n' && lastCR) {
+                            lastCR = false;
+                            continue;
+                        }
+                        ret.lineEnds++;
+                        lastCR = b == '\r';
+                        long after = offset + i + 1;
+                        if (lastCR) { //the boundary of a CRLF is after the line feed
+                            if (after == size) {
+                                ret.mark(after);
+                                continue;
+                            }
+                            ByteBuffer one = ByteBuffer.allocate(1);
+                            if (i + 1 < n) one.put(0, bytes[i + 1]);
+                            else channel.read(one, after);
+                            if (one.get(0) == '\n') after++;
+                        }
+                        ret.mark(after);
+                        continue;
+                    }
+                    lastCR = false;
+                }
+                offset += n;
+            }
+            return ret;
+        }
+
+        private void mark(long after) {
+            int p = (int) (this.quotes % 2);
+            if (this.boundary[p] < 0) {
+                this.boundary[p] = after;
+                this.linesBeforeBoundary[p] = this.lineEnds;
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package wah.giovann.csvhandler;
+
+import wah.giovann.csvhandler.error.CSVParseException;
+import wah.giovann.csvhandler.error.ValueConversionException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Reads the records of a parser that pass the filters of the input format (see
+ * <code>CSVFileFormat.Builder.filter</code>).
+ * <br><br>
+ * The fields of each record are collected as slices of a shared character buffer. Field filters are checked on the
+ * characters of their field as soon as it is parsed: once one fails, the remaining fields of the record are parsed past
+ * without being collected. Records that pass every field filter are then checked by the record filters. No value of a
+ * dropped record is created, except those read by the record filters.
+ */
+final class RowFilter implements CSVParser.FieldSink {
+    private final CSVParser parser;
+    private final CSVHeader header;
+    private final CSVFieldFilter[][] fieldFilters; //the field filters on each column, or null
+    private final List<Predicate<? super CSVRecord>> recordFilters;
+    private final FieldSliceList.Slab slab = new FieldSliceList.Slab();
+    private boolean rejected;
+    private int fields;
+
+    /**
+     * Creates a filter for the records read by <code>parser</code> after the header, whose columns are those of
+     * <code>h</code>.
+     * @throws ArrayIndexOutOfBoundsException if the column of a field filter does not exist
+     */
+    RowFilter(CSVParser parser, CSVHeader h, CSVFileFormat format) {
+        this.parser = parser;
+        this.header = h;
+        this.fieldFilters = new CSVFieldFilter[h.totalColumns()][];
+        for (CSVFieldFilter f : format.getFieldFilters()) {
+            int c = h.indexOfColumn(f.getColumn());
+            if (c < 0) throw new ArrayIndexOutOfBoundsException("No column named \""+f.getColumn()+"\" exists in the input.");
+            CSVFieldFilter[] filters = this.fieldFilters[c];
+            if (filters == null) filters = new CSVFieldFilter[0];
+            filters = Arrays.copyOf(filters, filters.length + 1);
+            filters[filters.length - 1] = f;
+            this.fieldFilters[c] = filters;
+        }
+        this.recordFilters = format.getRecordFilters();
+    }
+
+    @Override
+    public void field(int column, char[] chars, int start, int end) {
+        if (this.rejected) return;
+        this.fields = column + 1;
+        if (!this.passes(column, chars, start, end)) {
+            this.rejected = true;
+            this.slab.discardRow();
+            return;
+        }
+        this.slab.field(column, chars, start, end);
+    }
+
+    private boolean passes(int column, char[] chars, int start, int end) {
+        if (column >= this.fieldFilters.length || this.fieldFilters[column] == null) return true;
+        for (CSVFieldFilter f : this.fieldFilters[column]) {
+            try {
+                if (!f.test(chars, start, end)) return false;
+            }
+            catch (NumberFormatException e) {
+                throw new ValueConversionException(ValueConversionException.DOUBLE, new String(chars, start, end - start),
+                        this.parser.getRecordLineNumber(), column);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the values of the next record that passes the filters, or <code>null</code> at the end of the input.
+     */
+    FieldSliceList next() throws CSVParseException, IOException {
+        while (true) {
+            //reset before reading, since a short record may have none of the selected columns and never reach field
+            this.rejected = false;
+            this.fields = 0;
+            this.slab.discardRow();
+            if (!this.parser.readRow(this)) return null;
+            if (this.rejected || !this.passesMissing(this.fields)) {
+                this.slab.discardRow();
+                continue;
+            }
+            FieldSliceList values = this.slab.takeRow();
+            if (values.size() == this.header.totalColumns() && !this.passesRecordFilters(values)) continue;
+            return values;
+        }
+    }
+
+    /**
+     * Returns whether a record given as a list of values, such as the first record of a file without a header, passes
+     * the filters.
+     */
+    boolean accepts(ArrayList<String> values) {
+        for (int c = 0; c < values.size(); c++) {
+            char[] chars = values.get(c).toCharArray();
+            if (!this.passes(c, chars, 0, chars.length)) return false;
+        }
+        return this.passesMissing(values.size()) && this.passesRecordFilters(values);
+    }
+
+    /**
+     * Checks the field filters of the columns a record with only <code>fields</code> values has no value for, as if
+     * they were empty.
+     */
+    private boolean passesMissing(int fields) {
+        for (int c = fields; c < this.fieldFilters.length; c++) {
+            if (!this.passes(c, new char[0], 0, 0)) return false;
+        }
+        return true;
+    }
+
+    private boolean passesRecordFilters(List<String> values) {
+        if (this.recordFilters.isEmpty()) return true;
+        CSVRecord r = new CSVRecord(this.header, values, false);
+        for (Predicate<? super CSVRecord> p : this.recordFilters) {
+            if (!p.test(r)) return false;
+        }
+        return true;
+    }
+
+    CSVParser getParser() {
+        return this.parser;
+    }
+}
@@ -0,0 +1,28 @@
+package wah.giovann.csvhandler.error;
+
+/**
+ * Wraps a <code>CSVParseException</code> with an unchecked exception. Thrown by the streaming APIs of
+ * <code>CSVReader</code>, where a checked exception cannot pass through <code>Iterator.next()</code>.
+ * @author Giovann Wah
+ * @version 1.0
+ */
+public class UncheckedCSVParseException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedCSVParseException(CSVParseException cause) {
+        super(cause);
+    }
+
+    public String getMessage() {
+        return this.getCause().getMessage();
+    }
+
+    /**
+     * Returns the cause of this exception.
+     * @return the <code>CSVParseException</code> which is the cause of this exception.
+     */
+    @Override
+    public CSVParseException getCause() {
+        return (CSVParseException) super.getCause();
+    }
+}
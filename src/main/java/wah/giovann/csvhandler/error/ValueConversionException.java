@@ -21,6 +21,8 @@ public class ValueConversionException extends RuntimeException {
     private String key;
     private int index;
     private CSVRecord record;
+    private String value;
+    private long line;
 
     public ValueConversionException (int err, String k, CSVRecord r) {
         this.errorCode = err;
@@ -36,6 +38,23 @@ public class ValueConversionException extends RuntimeException {
         this.key = null;
     }
 
+    /**
+     * Creates an exception for a value that was converted before it became part of a <code>CSVRecord</code>, such as
+     * a value of a typed column.
+     * @param err the data type the value could not be converted to
+     * @param v the value
+     * @param l the line of the input the value was read from, or -1 if it is unknown
+     * @param i the column index of the value
+     */
+    public ValueConversionException (int err, String v, long l, int i) {
+        this.errorCode = err;
+        this.value = v;
+        this.line = l;
+        this.index = i;
+        this.key = null;
+        this.record = null;
+    }
+
     public String getMessage() {
         String err = "";
         switch ( this.errorCode ) {
@@ -65,6 +84,9 @@ public class ValueConversionException extends RuntimeException {
                 break;
         }
 
+        if (this.record == null) {
+            return "The value '"+this.value+"' in column "+this.index+((this.line >= 0)?" at line "+this.line:"")+" could not be converted to data type "+err+".";
+        }
         return "The data contained in field '"+((this.key!=null)?this.key:this.index)+"' could not be converted to data type "+err+".\nCSVRecord: " +record.toString();
     }
 }
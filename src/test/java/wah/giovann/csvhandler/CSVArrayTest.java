@@ -0,0 +1,45 @@
+package wah.giovann.csvhandler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CSVArrayTest {
+    private static final String data = "name,amount\nb,2\n,10\na,1.5\n,3\nb,-1\nc,\n";
+
+    /**
+     * The legacy overloads sort alphanumeric values in their natural <code>String</code> order, as a stable sort
+     * comparing <code>String</code>s does, so empty values come first in ascending order and last in descending order.
+     */
+    @Test
+    public void legacySortByKeepsNaturalStringOrder() throws Exception {
+        for (boolean ascending : new boolean[]{true, false}) {
+            CSVArray array = new CSVReader(CSVFileFormat.DEFAULT_FORMAT).readCSV(data);
+            List<List<String>> expected = TestFiles.values(array);
+            Comparator<List<String>> byName = Comparator.comparing(r -> r.get(0));
+            expected.sort(ascending ? byName : byName.reversed());
+            array.sortBy("name", false, ascending);
+            assertEquals(expected, TestFiles.values(array));
+        }
+    }
+
+    @Test
+    public void sortKeyPlacesEmptyValuesLast() throws Exception {
+        CSVArray array = new CSVReader(CSVFileFormat.DEFAULT_FORMAT).readCSV(data);
+        array.sortBy(new CSVSortKey.Builder().column("name", false, true).build());
+        List<String> names = new ArrayList<>();
+        for (CSVRecord r : array) {
+            names.add(r.get("name"));
+        }
+        assertEquals("[a, b, b, c, , ]", names.toString());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void legacyNumericSortByThrowsNumberFormatException() throws Exception {
+        new CSVReader(CSVFileFormat.DEFAULT_FORMAT).readCSV(data).sortBy("amount", true, true);
+    }
+}
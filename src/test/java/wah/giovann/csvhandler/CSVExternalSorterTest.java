@@ -0,0 +1,57 @@
+package wah.giovann.csvhandler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+
+public class CSVExternalSorterTest {
+    private static final int rows = 20000;
+    private static final CSVFileFormat format = new CSVFileFormat.Builder().characterSetName("UTF-8").build();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Every record of the generated file is estimated at more than 256 bytes, so a budget of 16KB spills runs of at
+     * most 64 records: over 300 runs, which also takes more than one merge pass. The key has many ties, which must
+     * keep their order from the input, and values holding line ends, which must survive the run files.
+     */
+    @Test
+    public void sortsLikeSortByWithSpilledRuns() throws Exception {
+        File input = folder.newFile("input.csv");
+        TestFiles.write(input, rows, 3);
+        File runs = folder.newFolder("runs");
+        File output = new File(folder.getRoot(), "output.csv");
+        CSVSortKey key = new CSVSortKey.Builder()
+                .column("name", false, true)
+                .column("note", false, false)
+                .build();
+        CSVExternalSorter sorter = new CSVExternalSorter(format, 16 * 1024);
+        sorter.setTempDirectory(runs);
+        sorter.sort(input, output.getPath(), key);
+
+        CSVArray expected = new CSVReader(format).readCSV(input);
+        expected.sortBy(key);
+        CSVArray sorted = new CSVReader(format).readCSV(output);
+        assertEquals(expected.getHeaderList(), sorted.getHeaderList());
+        assertEquals(TestFiles.values(expected), TestFiles.values(sorted));
+        assertEquals("run files left behind", 0, runs.list().length);
+    }
+
+    @Test
+    public void sortsInMemoryWithinBudget() throws Exception {
+        File input = folder.newFile("input.csv");
+        TestFiles.write(input, 1000, 4);
+        File output = new File(folder.getRoot(), "output.csv");
+        CSVSortKey key = new CSVSortKey.Builder().column("amount", true, false).build();
+        new CSVExternalSorter(format).sort(input, output.getPath(), key);
+
+        CSVArray expected = new CSVReader(format).readCSV(input);
+        expected.sortBy(key);
+        assertEquals(TestFiles.values(expected), TestFiles.values(new CSVReader(format).readCSV(output)));
+    }
+}
@@ -0,0 +1,76 @@
+package wah.giovann.csvhandler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CSVFollowerTest {
+    private static final int rows = 2000;
+    private static final CSVFileFormat format = new CSVFileFormat.Builder().characterSetName("UTF-8").build();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Appends a generated file a piece at a time, split once somewhere inside every record and between the carriage
+     * return and line feed of every CRLF, both those ending records and those inside quoted values, and polls after
+     * every append. The records polled must be those <code>readCSV</code> reads from the whole file.
+     */
+    @Test
+    public void pollsAppendedPiecesLikeReadCSV() throws Exception {
+        File source = folder.newFile("source.csv");
+        long[] starts = TestFiles.write(source, rows, 5);
+        byte[] bytes = Files.readAllBytes(source.toPath());
+
+        TreeSet<Integer> splits = new TreeSet<>();
+        Random random = new Random(6);
+        for (int i = 0; i < rows; i++) {
+            int start = (int) starts[i];
+            int end = i + 1 < rows ? (int) starts[i + 1] : bytes.length;
+            splits.add(start + 1 + random.nextInt(end - start - 1));
+        }
+        int crlfSplits = 0;
+        for (int i = 0; i + 1 < bytes.length; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+                splits.add(i + 1);
+                crlfSplits++;
+            }
+        }
+        splits.add(bytes.length);
+        assertTrue(crlfSplits > rows / 2);
+
+        File file = new File(folder.getRoot(), "followed.csv");
+        CSVFollower follower = new CSVReader(format).follow(file);
+        List<CSVRecord> polled = new ArrayList<>(follower.poll());
+        int written = 0;
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (int split : splits) {
+                out.write(bytes, written, split - written);
+                out.flush();
+                written = split;
+                polled.addAll(follower.poll());
+            }
+        }
+        assertEquals(bytes.length, follower.getOffset());
+
+        CSVArray expected = new CSVReader(format).readCSV(source);
+        List<List<String>> values = new ArrayList<>();
+        for (CSVRecord r : polled) {
+            values.add(r.getValues());
+        }
+        assertEquals(expected.getHeaderList(), follower.getHeaderList());
+        assertEquals(TestFiles.values(expected), values);
+    }
+}
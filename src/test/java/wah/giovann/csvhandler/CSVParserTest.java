@@ -0,0 +1,60 @@
+package wah.giovann.csvhandler;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CSVParserTest {
+    private static final int rows = 200000;
+    private static final double minMBPerSecond = 20; //about 90MB/s on one core of a current machine
+    private static final int warmupRuns = 3;
+    private static final int measuredRuns = 5;
+
+    /**
+     * Parses an 8MB generated file held in memory, so that only the parser is measured, and checks the fastest of a
+     * few runs after warming up against a conservative floor.
+     */
+    @Test
+    public void parsesAtLeastMinimumThroughput() throws Exception {
+        File file = File.createTempFile("csvparsertest", ".csv");
+        String contents;
+        try {
+            TestFiles.write(file, rows, 2);
+            contents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        }
+        finally {
+            file.delete();
+        }
+        double mb = contents.getBytes(StandardCharsets.UTF_8).length / (1024.0 * 1024.0);
+        for (int i = 0; i < warmupRuns; i++) {
+            parseAll(contents);
+        }
+        double best = 0;
+        for (int i = 0; i < measuredRuns; i++) {
+            long start = System.nanoTime();
+            parseAll(contents);
+            best = Math.max(best, mb / ((System.nanoTime() - start) / 1e9));
+        }
+        assertTrue("CSVParser read " + (long) best + "MB/s", best >= minMBPerSecond);
+    }
+
+    private static void parseAll(String contents) throws Exception {
+        int records = 0;
+        try (CSVParser parser = new CSVParser(new BufferedReader(new StringReader(contents)), CSVFileFormat.DEFAULT_FORMAT)) {
+            ArrayList<String> row = new ArrayList<>();
+            while (parser.readRow(row)) {
+                assertEquals(4, row.size());
+                records++;
+            }
+        }
+        assertEquals(rows + 1, records);
+    }
+}
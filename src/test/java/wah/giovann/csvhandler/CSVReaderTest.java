@@ -0,0 +1,104 @@
+package wah.giovann.csvhandler;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class CSVReaderTest {
+    private static final int rows = 100000;
+    private static final double maxBytesAllocatedPerMB = 10 * 1024 * 1024; //about 7.4MB, most of it the returned array
+    private static final CSVFileFormat format = new CSVFileFormat.Builder().characterSetName("UTF-8").build();
+    private static final int seeksPerKind = 300;
+    private static final int recordsCheckedPerSeek = 3;
+    private static File file;
+    private static long[] starts; //the byte offset of each record
+
+    @BeforeClass
+    public static void writeFile() throws IOException {
+        file = File.createTempFile("csvreadertest", ".csv");
+        starts = TestFiles.write(file, rows, 1);
+    }
+
+    @AfterClass
+    public static void deleteFile() {
+        file.delete();
+    }
+
+    /**
+     * readCSV(File) decodes the file straight from a FileChannel. Copying the whole file into memory before parsing it,
+     * as it used to, adds about 4 bytes allocated per input byte.
+     */
+    @Test
+    public void readCSVAllocatesLittleMoreThanItsResult() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        CSVReader reader = new CSVReader(format);
+        reader.readCSV(file); //loads the classes involved
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        CSVArray array = reader.readCSV(file);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertNotNull(array);
+        assertEquals(rows, array.size());
+        double perMB = allocated / (file.length() / (1024.0 * 1024.0));
+        assertTrue("readCSV(File) allocated " + (long) perMB + " bytes per MB read", perMB < maxBytesAllocatedPerMB);
+    }
+
+    /**
+     * iterator(File, long) must start at the first record that starts at or after the offset, as read by
+     * readCSV(File). Besides random offsets, the offsets tried include every kind of position the scan for a record
+     * start has to get right: record starts, the line feed of a CRLF, and the lines inside quoted values holding line
+     * ends, none of which look like records here.
+     */
+    @Test
+    public void iteratorFromByteOffsetMatchesReadCSV() throws Exception {
+        List<List<String>> records = TestFiles.values(new CSVReader(format).readCSV(file));
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Random random = new Random(7);
+        List<Long> offsets = new ArrayList<>(Arrays.asList(1L, 5L, starts[0], bytes.length - 1L, (long) bytes.length, bytes.length + 10L));
+        List<Long> afterCR = new ArrayList<>();
+        List<Long> insideQuotes = new ArrayList<>();
+        for (int i = 1; i < bytes.length; i++) {
+            if (bytes[i] == '\n' && bytes[i - 1] == '\r') afterCR.add((long) i);
+            if ((bytes[i - 1] == '\n' || (bytes[i - 1] == '\r' && bytes[i] != '\n')) && Arrays.binarySearch(starts, i) < 0) {
+                insideQuotes.add((long) i);
+            }
+        }
+        for (int i = 0; i < seeksPerKind; i++) {
+            offsets.add(1 + (long) random.nextInt(bytes.length));
+            offsets.add(starts[random.nextInt(rows)]);
+            offsets.add(afterCR.get(random.nextInt(afterCR.size())));
+            offsets.add(insideQuotes.get(random.nextInt(insideQuotes.size())));
+        }
+        CSVReader reader = new CSVReader(format);
+        for (long offset : offsets) {
+            int first = Arrays.binarySearch(starts, offset);
+            if (first < 0) first = -first - 1;
+            try (CSVRecordIterator it = reader.iterator(file, offset)) {
+                assertEquals(Arrays.asList(TestFiles.HEADER.split(",")), it.getHeaderList());
+                for (int r = first; r < Math.min(rows, first + recordsCheckedPerSeek); r++) {
+                    assertTrue("no record " + r + " from offset " + offset, it.hasNext());
+                    assertEquals("record " + r + " from offset " + offset, records.get(r), it.next().getValues());
+                }
+                if (first + recordsCheckedPerSeek >= rows) assertFalse("records past the end from offset " + offset, it.hasNext());
+            }
+        }
+    }
+}
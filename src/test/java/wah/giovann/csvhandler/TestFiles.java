@@ -0,0 +1,87 @@
+package wah.giovann.csvhandler;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates .csv files for the tests, with the constructs that byte offset and quote parity code has to get right:
+ * LF and CRLF line ends mixed from record to record, quoted values holding commas, doubled quotes and line ends of
+ * either kind, and values with characters outside of ASCII.
+ */
+final class TestFiles {
+    static final String HEADER = "id,name,note,amount";
+    private static final String[] names = {"alpha", "beta", "gamma", "delta", "\u00e9psilon", "zeta", "\u03b7ta", "theta"};
+
+    private TestFiles() {
+    }
+
+    /**
+     * Writes a file of <code>rows</code> records after the header, encoded in UTF-8, and returns the byte offset each
+     * record starts at.
+     */
+    static long[] write(File file, int rows, long seed) throws IOException {
+        long[] starts = new long[rows];
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            Random random = new Random(seed);
+            long position = write(w, HEADER + "\r\n");
+            for (int i = 0; i < rows; i++) {
+                starts[i] = position;
+                position += write(w, record(i, random) + (random.nextBoolean() ? "\n" : "\r\n"));
+            }
+        }
+        return starts;
+    }
+
+    private static int write(Writer w, String s) throws IOException {
+        w.write(s);
+        return s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Returns the text of record <code>i</code>, without its line end.
+     */
+    static String record(int i, Random random) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(i).append(',').append(names[random.nextInt(names.length)]).append(',');
+        switch (random.nextInt(8)) {
+            case 0:
+                sb.append("\"note ").append(i).append(", with a comma\"");
+                break;
+            case 1:
+                sb.append("\"a \"\"quoted\"\" note\"");
+                break;
+            case 2:
+                sb.append("\"first line\nsecond line\"");
+                break;
+            case 3:
+                sb.append("\"first line\r\nsecond line\r\n").append(i).append(",looks,like,a record\"");
+                break;
+            case 4:
+                sb.append("");
+                break;
+            default:
+                sb.append("plain note ").append(random.nextInt(1000));
+        }
+        sb.append(',').append(random.nextInt(100000) / 100.0);
+        return sb.toString();
+    }
+
+    /**
+     * Returns the values of every record of a <code>CSVArray</code>, in order.
+     */
+    static List<List<String>> values(CSVArray array) {
+        List<List<String>> ret = new ArrayList<>();
+        for (CSVRecord r : array) {
+            ret.add(r.getValues());
+        }
+        return ret;
+    }
+}